@@ -0,0 +1,72 @@
+package com.example.weatherapi.benchmarks;
+
+import com.example.weatherapi.api.parsers.FmiResponseParser;
+import com.example.weatherapi.api.parsers.SmhiResponseParser;
+import com.example.weatherapi.api.parsers.YrResponseParser;
+import com.example.weatherapi.domain.city.City;
+import com.example.weatherapi.domain.weather.Weather;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * The Stockholm responses from src/test/resources/weatherexamples, read once into memory so the benchmarks
+ * measure the parsing and not the disk.
+ */
+final class BenchmarkFixtures {
+
+    static final byte[] SMHI_STOCKHOLM = read("/weatherexamples/smhi/stockholmExample.json");
+    static final byte[] YR_STOCKHOLM = read("/weatherexamples/yr/stockholmExample.json");
+    static final byte[] FMI_STOCKHOLM = read("/weatherexamples/fmi/stockholmExample.xml");
+
+    private BenchmarkFixtures() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    static City stockholm() {
+        return City.builder()
+                .name("Stockholm")
+                .lat(59.3294)
+                .lon(18.0686)
+                .build();
+    }
+
+    static Weather parseSmhi() throws IOException {
+        Weather weather = baseWeather();
+        SmhiResponseParser.parse(new ByteArrayInputStream(SMHI_STOCKHOLM), weather);
+        return weather;
+    }
+
+    static Weather parseYr() throws IOException {
+        Weather weather = baseWeather();
+        YrResponseParser.parse(new ByteArrayInputStream(YR_STOCKHOLM), weather);
+        return weather;
+    }
+
+    static Weather parseFmi() throws IOException {
+        Weather weather = baseWeather();
+        FmiResponseParser.parse(new ByteArrayInputStream(FMI_STOCKHOLM), weather);
+        return weather;
+    }
+
+    private static Weather baseWeather() {
+        return Weather.builder()
+                .message("Benchmark weather for Stockholm")
+                .city(stockholm())
+                .timestamp(ZonedDateTime.now(ZoneOffset.UTC))
+                .build();
+    }
+
+    private static byte[] read(String path) {
+        try (InputStream in = Objects.requireNonNull(BenchmarkFixtures.class.getResourceAsStream(path), path)) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + path, e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.weatherapi.benchmarks;
+
+import com.example.weatherapi.cache.CachedWeather;
+import com.example.weatherapi.cache.MemoryCacheUtils;
+import com.example.weatherapi.config.CacheConfig;
+import com.example.weatherapi.domain.weather.Weather;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.weatherapi.util.SunriseUtil.getSunriseSunset;
+
+/**
+ * Putting merged weather in the memory cache: freezing it, rendering the json and, with gzip, compressing it.<br>
+ * The cache is built like the application's, with its expiry and stats, and the default soft and hard ttl.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+
+    @Param({"true", "false"})
+    public boolean gzip;
+
+    private MemoryCacheUtils memoryCacheUtils;
+    private Weather weather;
+
+    @Setup
+    public void setUp() throws IOException {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(CacheConfig.caffeineCacheBuilder(180));
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        memoryCacheUtils = new MemoryCacheUtils(cacheManager, objectMapper, 60, 180, 60, gzip);
+
+        weather = BenchmarkFixtures.parseSmhi();
+        getSunriseSunset(weather);
+    }
+
+    @Benchmark
+    public CachedWeather putWeatherInCache() {
+        return memoryCacheUtils.putWeatherInCache("stockholmmerged", weather);
+    }
+
+    @Benchmark
+    public CachedWeather getCachedWeatherFromCache(CachedState state) {
+        return memoryCacheUtils.getCachedWeatherFromCache("stockholmcached", "Stockholm", state.apis);
+    }
+
+    @State(Scope.Benchmark)
+    public static class CachedState {
+
+        final List<String> apis = List.of("FMI", "SMHI", "YR");
+
+        @Setup
+        public void setUp(CacheBenchmark benchmark) {
+            benchmark.memoryCacheUtils.putWeatherInCache("stockholmcached", benchmark.weather);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.weatherapi.benchmarks;
+
+import com.example.weatherapi.domain.entities.CityEntity;
+import com.example.weatherapi.domain.entities.WeatherEntity;
+import com.example.weatherapi.domain.weather.Weather;
+import com.example.weatherapi.util.WeatherMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting weather to and from the database entities, as weather_data rows or as the compressed blob.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+
+    @Param({"false", "true"})
+    public boolean blobStorage;
+
+    private Weather weather;
+    private CityEntity cityEntity;
+    private WeatherEntity weatherEntity;
+
+    @Setup
+    public void setUp() throws IOException {
+        weather = BenchmarkFixtures.parseSmhi();
+        cityEntity = CityEntity.builder()
+                .name("Stockholm")
+                .lat(59.3294)
+                .lon(18.0686)
+                .build();
+        weatherEntity = WeatherMapper.convertToWeatherEntity(weather, cityEntity, blobStorage);
+    }
+
+    @Benchmark
+    public WeatherEntity convertToWeatherEntity() {
+        return WeatherMapper.convertToWeatherEntity(weather, cityEntity, blobStorage);
+    }
+
+    @Benchmark
+    public Weather convertToWeather() {
+        return WeatherMapper.convertToWeather(weatherEntity);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.weatherapi.benchmarks;
+
+import com.example.weatherapi.domain.weather.WeatherSeries;
+import com.example.weatherapi.util.WeatherMergeEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The merge of the SMHI, YR and FMI forecasts that runs on every merged cache miss, with the same sources and order
+ * as WeatherServiceImpl.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class MergeBenchmark {
+
+    private List<WeatherMergeEngine.Source> sources;
+
+    @Setup
+    public void setUp() throws IOException {
+        sources = List.of(
+                new WeatherMergeEngine.Source(BenchmarkFixtures.parseSmhi().getSeries(), true, true),
+                new WeatherMergeEngine.Source(BenchmarkFixtures.parseYr().getSeries(), true, false),
+                new WeatherMergeEngine.Source(BenchmarkFixtures.parseFmi().getSeries(), false, false));
+    }
+
+    @Benchmark
+    public WeatherSeries mergeThreeApis() {
+        return WeatherMergeEngine.merge(sources);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.weatherapi.benchmarks;
+
+import com.example.weatherapi.domain.weather.Weather;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the SMHI and YR json and the FMI xml responses into Weather.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Benchmark
+    public Weather parseSmhi() throws IOException {
+        return BenchmarkFixtures.parseSmhi();
+    }
+
+    @Benchmark
+    public Weather parseYr() throws IOException {
+        return BenchmarkFixtures.parseYr();
+    }
+
+    @Benchmark
+    public Weather parseFmi() throws IOException {
+        return BenchmarkFixtures.parseFmi();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.weatherapi.benchmarks;
+
+import com.example.weatherapi.domain.weather.Weather;
+import com.example.weatherapi.util.SunriseUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sun times of a city, once from the memoized table and once computed for a day that isn't in it yet.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class SunriseBenchmark {
+
+    private Weather weather;
+    private LocalDate day;
+
+    @Setup
+    public void setUp() {
+        weather = Weather.builder().city(BenchmarkFixtures.stockholm()).build();
+        day = LocalDate.of(2000, 1, 1);
+    }
+
+    @Benchmark
+    public Weather getSunriseSunset() {
+        SunriseUtil.getSunriseSunset(weather);
+        return weather;
+    }
+
+    @Benchmark
+    public SunriseUtil.SunTimesTable computeSunTimes() {
+        // A new day each time, so the table is always computed
+        day = day.plusDays(1);
+        return SunriseUtil.getSunTimes(59.3294, 18.0686, day);
+    }
+}
@@ -1,19 +1,18 @@
 package com.example.weatherapi.api;
 
+import com.example.weatherapi.ratelimits.FetchPriority;
 import com.example.weatherapi.ratelimits.FmiRateLimiter;
 import com.example.weatherapi.domain.city.City;
 
 import com.example.weatherapi.domain.weather.Weather;
-import com.example.weatherapi.domain.weather.WeatherFmi;
 import com.example.weatherapi.exceptions.ApiConnectionException;
-import com.example.weatherapi.exceptions.RateLimitExceededException;
+import com.example.weatherapi.http.FmiHttpClient;
+import com.example.weatherapi.api.parsers.FmiResponseParser;
 import com.example.weatherapi.services.WeatherApiService;
-import com.example.weatherapi.util.HttpUtil;
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -21,12 +20,8 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Scanner;
 import java.util.concurrent.CompletableFuture;
 
 import static com.example.weatherapi.util.DateUtils.generateFutureTimestamp;
@@ -35,17 +30,21 @@ import static com.example.weatherapi.util.WeatherMapper.createBaseWeather;
 @Component
 public class FmiApi {
 
-    XmlMapper xmlMapper = new XmlMapper();
     private static final Logger LOG = LoggerFactory.getLogger(FmiApi.class);
     private final WeatherApiService weatherApiService;
     private final FmiRateLimiter rateLimiter;
+    private final FmiHttpClient httpClient;
+    private final AsyncTaskExecutor executor;
     private boolean isTestMode = false;
 
 
     @Autowired
-    public FmiApi (WeatherApiService weatherApiService, FmiRateLimiter rateLimiter) {
+    public FmiApi (WeatherApiService weatherApiService, FmiRateLimiter rateLimiter, FmiHttpClient httpClient,
+                   AsyncTaskExecutor executor) {
         this.weatherApiService = weatherApiService;
         this.rateLimiter = rateLimiter;
+        this.httpClient = httpClient;
+        this.executor = executor;
     }
 
 
@@ -63,9 +62,20 @@ public class FmiApi {
                 "&parameters=temperature,precipitation1h,humidity");
     }
 
-    @Async
+    // The api is only called on the async executor once the rate limiter lets the fetch through
     public CompletableFuture<Weather> fetchWeatherFmiAsync(City city) {
-        return CompletableFuture.completedFuture(getWeatherFMI(city.getLon(), city.getLat(), city));
+        FetchPriority priority = FetchPriority.current();
+        try {
+            // First cache check with validation of api status
+            Weather weather = weatherApiService.fetchWeatherData("FMI", city, false, false, true, true);
+            if (weather != null) {
+                return CompletableFuture.completedFuture(weather);
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return rateLimiter.acquireAsync(priority)
+                .thenApplyAsync(acquired -> fetchAfterRateLimit(city.getLon(), city.getLat(), city), executor);
     }
 
     public Weather getWeatherFMI(double lon, double lat, City city) {
@@ -76,34 +86,36 @@ public class FmiApi {
         }
 
         try {
-            long startTime = System.nanoTime();
-            rateLimiter.acquire();
-
-            // Second cache check after rate limiter wait with no validation of api status
-            weather = weatherApiService.fetchWeatherData("FMI", city, false, false, true, false);
-            if (weather != null) {
-                return weather;
-            }
-
-            LOG.info("Fetching weather data from the FMI API for city: {}", city.getName());
-            WeatherFmi weatherFmi = fetchWeatherFMI(lon, lat, city);
-            weather = createBaseWeather(lon, lat, city, "FMI");
-            addWeatherDataFmi(weather, weatherFmi);
-            weatherApiService.saveWeatherData("FMI", weather, false, false, true);
-            long endTime = System.nanoTime();
-            LOG.debug("FMI API call took {} ms for city: {}", (endTime - startTime) / 1000000, city.getName());
-            return weather;
+            rateLimiter.acquire(FetchPriority.current());
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Rate limiter interrupted", e);
-        } catch (RuntimeException e) {
-            throw new RateLimitExceededException(e.getMessage());
         }
+        return fetchAfterRateLimit(lon, lat, city);
     }
 
-    private WeatherFmi fetchWeatherFMI(double lon, double lat, City city) throws ApiConnectionException {
+    private Weather fetchAfterRateLimit(double lon, double lat, City city) {
+        long startTime = System.nanoTime();
+
+        // Second cache check after rate limiter wait with no validation of api status
+        Weather weather = weatherApiService.fetchWeatherData("FMI", city, false, false, true, false);
+        if (weather != null) {
+            return weather;
+        }
+
+        LOG.info("Fetching weather data from the FMI API for city: {}", city.getName());
+        weather = createBaseWeather(lon, lat, city, "FMI");
+        fetchWeatherFMI(lon, lat, city, weather);
+        weatherApiService.saveWeatherData("FMI", weather, false, false, true);
+        long endTime = System.nanoTime();
+        LOG.debug("FMI API call took {} ms for city: {}", (endTime - startTime) / 1000000, city.getName());
+        return weather;
+    }
+
+    // The response is streamed straight into the Weather object, see FmiResponseParser for how the XML is handled
+    private void fetchWeatherFMI(double lon, double lat, City city, Weather weather) throws ApiConnectionException {
+        long startTime = System.nanoTime();
         try {
-            String xmlContent;
             if (isTestMode) {
                 String cityName = city.getName().toLowerCase();
                 if (cityName.equals("rågsved")) cityName = "rågsvedexample-10days-2.xml";
@@ -111,94 +123,30 @@ public class FmiApi {
                 LOG.info("Using test data for FMI: {}", cityName);
 
                 String resourcePath = "weatherexamples/fmi/" + cityName;
-                try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resourcePath)) {
-                    if (inputStream == null) {
-                        throw new IOException("Resource not found: " + resourcePath);
-                    }
-                    xmlContent = new Scanner(inputStream, StandardCharsets.UTF_8).useDelimiter("\\A").next();
+                InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resourcePath);
+                if (inputStream == null) {
+                    throw new IOException("Resource not found: " + resourcePath);
                 }
+                FmiResponseParser.parse(inputStream, weather);
             } else {
                 URI uri = getUrlFMI(lon, lat,
                         generateFutureTimestamp(ZonedDateTime.now(ZoneOffset.UTC), 9))
                         .toURI();
-                HttpResponse<String> response = HttpUtil.getContentFromUrl(uri);
+                HttpResponse<InputStream> response = httpClient.get(uri, null, HttpResponse.BodyHandlers.ofInputStream());
 
-                if (response.statusCode() != 200) {
-                    throw new ApiConnectionException("Error: Received status code " + response.statusCode());
+                try (InputStream body = response.body()) {
+                    if (response.statusCode() != 200) {
+                        throw new ApiConnectionException("Error: Received status code " + response.statusCode());
+                    }
+                    FmiResponseParser.parse(body, weather);
                 }
-
-                xmlContent = response.body();
             }
-            xmlContent = parseXml(xmlContent);
-            return xmlMapper.readValue(xmlContent, WeatherFmi.class);
+            httpClient.recordFetch(System.nanoTime() - startTime, true);
         } catch (Exception e) {
+            httpClient.recordFetch(System.nanoTime() - startTime, false);
             LOG.error("Could not connect to FMI API");
             throw new ApiConnectionException("Could not connect to FMI API, please contact the site administrator");
         }
     }
 
-    private void addWeatherDataFmi(Weather weather, WeatherFmi weatherFmi) {
-        Map<ZonedDateTime, Float> temperatures = new HashMap<>();
-        Map<ZonedDateTime, Float> windSpeeds = new HashMap<>();
-        Map<ZonedDateTime, Float> windDirections = new HashMap<>();
-        Map<ZonedDateTime, Float> precipitations = new HashMap<>();
-        Map<ZonedDateTime, Float> humidities = new HashMap<>();
-
-        for (WeatherFmi.FeatureMember member : weatherFmi.getMembers()) {
-            WeatherFmi.PointTimeSeriesObservation observation = member.getPointTimeSeriesObservation();
-            if (observation != null && observation.getResult() != null) {
-                WeatherFmi.MeasurementTimeseries timeseries = observation.getResult().getMeasurementTimeseries();
-                if (timeseries != null) {
-                    String type = extractRelevantPart(timeseries.getId()).toLowerCase();
-                    for (WeatherFmi.MeasurementTimeseries.Point point : timeseries.getPoints()) {
-                        WeatherFmi.MeasurementTVP measurement = point.getMeasurementTVP();
-                        if (measurement != null) {
-                            ZonedDateTime validTime = ZonedDateTime.parse(measurement.getTime());
-                            Double value = measurement.getValue();
-                            if (value != null) {
-                                switch (type) {
-                                    case "temperature" -> temperatures.put(validTime, value.floatValue());
-                                    case "windspeedms" -> windSpeeds.put(validTime, value.floatValue());
-                                    case "winddirection" -> windDirections.put(validTime, value.floatValue());
-                                    case "precipitation1h" -> precipitations.put(validTime, value.floatValue());
-                                    case "humidity" -> humidities.put(validTime, value.floatValue());
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        for (ZonedDateTime validTime : temperatures.keySet()) {
-            float temperature = sanitizeFloat(temperatures.get(validTime));
-            float windSpeed = sanitizeFloat(windSpeeds.get(validTime));
-            float windDirection = sanitizeFloat(windDirections.get(validTime));
-            float precipitation = sanitizeFloat(precipitations.get(validTime));
-            float humidity = sanitizeFloat(humidities.get(validTime));
-            int weatherCode = -1;
-            weather.addWeatherData(validTime, temperature, weatherCode, windSpeed, windDirection, humidity, precipitation);
-        }
-    }
-
-    private float sanitizeFloat(Float value) {
-        if (value == null || Float.isNaN(value)) {
-            return -99;
-        }
-        return value;
-    }
-
-    private String parseXml(String xmlContent) {
-        xmlContent = xmlContent.replace("&param=", "&amp;param=").replace("&language=", "&amp;language=");
-        return xmlContent;
-    }
-
-    private String extractRelevantPart(String id) {
-        if (id == null) {
-            return "";
-        }
-        int lastDashIndex = id.lastIndexOf('-');
-        return lastDashIndex != -1 ? id.substring(lastDashIndex + 1) : id;
-    }
-
-}
\ No newline at end of file
+}
@@ -1,23 +1,24 @@
 package com.example.weatherapi.api;
 
+import com.example.weatherapi.ratelimits.FetchPriority;
 import com.example.weatherapi.ratelimits.SmhiRateLimiter;
 import com.example.weatherapi.domain.city.City;
 import com.example.weatherapi.domain.weather.Weather;
-import com.example.weatherapi.domain.weather.WeatherSmhi;
 import com.example.weatherapi.exceptions.ApiConnectionException;
-import com.example.weatherapi.exceptions.RateLimitExceededException;
+import com.example.weatherapi.http.SmhiHttpClient;
+import com.example.weatherapi.api.parsers.SmhiResponseParser;
 import com.example.weatherapi.services.WeatherApiService;
-import com.example.weatherapi.util.HttpUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Component;
 
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.net.http.HttpResponse;
@@ -40,13 +41,18 @@ public class SmhiApi {
     private static final Logger LOG = LoggerFactory.getLogger(SmhiApi.class);
     private final WeatherApiService weatherApiService;
     private final SmhiRateLimiter rateLimiter;
+    private final SmhiHttpClient httpClient;
+    private final AsyncTaskExecutor executor;
     private boolean isTestMode = false;
 
 
     @Autowired
-    public SmhiApi (WeatherApiService weatherApiService, SmhiRateLimiter rateLimiter) {
+    public SmhiApi (WeatherApiService weatherApiService, SmhiRateLimiter rateLimiter, SmhiHttpClient httpClient,
+                    AsyncTaskExecutor executor) {
         this.weatherApiService = weatherApiService;
         this.rateLimiter = rateLimiter;
+        this.httpClient = httpClient;
+        this.executor = executor;
     }
 
     /**
@@ -62,9 +68,24 @@ public class SmhiApi {
                 + lon + "/lat/" + lat + "/data.json");
     }
 
-    @Async
+    /**
+     * Fetches the weather without holding a thread while it waits for the rate limiter.<br>
+     * The wait is in the lane of the calling thread's {@link FetchPriority}, the api is called on the async executor
+     * once it's this fetch's turn.
+     */
     public CompletableFuture<Weather> fetchWeatherSmhiAsync(City city) {
-        return CompletableFuture.completedFuture(getWeatherSmhi(city.getLon(), city.getLat(), city));
+        FetchPriority priority = FetchPriority.current();
+        try {
+            // First cache check with validation of api status
+            Weather weather = weatherApiService.fetchWeatherData("SMHI", city, true, false, false, true);
+            if (weather != null) {
+                return CompletableFuture.completedFuture(weather);
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return rateLimiter.acquireAsync(priority)
+                .thenApplyAsync(acquired -> fetchAfterRateLimit(city.getLon(), city.getLat(), city), executor);
     }
 
     /**
@@ -76,7 +97,6 @@ public class SmhiApi {
      * @return the Weather object for the location
      * @throws ApiConnectionException if the connection to the smhi api fails
      */
-
     public Weather getWeatherSmhi(double lon, double lat, City city) {
         // First cache check with validation of api status
         Weather weather = weatherApiService.fetchWeatherData("SMHI", city, true, false, false, true);
@@ -85,86 +105,62 @@ public class SmhiApi {
         }
 
         try {
-            long startTime = System.nanoTime();
-            rateLimiter.acquire();
-
-            // Second cache check after rate limiter wait with no validation of api status
-            weather = weatherApiService.fetchWeatherData("SMHI", city, true, false, false, false);
-            if (weather != null) {
-                return weather;
-            }
-
-            LOG.info("Fetching weather data from the SMHI API for city: {}", city.getName());
-            WeatherSmhi weatherSmhi = fetchWeatherSmhi(lon, lat, city);
-            weather = createBaseWeather(lon, lat, city, "SMHI");
-            addWeatherDataSmhi(weather, weatherSmhi);
-            weatherApiService.saveWeatherData("SMHI", weather, true, false, false);
-            long endTime = System.nanoTime();
-            LOG.debug("SMHI API call took {} ms for city: {}", (endTime - startTime) / 1000000, city.getName());
-            return weather;
+            rateLimiter.acquire(FetchPriority.current());
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Rate limiter interrupted", e);
-        } catch (RuntimeException e) {
-            throw new RateLimitExceededException(e.getMessage());
         }
+        return fetchAfterRateLimit(lon, lat, city);
+    }
+
+    private Weather fetchAfterRateLimit(double lon, double lat, City city) {
+        long startTime = System.nanoTime();
+
+        // Second cache check after rate limiter wait with no validation of api status
+        Weather weather = weatherApiService.fetchWeatherData("SMHI", city, true, false, false, false);
+        if (weather != null) {
+            return weather;
+        }
+
+        LOG.info("Fetching weather data from the SMHI API for city: {}", city.getName());
+        weather = createBaseWeather(lon, lat, city, "SMHI");
+        fetchWeatherSmhi(lon, lat, city, weather);
+        weatherApiService.saveWeatherData("SMHI", weather, true, false, false);
+        long endTime = System.nanoTime();
+        LOG.debug("SMHI API call took {} ms for city: {}", (endTime - startTime) / 1000000, city.getName());
+        return weather;
     }
 
     /**
-     * Fetches the weather from the smhi api or from a test file, depending on the test mode.
-     * @return the WeatherSmhi object for the location
+     * Fetches the weather from the smhi api or from a test file, depending on the test mode,
+     * and streams the response straight into the Weather object.
+     * @param weather the Weather object to add the weather data to
      */
-    private WeatherSmhi fetchWeatherSmhi(double lon, double lat, City city) throws ApiConnectionException {
+    private void fetchWeatherSmhi(double lon, double lat, City city, Weather weather) throws ApiConnectionException {
+        long startTime = System.nanoTime();
         try {
             if (isTestMode) {
                 String cityName = city.getName().toLowerCase();
                 LOG.info("Using test data for SMHI: {}", cityName);
-                return mapper.readValue(getClass().getResourceAsStream("/weatherexamples/smhi/" +
+                SmhiResponseParser.parse(getClass().getResourceAsStream("/weatherexamples/smhi/" +
                         mapper.readValue(getClass().getResourceAsStream("/weatherexamples/citiesexamples.json"), Map.class)
-                                .get(cityName)), WeatherSmhi.class);
+                                .get(cityName)), weather);
             } else {
                 URI uri = getUrlSmhi(lon, lat).toURI();
-                HttpResponse<String> response = HttpUtil.getContentFromUrl(uri);
+                HttpResponse<InputStream> response = httpClient.get(uri, null, HttpResponse.BodyHandlers.ofInputStream());
 
-                if (response.statusCode() != 200) {
-                    throw new ApiConnectionException("Error: Received status code " + response.statusCode());
+                try (InputStream body = response.body()) {
+                    if (response.statusCode() != 200) {
+                        throw new ApiConnectionException("Error: Received status code " + response.statusCode());
+                    }
+                    SmhiResponseParser.parse(body, weather);
                 }
-
-                return mapper.readValue(response.body(), WeatherSmhi.class);
             }
+            httpClient.recordFetch(System.nanoTime() - startTime, true);
         } catch (Exception e) {
+            httpClient.recordFetch(System.nanoTime() - startTime, false);
             LOG.error("Could not connect to SMHI API: {}", e.getMessage());
             throw new ApiConnectionException("Could not connect to SMHI API, please contact the site administrator");
         }
     }
-
-
-    /**
-     * Adds the weather data to the Weather object.
-     * @param weather the Weather object for the location
-     * @param weatherSmhi the WeatherSmhi object for the location
-     */
-    private void addWeatherDataSmhi(Weather weather, WeatherSmhi weatherSmhi) {
-        weatherSmhi.timeSeries().forEach(t -> {
-            WeatherSmhi.Data d = t.data();
-
-            weather.addWeatherData(
-                    t.time(),
-                    valueOrDefault(d.air_temperature()),
-                    intValueOrDefault(d.symbol_code()),
-                    valueOrDefault(d.wind_speed()),
-                    valueOrDefault(d.wind_from_direction()),
-                    valueOrDefault(d.relative_humidity()),
-                    (valueOrDefault(d.precipitation_amount_min()) + valueOrDefault(d.precipitation_amount_max())) / 2
-            );
-        });
-    }
-
-    private float valueOrDefault(Float value) {
-        return value != null ? value : (float) 0.0;
-    }
-
-    private int intValueOrDefault(Integer value) {
-        return value != null ? value : 0;
-    }
-}
\ No newline at end of file
+}
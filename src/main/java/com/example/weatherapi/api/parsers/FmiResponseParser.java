@@ -0,0 +1,241 @@
+package com.example.weatherapi.api.parsers;
+
+import com.example.weatherapi.domain.weather.Weather;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Streaming StAX parser for the FMI WFS timevaluepair response.<br>
+ * The response is read once, the MeasurementTimeseries values are collected per timestamp and every timestamp
+ * with a temperature is added to the Weather object as one row. Missing and NaN values are set to -99
+ * and the weather code is always -1 since FMI doesn't provide one.
+ * <p>
+ * FMI doesn't escape the ampersands in its observedProperty links, see {@link AmpersandEscapingReader}.
+ */
+public class FmiResponseParser {
+
+    private FmiResponseParser() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    private static final String GML_NAMESPACE = "http://www.opengis.net/gml/3.2";
+    private static final String WML2_NAMESPACE = "http://www.opengis.net/waterml/2.0";
+
+    private static final int TEMPERATURE = 0;
+    private static final int WIND_SPEED = 1;
+    private static final int WIND_DIRECTION = 2;
+    private static final int PRECIPITATION = 3;
+    private static final int HUMIDITY = 4;
+    private static final float MISSING_VALUE = -99;
+    // A value that FMI can't send, used to tell "not in the response" apart from NaN
+    private static final float NOT_SET = Float.NEGATIVE_INFINITY;
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Parses the FMI response and adds the weather data to the Weather object.
+     * @param body the response body, closed when the parsing is done
+     * @param weather the Weather object to add the weather data to
+     * @throws IOException if the body can't be read or isn't valid XML
+     */
+    public static void parse(InputStream body, Weather weather) throws IOException {
+        Map<ZonedDateTime, float[]> rows = new TreeMap<>();
+        // Every parameter repeats the same timestamps, so each one is only parsed once per response
+        Map<String, ZonedDateTime> timestamps = new HashMap<>();
+
+        try (Reader reader = new AmpersandEscapingReader(
+                new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)))) {
+            XMLStreamReader xml = XML_INPUT_FACTORY.createXMLStreamReader(reader);
+            try {
+                int column = -1;
+                int depth = 0;
+                ZonedDateTime time = null;
+                // Stops at the end of the root element, anything after the FeatureCollection is ignored
+                while (xml.hasNext()) {
+                    int event = xml.next();
+                    if (event == XMLStreamConstants.END_ELEMENT && --depth == 0) {
+                        break;
+                    }
+                    if (event != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    depth++;
+                    String name = xml.getLocalName();
+                    if ("MeasurementTimeseries".equals(name)) {
+                        column = columnOf(xml.getAttributeValue(GML_NAMESPACE, "id"));
+                        time = null;
+                    } else if (column != -1 && WML2_NAMESPACE.equals(xml.getNamespaceURI())) {
+                        if ("time".equals(name)) {
+                            time = timestamps.computeIfAbsent(xml.getElementText().trim(), ZonedDateTime::parse);
+                            depth--;
+                        } else if ("value".equals(name) && time != null) {
+                            String value = xml.getElementText().trim();
+                            depth--;
+                            if (!value.isEmpty()) {
+                                rows.computeIfAbsent(time, t -> newRow())[column] = (float) Double.parseDouble(value);
+                            }
+                            time = null;
+                        }
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not parse the FMI response", e);
+        }
+
+        rows.forEach((validTime, row) -> {
+            if (row[TEMPERATURE] != NOT_SET) {
+                weather.addWeatherData(validTime,
+                        sanitizeFloat(row[TEMPERATURE]),
+                        -1,
+                        sanitizeFloat(row[WIND_SPEED]),
+                        sanitizeFloat(row[WIND_DIRECTION]),
+                        sanitizeFloat(row[HUMIDITY]),
+                        sanitizeFloat(row[PRECIPITATION]));
+            }
+        });
+    }
+
+    private static float[] newRow() {
+        float[] row = new float[5];
+        Arrays.fill(row, NOT_SET);
+        return row;
+    }
+
+    private static float sanitizeFloat(float value) {
+        if (value == NOT_SET || Float.isNaN(value)) {
+            return MISSING_VALUE;
+        }
+        return value;
+    }
+
+    // The parameter is the part of the gml:id after the last dash, e.g. "mts-1-1-Temperature"
+    private static int columnOf(String id) {
+        if (id == null) {
+            return -1;
+        }
+        return switch (id.substring(id.lastIndexOf('-') + 1).toLowerCase()) {
+            case "temperature" -> TEMPERATURE;
+            case "windspeedms" -> WIND_SPEED;
+            case "winddirection" -> WIND_DIRECTION;
+            case "precipitation1h" -> PRECIPITATION;
+            case "humidity" -> HUMIDITY;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Reader that escapes every ampersand that doesn't start an entity or character reference.<br>
+     * FMI returns links like {@code ?observableProperty=forecast&param=Humidity&language=eng} unescaped in attributes,
+     * which a conforming XML parser rejects. This replaces the string rewriting of the whole response.
+     */
+    static final class AmpersandEscapingReader extends FilterReader {
+
+        // Longest entity we need to recognise is "&quot;" / "&apos;", character references are recognised by "&#"
+        private static final int LOOKAHEAD = 6;
+        private static final char[] ESCAPED = "amp;".toCharArray();
+
+        private final PushbackReader source;
+        private int pendingEscape = -1;
+
+        AmpersandEscapingReader(Reader in) {
+            this(new PushbackReader(in, LOOKAHEAD));
+        }
+
+        private AmpersandEscapingReader(PushbackReader source) {
+            super(source);
+            this.source = source;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pendingEscape != -1) {
+                char c = ESCAPED[pendingEscape++];
+                if (pendingEscape == ESCAPED.length) {
+                    pendingEscape = -1;
+                }
+                return c;
+            }
+            int c = source.read();
+            if (c == '&' && !startsReference()) {
+                pendingEscape = 0;
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            int count = 0;
+            while (count < length) {
+                // Only block for the first character, after that hand back what we have
+                if (count > 0 && pendingEscape == -1 && !source.ready()) {
+                    break;
+                }
+                int c = read();
+                if (c == -1) {
+                    return count == 0 ? -1 : count;
+                }
+                buffer[offset + count++] = (char) c;
+            }
+            return count;
+        }
+
+        @Override
+        public boolean ready() throws IOException {
+            return pendingEscape != -1 || source.ready();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private boolean startsReference() throws IOException {
+            char[] ahead = new char[LOOKAHEAD];
+            int read = 0;
+            while (read < LOOKAHEAD) {
+                int c = source.read();
+                if (c == -1) {
+                    break;
+                }
+                ahead[read++] = (char) c;
+                if (c == ';' || !(Character.isLetterOrDigit(c) || c == '#')) {
+                    break;
+                }
+            }
+            source.unread(ahead, 0, read);
+            if (read == 0) {
+                return false;
+            }
+            if (ahead[0] == '#') {
+                return true;
+            }
+            String reference = new String(ahead, 0, read);
+            return reference.equals("amp;") || reference.equals("lt;") || reference.equals("gt;")
+                    || reference.equals("quot;") || reference.equals("apos;");
+        }
+    }
+}
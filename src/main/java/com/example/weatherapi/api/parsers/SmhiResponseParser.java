@@ -0,0 +1,114 @@
+package com.example.weatherapi.api.parsers;
+
+import com.example.weatherapi.domain.weather.Weather;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.ZonedDateTime;
+
+/**
+ * Streaming parser for the SMHI point forecast response.<br>
+ * Reads the response token by token and adds each time step straight into the Weather object,
+ * only the fields we use are read and everything else is skipped without being allocated.
+ */
+public class SmhiResponseParser {
+
+    private SmhiResponseParser() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Parses the SMHI response and adds the weather data to the Weather object.
+     * @param body the response body, closed when the parsing is done
+     * @param weather the Weather object to add the weather data to
+     * @throws IOException if the body can't be read or isn't valid JSON
+     */
+    public static void parse(InputStream body, Weather weather) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object from the SMHI API");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                if (parser.nextToken() == JsonToken.START_ARRAY && "timeSeries".equals(field)) {
+                    parseTimeSeries(parser, weather);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static void parseTimeSeries(JsonParser parser, Weather weather) throws IOException {
+        TimeStep step = new TimeStep();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            step.reset();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("time".equals(field) && token == JsonToken.VALUE_STRING) {
+                    step.time = ZonedDateTime.parse(parser.getText());
+                } else if ("data".equals(field) && token == JsonToken.START_OBJECT) {
+                    parseData(parser, step);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (step.time != null) {
+                weather.addWeatherData(step.time, step.temperature, step.weatherCode, step.windSpeed,
+                        step.windDirection, step.humidity, (step.precipitationMin + step.precipitationMax) / 2);
+            }
+        }
+    }
+
+    private static void parseData(JsonParser parser, TimeStep step) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if (!token.isNumeric()) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "air_temperature" -> step.temperature = parser.getFloatValue();
+                case "wind_from_direction" -> step.windDirection = parser.getFloatValue();
+                case "wind_speed" -> step.windSpeed = parser.getFloatValue();
+                case "relative_humidity" -> step.humidity = parser.getFloatValue();
+                case "precipitation_amount_min" -> step.precipitationMin = parser.getFloatValue();
+                case "precipitation_amount_max" -> step.precipitationMax = parser.getFloatValue();
+                case "symbol_code" -> step.weatherCode = parser.getIntValue();
+                default -> {
+                    // not used by us
+                }
+            }
+        }
+    }
+
+    // Missing values default to 0, same as SMHI has always been handled
+    private static final class TimeStep {
+        private ZonedDateTime time;
+        private float temperature;
+        private float windDirection;
+        private float windSpeed;
+        private float humidity;
+        private float precipitationMin;
+        private float precipitationMax;
+        private int weatherCode;
+
+        private void reset() {
+            time = null;
+            temperature = 0;
+            windDirection = 0;
+            windSpeed = 0;
+            humidity = 0;
+            precipitationMin = 0;
+            precipitationMax = 0;
+            weatherCode = 0;
+        }
+    }
+}
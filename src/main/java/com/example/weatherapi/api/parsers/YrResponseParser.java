@@ -0,0 +1,208 @@
+package com.example.weatherapi.api.parsers;
+
+import com.example.weatherapi.domain.weather.Weather;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.ZonedDateTime;
+
+import static com.example.weatherapi.util.WeatherCodeMapper.mapToWeatherCodeYR;
+
+/**
+ * Streaming parser for the YR locationforecast response.<br>
+ * Reads the response token by token and adds each time step straight into the Weather object,
+ * only the fields we use are read and everything else is skipped without being allocated.
+ */
+public class YrResponseParser {
+
+    private YrResponseParser() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final float MISSING_PRECIPITATION = -99.0f;
+
+    /**
+     * Parses the YR response and adds the weather data to the Weather object.
+     * @param body the response body, closed when the parsing is done
+     * @param weather the Weather object to add the weather data to
+     * @throws IOException if the body can't be read or isn't valid JSON
+     */
+    public static void parse(InputStream body, Weather weather) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object from the YR API");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                if (parser.nextToken() == JsonToken.START_OBJECT && "properties".equals(field)) {
+                    parseProperties(parser, weather);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static void parseProperties(JsonParser parser, Weather weather) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && "timeseries".equals(field)) {
+                parseTimeSeries(parser, weather);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void parseTimeSeries(JsonParser parser, Weather weather) throws IOException {
+        TimeStep step = new TimeStep();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            step.reset();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("time".equals(field) && token == JsonToken.VALUE_STRING) {
+                    step.time = ZonedDateTime.parse(parser.getText());
+                } else if ("data".equals(field) && token == JsonToken.START_OBJECT) {
+                    parseData(parser, step);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (step.time != null) {
+                weather.addWeatherData(step.time, step.temperature, step.weatherCode(), step.windSpeed,
+                        step.windDirection, step.humidity, step.precipitation());
+            }
+        }
+    }
+
+    private static void parseData(JsonParser parser, TimeStep step) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "instant" -> parseInstant(parser, step);
+                case "next_1_hours" -> parseNextHours(parser, step.next1Hours);
+                case "next_6_hours" -> parseNextHours(parser, step.next6Hours);
+                case "next_12_hours" -> parseNextHours(parser, step.next12Hours);
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private static void parseInstant(JsonParser parser, TimeStep step) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            if (parser.nextToken() != JsonToken.START_OBJECT || !"details".equals(field)) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String detail = parser.currentName();
+                if (!parser.nextToken().isNumeric()) {
+                    parser.skipChildren();
+                    continue;
+                }
+                switch (detail) {
+                    case "air_temperature" -> step.temperature = parser.getFloatValue();
+                    case "wind_speed" -> step.windSpeed = parser.getFloatValue();
+                    case "wind_from_direction" -> step.windDirection = parser.getFloatValue();
+                    case "relative_humidity" -> step.humidity = parser.getFloatValue();
+                    default -> {
+                        // not used by us
+                    }
+                }
+            }
+        }
+    }
+
+    private static void parseNextHours(JsonParser parser, NextHours nextHours) throws IOException {
+        nextHours.present = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("summary".equals(field) && "symbol_code".equals(name) && token == JsonToken.VALUE_STRING) {
+                    nextHours.symbolCode = parser.getText();
+                } else if ("details".equals(field) && "precipitation_amount".equals(name) && token.isNumeric()) {
+                    nextHours.precipitation = parser.getFloatValue();
+                    nextHours.hasPrecipitation = true;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static final class NextHours {
+        private boolean present;
+        private String symbolCode;
+        private boolean hasPrecipitation;
+        private float precipitation;
+
+        private void reset() {
+            present = false;
+            symbolCode = null;
+            hasPrecipitation = false;
+            precipitation = 0;
+        }
+    }
+
+    private static final class TimeStep {
+        private ZonedDateTime time;
+        private float temperature;
+        private float windSpeed;
+        private float windDirection;
+        private float humidity;
+        private final NextHours next1Hours = new NextHours();
+        private final NextHours next6Hours = new NextHours();
+        private final NextHours next12Hours = new NextHours();
+
+        private void reset() {
+            time = null;
+            temperature = 0;
+            windSpeed = 0;
+            windDirection = 0;
+            humidity = 0;
+            next1Hours.reset();
+            next6Hours.reset();
+            next12Hours.reset();
+        }
+
+        // The weather code comes from the shortest period that is available
+        private int weatherCode() {
+            if (next1Hours.present) {
+                return mapToWeatherCodeYR(next1Hours.symbolCode);
+            } else if (next6Hours.present) {
+                return mapToWeatherCodeYR(next6Hours.symbolCode);
+            } else if (next12Hours.present) {
+                return mapToWeatherCodeYR(next12Hours.symbolCode);
+            }
+            return -1;
+        }
+
+        // Same for precipitation, but a period without an amount falls through to the next one
+        private float precipitation() {
+            if (next1Hours.hasPrecipitation) {
+                return next1Hours.precipitation;
+            } else if (next6Hours.hasPrecipitation) {
+                return next6Hours.precipitation;
+            } else if (next12Hours.hasPrecipitation) {
+                return next12Hours.precipitation;
+            }
+            return MISSING_PRECIPITATION;
+        }
+    }
+}
@@ -16,12 +16,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 import static com.example.weatherapi.util.WeatherMapper.*;
-import static com.example.weatherapi.util.WeatherValidation.isWeatherValid;
 
 @Service
 public class CacheDB {
@@ -35,6 +36,19 @@ public class CacheDB {
     @Value("${cache.time.in.minutes}")
     private int cacheTimeInMinutes;
 
+    @Value("${cache.db.storage-format:rows}")
+    private StorageFormat storageFormat;
+
+    /**
+     * How the time series of a forecast is saved, both formats are always read.
+     */
+    public enum StorageFormat {
+        // one weather_data row per timestamp
+        ROWS,
+        // one compressed blob on the weather row, see WeatherBlobCodec
+        BLOB
+    }
+
     @Autowired
     private CacheDB(WeatherEntityRepository weatherEntityRepository,
                     LatestWeatherApiRepository latestWeatherApiRepository,
@@ -56,43 +70,32 @@ public class CacheDB {
         this.weatherSaveQueue = null;
     }
 
-    @Transactional
+    /**
+     * Gets the latest weather saved for the city and api combination, by this or any other instance.<br>
+     * The weather, its city and data points are loaded in one query.
+     * @param cityName the name the city is stored with, like the one in CityCache
+     * @return the weather, or null if there is none younger than cache.time.in.minutes
+     */
+    @Transactional(readOnly = true)
     public Weather getWeatherFromCache(String cityName, boolean smhi, boolean yr, boolean fmi) {
         if (cacheTimeInMinutes < 0) {
             LOG.warn("Cache time in minutes is negative, setting it to default value of 60 minutes");
             cacheTimeInMinutes = 60;
         }
 
-        CityEntity cityEntity = cityRepository.findByNameIgnoreCase(cityName)
-                .orElseThrow(() -> new RuntimeException("City not found: " + cityName));
+        String apisUsed = formatApisUsed(smhi, yr, fmi);
+        ZonedDateTime validThreshold = ZonedDateTime.now(ZoneOffset.UTC).minusMinutes(cacheTimeInMinutes);
 
         Optional<LatestWeatherApiEntity> latestApiOptional = latestWeatherApiRepository
-                .findByCityAndSmhiAndYrAndFmi(cityEntity, smhi, yr, fmi);
-
-        String apisUsed = formatApisUsed(smhi, yr, fmi);
+                .findValidLatestWeather(cityName, smhi, yr, fmi, validThreshold);
 
         if (latestApiOptional.isEmpty()) {
-            LOG.debug("Database cache doesn't exist for city: {} with APIs: {} in the database", cityName, apisUsed);
-            return null;
-        }
-
-        WeatherEntity cachedWeather = latestApiOptional.get().getLatestWeather();
-
-        if (cachedWeather == null) {
-            LOG.debug("Database cache found for city: {} with APIs: {}, but no associated weather data.",
-                    cityName,
-                    apisUsed
-            );
-            return null;
-        }
-
-        if (!isWeatherValid(cachedWeather.getTimeStamp(), cacheTimeInMinutes)) {
-            LOG.debug("Database cache expired for city: {} with APIs: {} in the database", cityName, apisUsed);
+            LOG.debug("No valid database cache for city: {} with APIs: {} in the database", cityName, apisUsed);
             return null;
         }
 
         LOG.info("Database cache hit for city: {} with APIs: {} in the database", cityName, apisUsed);
-        return convertToWeather(cachedWeather);
+        return convertToWeather(latestApiOptional.get().getLatestWeather());
 
     }
 
@@ -112,7 +115,8 @@ public class CacheDB {
         CityEntity cityEntity = cityRepository.findByNameIgnoreCase(weather.getCity().getName())
                 .orElseThrow(() -> new CityNotFoundException("City not found: " + weather.getCity().getName()));
 
-        WeatherEntity weatherEntity = weatherEntityRepository.save(convertToWeatherEntity(weather, cityEntity));
+        WeatherEntity weatherEntity = weatherEntityRepository.save(
+                convertToWeatherEntity(weather, cityEntity, storageFormat == StorageFormat.BLOB));
 
         LatestWeatherApiEntity latestWeatherApi = latestWeatherApiRepository
                 .findByCityAndSmhiAndYrAndFmi(cityEntity, smhi, yr, fmi)
@@ -0,0 +1,27 @@
+package com.example.weatherapi.cache;
+
+import com.example.weatherapi.domain.weather.Weather;
+
+import java.time.Instant;
+
+/**
+ * A cached weather together with its rendered response body, so cache hits can be written without serializing again.
+ * @param weather the frozen weather
+ * @param json the weather serialized as UTF-8 json
+ * @param gzipJson the json compressed with gzip, null if gzip is disabled
+ * @param etag strong ETag of the json body, including the quotes
+ * @param cachedAt when the weather was put in the cache, or saved to the database if it was read from there
+ */
+public record CachedWeather(Weather weather, byte[] json, byte[] gzipJson, String etag, Instant cachedAt) {
+
+    public boolean hasGzip() {
+        return gzipJson != null;
+    }
+
+    /**
+     * The gzip body is another representation of the same weather, so it needs its own strong ETag.
+     */
+    public String gzipEtag() {
+        return etag.substring(0, etag.length() - 1) + "-gzip\"";
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.weatherapi.cache;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Expires cached weather at the hard ttl counted from {@link CachedWeather#cachedAt()} instead of from the put,
+ * weather read from the database keeps the age it already had when it was saved.<br>
+ * Reads don't change the expiry.
+ */
+public class CachedWeatherExpiry implements Expiry<Object, Object> {
+
+    private final Duration hardTtl;
+
+    public CachedWeatherExpiry(Duration hardTtl) {
+        this.hardTtl = hardTtl;
+    }
+
+    /**
+     * The hard ttl is never shorter than the soft one, the cache and the stale checks of MemoryCacheUtils both use it.
+     * @param cacheTimeInMinutes cache.time.in.minutes, when the weather goes stale
+     * @param cacheHardTimeInMinutes cache.hard.time.in.minutes, when it's removed from the cache
+     */
+    public static Duration hardTtl(int cacheTimeInMinutes, int cacheHardTimeInMinutes) {
+        return Duration.ofMinutes(Math.max(cacheTimeInMinutes, cacheHardTimeInMinutes));
+    }
+
+    @Override
+    public long expireAfterCreate(Object key, Object value, long currentTime) {
+        if (value instanceof CachedWeather cachedWeather) {
+            Duration age = Duration.between(cachedWeather.cachedAt(), Instant.now());
+            return Math.max(0, hardTtl.minus(age).toNanos());
+        }
+        return hardTtl.toNanos();
+    }
+
+    @Override
+    public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+        return expireAfterCreate(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+}
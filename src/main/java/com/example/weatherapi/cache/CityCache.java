@@ -3,6 +3,7 @@ package com.example.weatherapi.cache;
 import com.example.weatherapi.domain.dto.CityDto;
 import com.example.weatherapi.domain.entities.CityEntity;
 import com.example.weatherapi.repositories.CityRepository;
+import com.example.weatherapi.util.CityIndex;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import org.slf4j.Logger;
@@ -20,6 +21,7 @@ public class CityCache {
     private final Logger log;
     private final Cache<String, List<CityEntity>> cityEntityCache;
     private final Cache<String, List<CityDto>> cityDtoCache;
+    private final Cache<String, CityIndex> cityIndexCache;
     private final CityRepository cityRepository;
 
     @Autowired
@@ -30,6 +32,8 @@ public class CityCache {
                 .expireAfterWrite(30, TimeUnit.MINUTES).build();
         this.cityDtoCache = Caffeine.newBuilder()
                 .expireAfterWrite(30, TimeUnit.MINUTES).build();
+        this.cityIndexCache = Caffeine.newBuilder()
+                .expireAfterWrite(30, TimeUnit.MINUTES).build();
     }
 
     public List<CityEntity> getAllCities() {
@@ -53,4 +57,25 @@ public class CityCache {
         });
     }
 
+    /**
+     * The spatial index of all cities, built from the same list as {@link #getAllCities()}.
+     */
+    public CityIndex getCityIndex() {
+        return cityIndexCache.get("cities", key -> {
+            long start = System.nanoTime();
+            CityIndex cityIndex = CityIndex.of(getAllCities());
+            log.debug("Built city index of {} cities in {} ms", cityIndex.size(), (System.nanoTime() - start) / 1000000);
+            return cityIndex;
+        });
+    }
+
+    /**
+     * Drops the cached cities, the names and the index, so they're loaded again after a city was added or deleted.
+     */
+    public void invalidate() {
+        cityEntityCache.invalidateAll();
+        cityDtoCache.invalidateAll();
+        cityIndexCache.invalidateAll();
+    }
+
 }
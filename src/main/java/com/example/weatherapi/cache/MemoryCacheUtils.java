@@ -2,31 +2,73 @@ package com.example.weatherapi.cache;
 
 import com.example.weatherapi.domain.weather.Weather;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Policy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 @Service
 public class MemoryCacheUtils {
 
     private final Logger log;
     CaffeineCache cache;
+    // Point weather has its own, smaller cache so requests for arbitrary coordinates can't push the cities out
+    CaffeineCache pointCache;
 
-    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final ObjectMapper objectMapper;
+    private final Duration softTtl;
+    private final Duration hardTtl;
+    private final Duration minFreshOnPromote;
+    private final boolean gzipEnabled;
+
+    // How often each merged key has been served, read by WeatherCacheRefresher to find the hottest keys
+    private final ConcurrentHashMap<String, KeyAccess> accessCounts = new ConcurrentHashMap<>();
+    private static final int MAX_TRACKED_KEYS = 10_000;
+
+    public MemoryCacheUtils(CacheManager cacheManager,
+                            ObjectMapper objectMapper,
+                            int cacheTimeInMinutes,
+                            boolean gzipEnabled) {
+        this(cacheManager, objectMapper, cacheTimeInMinutes, cacheTimeInMinutes, 60, gzipEnabled);
+    }
 
     @Autowired
-    public MemoryCacheUtils(CacheManager cacheManager) {
+    public MemoryCacheUtils(CacheManager cacheManager,
+                            ObjectMapper objectMapper,
+                            @Value("${cache.time.in.minutes}") int cacheTimeInMinutes,
+                            @Value("${cache.hard.time.in.minutes:${cache.time.in.minutes}}") int cacheHardTimeInMinutes,
+                            @Value("${cache.promote.min-fresh-seconds:60}") int minFreshSecondsOnPromote,
+                            @Value("${cache.response.gzip.enabled:true}") boolean gzipEnabled) {
         this.log = LoggerFactory.getLogger(MemoryCacheUtils.class);
         this.cache = (CaffeineCache) Objects.requireNonNull(cacheManager.getCache("cache"));
+        this.pointCache = Objects.requireNonNullElse((CaffeineCache) cacheManager.getCache("pointCache"), cache);
+        this.objectMapper = objectMapper;
+        this.softTtl = Duration.ofMinutes(cacheTimeInMinutes);
+        this.hardTtl = CachedWeatherExpiry.hardTtl(cacheTimeInMinutes, cacheHardTimeInMinutes);
+        this.minFreshOnPromote = Duration.ofSeconds(minFreshSecondsOnPromote);
+        this.gzipEnabled = gzipEnabled;
     }
 
     public Weather getWeatherFromCache(String key, String cityName, boolean smhi, boolean yr, boolean fmi){
@@ -37,31 +79,228 @@ public class MemoryCacheUtils {
         return getWeatherFromCache(key, cityName, enabledApis);
     }
 
+    /**
+     * Gets the weather from the cache if it's younger than the soft ttl (cache.time.in.minutes).
+     * @return the cached weather, or null if it's missing or stale
+     */
     public Weather getWeatherFromCache(String key, String cityName, List<String> enabledApis) {
-        Weather weatherFromCache = cache.get(key, Weather.class);
+        CachedWeather cachedWeather = getCachedWeatherFromCache(key, cityName, enabledApis);
+        return cachedWeather == null ? null : cachedWeather.weather();
+    }
+
+    /**
+     * Same as {@link #getWeatherFromCache(String, String, List)} but includes the rendered response body.
+     */
+    public CachedWeather getCachedWeatherFromCache(String key, String cityName, List<String> enabledApis) {
+        CaffeineCache cache = cacheOf(key);
+        if (isStale(cache, key)) {
+            return null;
+        }
+        CachedWeather cachedWeather = cache.get(key, CachedWeather.class);
 
-        if (weatherFromCache == null) {
+        if (cachedWeather == null) {
             return null;
         }
 
+        Weather weatherFromCache = cachedWeather.weather();
         if (enabledApis != null && !enabledApis.isEmpty()) {
-            log.info("Cache hit for City: {} with APIs: {} Timestamp: {}", cityName, enabledApis, weatherFromCache.getTimestamp().truncatedTo(ChronoUnit.SECONDS));
+            log.debug("Cache hit for City: {} with APIs: {} Timestamp: {}", cityName, enabledApis, weatherFromCache.getTimestamp().truncatedTo(ChronoUnit.SECONDS));
         } else {
-            log.info("Cache hit for City: {} with All APIs Timestamp: {}", cityName, weatherFromCache.getTimestamp().truncatedTo(ChronoUnit.SECONDS));
+            log.debug("Cache hit for City: {} with All APIs Timestamp: {}", cityName, weatherFromCache.getTimestamp().truncatedTo(ChronoUnit.SECONDS));
+        }
+
+        return cachedWeather;
+    }
+
+    /**
+     * Gets the cached entry regardless of its age.
+     * @return the cached weather, or null if there is no entry
+     */
+    public CachedWeather getCachedWeather(String key) {
+        return cacheOf(key).get(key, CachedWeather.class);
+    }
+
+    /**
+     * Gets the weather from the cache only if it's older than the soft ttl but hasn't reached the hard ttl yet.<br>
+     * Used to serve the old weather immediately while a refresh runs in the background.
+     * @return the stale weather, or null if there is no entry or the entry is still fresh
+     */
+    public Weather getStaleWeatherFromCache(String key, String cityName) {
+        CachedWeather cachedWeather = getStaleCachedWeatherFromCache(key, cityName);
+        return cachedWeather == null ? null : cachedWeather.weather();
+    }
+
+    /**
+     * Same as {@link #getStaleWeatherFromCache(String, String)} but includes the rendered response body.
+     */
+    public CachedWeather getStaleCachedWeatherFromCache(String key, String cityName) {
+        CaffeineCache cache = cacheOf(key);
+        Optional<Duration> age = ageOf(cache, key);
+        if (age.isEmpty() || age.get().compareTo(softTtl) < 0) {
+            return null;
+        }
+        CachedWeather cachedWeather = cache.get(key, CachedWeather.class);
+        if (cachedWeather != null) {
+            log.info("Serving stale weather for City: {} with key: {}, age: {} minutes", cityName, key, age.get().toMinutes());
+        }
+        return cachedWeather;
+    }
+
+    /**
+     * Puts a frozen copy of the weather in the cache, the cached instance is shared by every cache hit.
+     * Weather for a grid cell of /weather/point goes to the point cache.<br>
+     * The json body (and the gzip body if enabled) is rendered once here, cache hits write those bytes as they are.
+     * @return the cached weather
+     */
+    public CachedWeather putWeatherInCache(String key, Weather weather) {
+        CachedWeather cachedWeather = render(weather.freeze(), Instant.now());
+        cacheFor(weather).put(key, cachedWeather);
+        return cachedWeather;
+    }
+
+    /**
+     * Puts weather that was written earlier somewhere else, like a database row, in the cache.<br>
+     * Its age counts from writtenAt instead of now, so it goes stale and expires when the original write would have.
+     * Weather with less than cache.promote.min-fresh-seconds left until it's stale isn't worth caching, the apis
+     * should be called instead.
+     * @return the cached weather, or null if it wasn't cached because it's (almost) stale
+     */
+    public CachedWeather putWeatherInCache(String key, Weather weather, Instant writtenAt) {
+        Instant now = Instant.now();
+        // Another instance's clock may be a bit ahead
+        Instant cachedAt = writtenAt.isAfter(now) ? now : writtenAt;
+        if (softTtl.minus(Duration.between(cachedAt, now)).compareTo(minFreshOnPromote) < 0) {
+            log.debug("Not caching weather for key: {}, it was written at {} and is about to go stale", key, writtenAt);
+            return null;
+        }
+        CachedWeather cachedWeather = render(weather.freeze(), cachedAt);
+        cacheFor(weather).put(key, cachedWeather);
+        return cachedWeather;
+    }
+
+    private CachedWeather render(Weather weather, Instant cachedAt) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(weather);
+            byte[] gzipJson = gzipEnabled ? gzip(json) : null;
+            return new CachedWeather(weather, json, gzipJson, etagOf(json), cachedAt);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not render the weather for the cache", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    // First 128 bits of the SHA-256 of the body, enough to tell bodies apart
+    private static String etagOf(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Records that the weather for the key was served, only call it for weather that was actually returned
+     * so unknown cities never end up in the map.
+     */
+    public void recordAccess(String key, String cityName, List<String> enabledApis) {
+        KeyAccess access = accessCounts.get(key);
+        if (access == null) {
+            if (accessCounts.size() >= MAX_TRACKED_KEYS) {
+                return;
+            }
+            access = accessCounts.computeIfAbsent(key, k -> new KeyAccess(cityName, List.copyOf(enabledApis)));
         }
+        access.hits.incrementAndGet();
+    }
+
+    /**
+     * @param limit the max number of keys to return
+     * @return the most accessed keys, most accessed first
+     */
+    public List<AccessedKey> getMostAccessedKeys(int limit) {
+        return accessCounts.entrySet().stream()
+                .map(entry -> new AccessedKey(entry.getKey(), entry.getValue().cityName,
+                        entry.getValue().enabledApis, entry.getValue().hits.get()))
+                .filter(accessedKey -> accessedKey.hits() > 0)
+                .sorted(Comparator.comparingLong(AccessedKey::hits).reversed())
+                .limit(limit)
+                .toList();
+    }
 
-        return weatherFromCache;
+    /**
+     * Halves all access counts and drops the keys that reach zero, so the counts follow recent traffic.
+     */
+    public void decayAccessCounts() {
+        accessCounts.values().removeIf(access -> access.hits.updateAndGet(hits -> hits / 2) == 0);
     }
 
-    public void putWeatherInCache(String key, Weather weather) {
-        cache.put(key, objectMapper.convertValue(weather, Weather.class));
+    /**
+     * @return the time until the entry becomes stale, negative if it already is, empty if there is no entry
+     */
+    public Optional<Duration> getTimeUntilStale(String key) {
+        return ageOf(cacheOf(key), key).map(softTtl::minus);
+    }
+
+    /**
+     * @return the time until the cached weather becomes stale, negative if it already is
+     */
+    public Duration getTimeUntilStale(CachedWeather cachedWeather) {
+        return softTtl.minus(Duration.between(cachedWeather.cachedAt(), Instant.now()));
+    }
+
+    private boolean isStale(CaffeineCache cache, String key) {
+        return ageOf(cache, key).map(age -> age.compareTo(softTtl) >= 0).orElse(false);
+    }
+
+    // Time since the entry was cached, empty if there is no entry or the cache has no expiry
+    private Optional<Duration> ageOf(CaffeineCache cache, String key) {
+        Policy<Object, Object> policy = cache.getNativeCache().policy();
+        // With CachedWeatherExpiry the entry expires at the hard ttl after cachedAt, what's left of it gives the age
+        return policy.expireVariably()
+                .flatMap(expiration -> expiration.getExpiresAfter(key))
+                .map(hardTtl::minus)
+                .or(() -> policy.expireAfterWrite().flatMap(expiration -> expiration.ageOf(key)));
     }
 
     public void evictCacheIfPresent(String key, String cityName) {
+        CaffeineCache cache = cacheOf(key);
         if (cache.getNativeCache().asMap().containsKey(key)) {
             log.info("Evicting cache for city: {}, key: {}", cityName, key);
             cache.evict(key);
         }
     }
 
+    private CaffeineCache cacheFor(Weather weather) {
+        return weather.getCity() != null && weather.getCity().isPoint() ? pointCache : cache;
+    }
+
+    // The cache the key is in, the cities' cache if it's in neither
+    private CaffeineCache cacheOf(String key) {
+        if (pointCache == cache || cache.getNativeCache().asMap().containsKey(key)) {
+            return cache;
+        }
+        return pointCache.getNativeCache().asMap().containsKey(key) ? pointCache : cache;
+    }
+
+    public record AccessedKey(String key, String cityName, List<String> enabledApis, long hits) {
+    }
+
+    private static final class KeyAccess {
+        private final String cityName;
+        private final List<String> enabledApis;
+        private final AtomicLong hits = new AtomicLong();
+
+        private KeyAccess(String cityName, List<String> enabledApis) {
+            this.cityName = cityName;
+            this.enabledApis = enabledApis;
+        }
+    }
 }
@@ -0,0 +1,47 @@
+package com.example.weatherapi.cache;
+
+import com.example.weatherapi.domain.entities.CityEntity;
+import com.example.weatherapi.util.SunriseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Computes the sun times of every city when a new UTC day starts, so the first request of the day doesn't have to.
+ */
+@Component
+@ConditionalOnProperty(name = "cache.sun-times.precompute.enabled", havingValue = "true", matchIfMissing = true)
+public class SunTimesPrecompute {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SunTimesPrecompute.class);
+
+    private final CityCache cityCache;
+
+    @Autowired
+    public SunTimesPrecompute(CityCache cityCache) {
+        this.cityCache = cityCache;
+    }
+
+    @Scheduled(cron = "${cache.sun-times.precompute.cron:0 0 0 * * *}", zone = "UTC")
+    public void precompute() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        long start = System.nanoTime();
+        int computed = 0;
+        for (CityEntity city : cityCache.getAllCities()) {
+            try {
+                SunriseUtil.getSunTimes(city.getLat(), city.getLon(), today);
+                computed++;
+            } catch (RuntimeException e) {
+                // Cities with midnight sun or polar night have no sunrise or sunset on some days
+                LOG.debug("Could not compute sun times for city: {}: {}", city.getName(), e.getMessage());
+            }
+        }
+        LOG.info("Computed sun times for {} cities for {} in {} ms", computed, today, (System.nanoTime() - start) / 1000000);
+    }
+}
@@ -8,16 +8,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.example.weatherapi.util.SunriseUtil.getSunriseSunset;
 import static com.example.weatherapi.util.WeatherMapper.convertToWeather;
 
+/**
+ * Loads the weather that is still valid in the database into the memory cache.<br>
+ * The weather is read a page at a time, while one page is converted and cached in parallel the next one is read.
+ * With cache.preload.after-ready it runs in the background once the application is ready instead of holding up startup.
+ */
 @Service
 public class WeatherCachePreload {
 
@@ -25,32 +38,104 @@ public class WeatherCachePreload {
     private final LatestWeatherApiRepository latestWeatherApiRepository;
     private final MemoryCacheUtils memoryCacheUtils;
     private final int cacheTimeInMinutes;
+    private final int pageSize;
+    private final int parallelism;
+    private final boolean afterReady;
+
+    public WeatherCachePreload(LatestWeatherApiRepository latestWeatherApiRepository,
+                               MemoryCacheUtils memoryCacheUtils,
+                               int cacheTimeInMinute) {
+        this(latestWeatherApiRepository, memoryCacheUtils, cacheTimeInMinute, 200, 0, false);
+    }
 
     @Autowired
     public WeatherCachePreload(LatestWeatherApiRepository latestWeatherApiRepository,
                                MemoryCacheUtils memoryCacheUtils,
-                               @Value("${cache.time.in.minutes}") int cacheTimeInMinute) {
+                               @Value("${cache.time.in.minutes}") int cacheTimeInMinute,
+                               @Value("${cache.preload.page-size:200}") int pageSize,
+                               @Value("${cache.preload.parallelism:0}") int parallelism,
+                               @Value("${cache.preload.after-ready:false}") boolean afterReady) {
         this.latestWeatherApiRepository = latestWeatherApiRepository;
         this.memoryCacheUtils = memoryCacheUtils;
         this.cacheTimeInMinutes = cacheTimeInMinute;
+        this.pageSize = Math.max(1, pageSize);
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.afterReady = afterReady;
         this.log = LoggerFactory.getLogger(WeatherCachePreload.class);
     }
 
     @PostConstruct
+    public void preloadOnStartup() {
+        if (!afterReady) {
+            preloadValidWeatherData();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadAfterReady() {
+        if (afterReady) {
+            // Ready listeners run before readiness is reported, so the preload can't run on this thread
+            Thread thread = new Thread(this::preloadValidWeatherData, "CachePreload");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
     public void preloadValidWeatherData() {
+        long start = System.nanoTime();
         ZonedDateTime validThreshold = ZonedDateTime.now(ZoneId.of("UTC")).minusMinutes(cacheTimeInMinutes);
+        AtomicInteger preloaded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "CachePreload-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            CompletableFuture<Void> previousPage = CompletableFuture.completedFuture(null);
+            for (int page = 0; ; page++) {
+                List<UUID> ids = latestWeatherApiRepository.findValidWeatherIds(validThreshold, PageRequest.of(page, pageSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                List<LatestWeatherApiEntity> entries = latestWeatherApiRepository.findWithWeatherByIdIn(ids);
+
+                CompletableFuture<?>[] tasks = entries.stream()
+                        .map(entry -> CompletableFuture.runAsync(() -> preloadEntry(entry, preloaded, failed), executor))
+                        .toArray(CompletableFuture[]::new);
+
+                // At most two pages are held in memory, the one being cached and the one just read
+                previousPage.join();
+                previousPage = CompletableFuture.allOf(tasks);
+
+                if (ids.size() < pageSize) {
+                    break;
+                }
+            }
+            previousPage.join();
+        } finally {
+            executor.shutdown();
+        }
 
-        List<LatestWeatherApiEntity> validWeatherData = latestWeatherApiRepository.findValidWeatherData(validThreshold);
-        log.info("Preloading {} valid weather entries into memory cache", validWeatherData.size());
+        log.info("Preloaded {} valid weather entries into memory cache in {} ms, {} failed",
+                preloaded.get(), (System.nanoTime() - start) / 1000000, failed.get());
+    }
 
-        for (LatestWeatherApiEntity entry : validWeatherData) {
+    private void preloadEntry(LatestWeatherApiEntity entry, AtomicInteger preloaded, AtomicInteger failed) {
+        try {
+            String cacheKey = determineCacheKey(entry);
             Weather weather = convertToWeather(entry.getLatestWeather());
             getSunriseSunset(weather);
-            String cacheKey = determineCacheKey(entry);
-            log.info("Preloading weather data for city: {} with cache key: {}", entry.getCity().getName(), cacheKey);
-            memoryCacheUtils.putWeatherInCache(cacheKey, weather);
+            log.debug("Preloading weather data for city: {} with cache key: {}", entry.getCity().getName(), cacheKey);
+            if (memoryCacheUtils.putWeatherInCache(cacheKey, weather, weather.getTimestamp().toInstant()) != null) {
+                preloaded.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not preload weather data for city: {}: {}", entry.getCity().getName(), e.getMessage());
+            failed.incrementAndGet();
         }
-
     }
 
     public String determineCacheKey(LatestWeatherApiEntity entry) {
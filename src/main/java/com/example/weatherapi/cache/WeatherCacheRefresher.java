@@ -0,0 +1,97 @@
+package com.example.weatherapi.cache;
+
+import com.example.weatherapi.ratelimits.FetchPriority;
+import com.example.weatherapi.ratelimits.FmiRateLimiter;
+import com.example.weatherapi.ratelimits.RateLimiter;
+import com.example.weatherapi.ratelimits.SmhiRateLimiter;
+import com.example.weatherapi.ratelimits.YrRateLimiter;
+import com.example.weatherapi.services.WeatherService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Refreshes the most requested merged weather shortly before it goes stale, so popular cities are never a cache miss.<br>
+ * The refreshes run one at a time on the scheduler thread, so they are spaced by the rate limiters' minimum request
+ * interval, and a key is skipped when one of its apis is close to its burst or daily limit. They wait in the
+ * background lane of the rate limiters, so user requests get the next request interval first.
+ */
+@Service
+@ConditionalOnProperty(name = "cache.refresh-ahead.enabled", havingValue = "true", matchIfMissing = true)
+public class WeatherCacheRefresher {
+
+    private final Logger log;
+    private final MemoryCacheUtils memoryCacheUtils;
+    private final WeatherService weatherService;
+    private final Map<String, RateLimiter> rateLimiters;
+    private final int topN;
+    private final Duration leadTime;
+    private final double reservedRateLimitShare;
+
+    @Autowired
+    public WeatherCacheRefresher(MemoryCacheUtils memoryCacheUtils,
+                                 WeatherService weatherService,
+                                 SmhiRateLimiter smhiRateLimiter,
+                                 YrRateLimiter yrRateLimiter,
+                                 FmiRateLimiter fmiRateLimiter,
+                                 @Value("${cache.refresh-ahead.top-n:20}") int topN,
+                                 @Value("${cache.refresh-ahead.lead-time-minutes:5}") int leadTimeMinutes,
+                                 @Value("${cache.refresh-ahead.reserved-rate-limit-share:0.2}") double reservedRateLimitShare) {
+        this.memoryCacheUtils = memoryCacheUtils;
+        this.weatherService = weatherService;
+        this.rateLimiters = Map.of(
+                "SMHI", smhiRateLimiter,
+                "YR", yrRateLimiter,
+                "FMI", fmiRateLimiter);
+        this.topN = topN;
+        this.leadTime = Duration.ofMinutes(leadTimeMinutes);
+        this.reservedRateLimitShare = reservedRateLimitShare;
+        this.log = LoggerFactory.getLogger(WeatherCacheRefresher.class);
+    }
+
+    @Scheduled(fixedDelayString = "${cache.refresh-ahead.interval-ms:60000}",
+            initialDelayString = "${cache.refresh-ahead.interval-ms:60000}")
+    public void refreshHottestKeys() {
+        int refreshed = 0;
+        for (MemoryCacheUtils.AccessedKey accessedKey : memoryCacheUtils.getMostAccessedKeys(topN)) {
+            // Missing entries are refreshed too, a popular city that was evicted is a miss waiting to happen
+            Optional<Duration> timeUntilStale = memoryCacheUtils.getTimeUntilStale(accessedKey.key());
+            if (timeUntilStale.isPresent() && timeUntilStale.get().compareTo(leadTime) > 0) {
+                continue;
+            }
+
+            if (!hasHeadroom(accessedKey.enabledApis())) {
+                log.info("Skipping refresh of {}, not enough rate limit headroom for {}", accessedKey.key(), accessedKey.enabledApis());
+                continue;
+            }
+
+            try {
+                FetchPriority.runInBackground(() ->
+                        weatherService.refreshWeather(accessedKey.cityName(), accessedKey.enabledApis()));
+                refreshed++;
+            } catch (RuntimeException e) {
+                log.warn("Could not refresh weather for key: {}: {}", accessedKey.key(), e.getMessage());
+            }
+        }
+
+        memoryCacheUtils.decayAccessCounts();
+        if (refreshed > 0) {
+            log.info("Refreshed {} cache entries ahead of expiry", refreshed);
+        }
+    }
+
+    private boolean hasHeadroom(List<String> apis) {
+        return apis.stream()
+                .map(rateLimiters::get)
+                .allMatch(rateLimiter -> rateLimiter == null || rateLimiter.hasHeadroom(reservedRateLimitShare));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.weatherapi.cache;
+
+import com.example.weatherapi.repositories.WeatherDataRepository;
+import com.example.weatherapi.repositories.WeatherEntityRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes forecasts from the database that are older than cache.db.retention.max-age-hours and no longer the latest
+ * weather of any city and api combination, CacheDB.save only repoints latest_weather_api so they are never read again.<br>
+ * Deletes run in small chunks, each in its own short transaction, so the tables are never locked for long.
+ */
+@Service
+@ConditionalOnProperty(name = "cache.db.retention.enabled", havingValue = "true", matchIfMissing = true)
+public class WeatherRetentionJob implements MeterBinder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WeatherRetentionJob.class);
+
+    private static final long CHUNK_PAUSE_MS = 100;
+
+    private final WeatherEntityRepository weatherEntityRepository;
+    private final WeatherDataRepository weatherDataRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration maxAge;
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+
+    private final AtomicLong purgedWeather = new AtomicLong();
+    private final AtomicLong purgedWeatherData = new AtomicLong();
+
+    @Autowired
+    public WeatherRetentionJob(WeatherEntityRepository weatherEntityRepository,
+                               WeatherDataRepository weatherDataRepository,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${cache.db.retention.max-age-hours:48}") int maxAgeHours,
+                               @Value("${cache.db.retention.chunk-size:100}") int chunkSize,
+                               @Value("${cache.db.retention.max-chunks-per-run:100}") int maxChunksPerRun) {
+        this.weatherEntityRepository = weatherEntityRepository;
+        this.weatherDataRepository = weatherDataRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.maxAge = Duration.ofHours(maxAgeHours);
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRun = maxChunksPerRun;
+    }
+
+    @Scheduled(fixedDelayString = "${cache.db.retention.interval-ms:3600000}",
+            initialDelayString = "${cache.db.retention.interval-ms:3600000}")
+    public void purgeScheduled() {
+        purge(ZonedDateTime.now(ZoneOffset.UTC).minus(maxAge));
+    }
+
+    /**
+     * Deletes superseded forecasts older than the cutoff, at most max-chunks-per-run chunks, the rest is left for the next run.
+     * @return the number of forecasts that were deleted
+     */
+    public int purge(ZonedDateTime cutoff) {
+        long start = System.nanoTime();
+        int deletedWeather = 0;
+        int deletedWeatherData = 0;
+
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            int[] deleted = transactionTemplate.execute(status -> deleteChunk(cutoff));
+            if (deleted == null || deleted[0] == 0) {
+                break;
+            }
+            deletedWeather += deleted[0];
+            deletedWeatherData += deleted[1];
+            purgedWeather.addAndGet(deleted[0]);
+            purgedWeatherData.addAndGet(deleted[1]);
+            if (deleted[0] < chunkSize) {
+                break;
+            }
+            // Lets other writers get their locks between chunks
+            try {
+                TimeUnit.MILLISECONDS.sleep(CHUNK_PAUSE_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (deletedWeather > 0) {
+            LOG.info("Purged {} forecasts and {} weather data rows older than {} in {} ms",
+                    deletedWeather, deletedWeatherData, cutoff, (System.nanoTime() - start) / 1000000);
+        }
+        return deletedWeather;
+    }
+
+    // Returns the number of deleted weather and weather_data rows
+    private int[] deleteChunk(ZonedDateTime cutoff) {
+        List<UUID> ids = weatherEntityRepository.findSupersededIds(cutoff, PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) {
+            return new int[]{0, 0};
+        }
+        int weatherData = weatherDataRepository.deleteByWeatherIds(ids);
+        int weather = weatherEntityRepository.deleteByIds(ids);
+        return new int[]{weather, weatherData};
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("weather.retention.purged", purgedWeather, AtomicLong::get)
+                .description("Rows deleted by the retention job")
+                .tag("table", "weather")
+                .register(registry);
+        FunctionCounter.builder("weather.retention.purged", purgedWeatherData, AtomicLong::get)
+                .description("Rows deleted by the retention job")
+                .tag("table", "weather_data")
+                .register(registry);
+    }
+}
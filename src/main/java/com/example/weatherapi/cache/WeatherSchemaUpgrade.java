@@ -0,0 +1,101 @@
+package com.example.weatherapi.cache;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Adds the columns the entities map that an existing database created by an older version doesn't have yet,
+ * spring.jpa.hibernate.ddl-auto is none so Hibernate never changes the schema itself.<br>
+ * Runs before the EntityManagerFactory is created, so nothing reads the weather table before it's upgraded.
+ * Turn it off with cache.db.schema-upgrade=false when the application user isn't allowed to alter tables.
+ */
+@Component
+@DependsOnDatabaseInitialization
+public class WeatherSchemaUpgrade {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WeatherSchemaUpgrade.class);
+
+    private static final String TABLE = "weather";
+    private static final String COLUMN = "data_blob";
+
+    private final DataSource dataSource;
+    private final boolean enabled;
+
+    public WeatherSchemaUpgrade(DataSource dataSource,
+                                @Value("${cache.db.schema-upgrade:true}") boolean enabled) {
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    public void upgrade() {
+        if (!enabled) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            if (!hasColumn(metaData, null)) {
+                LOG.warn("Table {} not found, the schema upgrade is skipped", TABLE);
+                return;
+            }
+            if (hasColumn(metaData, COLUMN)) {
+                return;
+            }
+            String product = metaData.getDatabaseProductName();
+            String type = product.contains("MySQL") || product.contains("MariaDB") ? "MEDIUMBLOB" : "BLOB";
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER TABLE " + TABLE + " ADD COLUMN " + COLUMN + " " + type + " NULL");
+                LOG.info("Added the {}.{} column", TABLE, COLUMN);
+            } catch (SQLException e) {
+                // Another instance starting at the same time may have added it first
+                if (!hasColumn(connection.getMetaData(), COLUMN)) {
+                    throw e;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not add the " + TABLE + "." + COLUMN + " column, add it with "
+                    + "ALTER TABLE " + TABLE + " ADD COLUMN " + COLUMN + " MEDIUMBLOB NULL", e);
+        }
+    }
+
+    /**
+     * Databases differ in the case they store names in, so the table is looked up in both.
+     * Without a column it checks that the table exists.
+     */
+    private static boolean hasColumn(DatabaseMetaData metaData, String column) throws SQLException {
+        String catalog = metaData.getConnection().getCatalog();
+        for (String table : new String[]{TABLE, TABLE.toUpperCase()}) {
+            try (ResultSet columns = metaData.getColumns(catalog, null, table, null)) {
+                while (columns.next()) {
+                    if (column == null || column.equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Makes the EntityManagerFactory, and with it every repository, wait for the upgrade.
+     */
+    @Component
+    static class JpaDependsOnSchemaUpgrade extends EntityManagerFactoryDependsOnPostProcessor {
+
+        JpaDependsOnSchemaUpgrade() {
+            super(WeatherSchemaUpgrade.class);
+        }
+    }
+}
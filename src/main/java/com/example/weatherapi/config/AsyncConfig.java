@@ -1,7 +1,16 @@
 package com.example.weatherapi.config;
 
+import com.example.weatherapi.ratelimits.FetchPriority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.thread.Threading;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -10,14 +19,97 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 @EnableAsync
 public class AsyncConfig implements AsyncConfigurer {
 
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncConfig.class);
+
+    // Every weather load can wait for a fetch from each of the apis at once
+    private static final int APIS = 3;
+    private static final int REFRESH_THREADS = 4;
+
+    // With spring.threads.virtual.enabled=true on Java 21+ Tomcat already runs requests on virtual threads,
+    // the api fetches and the merge then get a virtual thread per task instead of the bounded pool.
+    // Otherwise the queue keeps its 25 places for other callers and gets room for a fetch from every api for each
+    // thread of the load, refresh and batch pools, a rejected fetch has already used its rate limit token.
     @Bean()
-    public ThreadPoolTaskExecutor asyncTaskExecutor() {
+    @Primary
+    public AsyncTaskExecutor asyncTaskExecutor(Environment environment,
+                                               @Value("${weather.load.parallelism:16}") int loadParallelism,
+                                               @Value("${weather.batch.parallelism:4}") int batchParallelism) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            LOG.info("Using virtual threads for async tasks");
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("AsyncThread-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        if (environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            LOG.warn("Virtual threads are enabled but Java {} doesn't support them, using a thread pool for async tasks",
+                    Runtime.version().feature());
+        }
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(10);
-        executor.setQueueCapacity(25);
+        executor.setQueueCapacity(25 + APIS * (loadParallelism + REFRESH_THREADS + batchParallelism));
         executor.setThreadNamePrefix("AsyncThread-");
         executor.initialize();
         return executor;
     }
+
+    // Background refreshes of stale cache entries get their own small pool, a refresh waits for the api fetches
+    // on asyncTaskExecutor and must never take the threads those fetches need. Its fetches wait in the background
+    // lane of the rate limiters.
+    @Bean
+    public AsyncTaskExecutor weatherRefreshExecutor(Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("RefreshThread-");
+            executor.setVirtualThreads(true);
+            executor.setTaskDecorator(FetchPriority.backgroundTaskDecorator());
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(REFRESH_THREADS);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("RefreshThread-");
+        executor.setTaskDecorator(FetchPriority.backgroundTaskDecorator());
+        executor.initialize();
+        return executor;
+    }
+
+    // Cache misses of the weather endpoints are loaded here instead of on the request thread, which is released until
+    // the load is done, so requests joining an in-flight load don't hold a thread at all. A load waits for the api
+    // fetches on asyncTaskExecutor, so it can't share that pool either.
+    @Bean
+    public AsyncTaskExecutor weatherLoadExecutor(Environment environment,
+                                                 @Value("${weather.load.parallelism:16}") int parallelism) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("LoadThread-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("LoadThread-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Cache misses of /weather/batch are loaded on their own pool, which also bounds how many of them call the apis
+    // at once. Like a refresh, a load waits for the api fetches on asyncTaskExecutor and must not take their threads.
+    // With virtual threads the pool keeps its size, only the threads are virtual.
+    @Bean
+    public AsyncTaskExecutor weatherBatchExecutor(Environment environment,
+                                                  @Value("${weather.batch.parallelism:4}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("BatchThread-");
+        executor.setVirtualThreads(Threading.VIRTUAL.isActive(environment));
+        executor.initialize();
+        return executor;
+    }
 }
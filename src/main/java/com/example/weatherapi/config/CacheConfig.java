@@ -1,5 +1,6 @@
 package com.example.weatherapi.config;
 
+import com.example.weatherapi.cache.CachedWeatherExpiry;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
@@ -9,6 +10,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
+import java.util.List;
 
 @Configuration
 @EnableCaching
@@ -17,18 +19,39 @@ public class CacheConfig {
     @Value("${cache.time.in.minutes}")
     private int cacheTimeInMinutes;
 
+    // Entries are kept until the hard ttl after they were cached, between cache.time.in.minutes and the hard ttl they are served stale while refreshing
+    @Value("${cache.hard.time.in.minutes:${cache.time.in.minutes}}")
+    private int cacheHardTimeInMinutes;
+
+    @Value("${weather.point.cache.max-size:500}")
+    private int pointCacheMaxSize;
+
     @Bean
     public CacheManager cacheManager() {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
-        cacheManager.setCaffeine(caffeineCacheBuilder());
+        // Clamped like in MemoryCacheUtils, an entry is never removed before it would have been served stale
+        Duration hardTtl = CachedWeatherExpiry.hardTtl(cacheTimeInMinutes, cacheHardTimeInMinutes);
+        cacheManager.setCaffeine(caffeineCacheBuilder(hardTtl, 2000));
+        // Created up front instead of on first use, so actuator binds its hit, miss and eviction stats at startup
+        cacheManager.setCacheNames(List.of("cache"));
+        // /weather/point can be asked for any coordinates, its own bound keeps them from pushing the cities out
+        cacheManager.registerCustomCache("pointCache",
+                caffeineCacheBuilder(hardTtl, pointCacheMaxSize).build());
         return cacheManager;
     }
 
-    private Caffeine<Object, Object> caffeineCacheBuilder() {
+    /**
+     * The settings of the weather cache, the benchmarks build their cache with them as well.
+     */
+    public static Caffeine<Object, Object> caffeineCacheBuilder(int cacheHardTimeInMinutes) {
+        return caffeineCacheBuilder(Duration.ofMinutes(cacheHardTimeInMinutes), 2000);
+    }
+
+    private static Caffeine<Object, Object> caffeineCacheBuilder(Duration hardTtl, long maximumSize) {
         return Caffeine.newBuilder()
                 .initialCapacity(100)
-                .maximumSize(2000)
-                .expireAfterWrite(Duration.ofMinutes(cacheTimeInMinutes))
+                .maximumSize(maximumSize)
+                .expireAfter(new CachedWeatherExpiry(hardTtl))
                 .recordStats();
     }
 
@@ -16,7 +16,8 @@ public class OpenApiConfig {
                         "/weather/**",
                         "/status/**",
                         "/city/names",
-                        "/city/search"
+                        "/city/search",
+                        "/city/nearby"
                 )
                 .build();
     }
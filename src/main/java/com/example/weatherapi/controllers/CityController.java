@@ -1,6 +1,8 @@
 package com.example.weatherapi.controllers;
 
 import com.example.weatherapi.domain.city.City;
+import com.example.weatherapi.domain.city.CityNearbyRequest;
+import com.example.weatherapi.domain.city.CityNearbyResponse;
 import com.example.weatherapi.domain.city.CitySearchRequest;
 import com.example.weatherapi.domain.city.CitySearchResponse;
 import com.example.weatherapi.domain.dto.CityDto;
@@ -14,11 +16,13 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.List;
 
 @RestController
@@ -26,6 +30,9 @@ import java.util.List;
 @Tag(name = "City", description = "City management endpoints")
 public class CityController {
 
+    // Cities are rarely added, so clients and proxies can keep search results for a while
+    private static final CacheControl SEARCH_CACHE_CONTROL = CacheControl.maxAge(Duration.ofHours(1)).cachePublic();
+
     private final CityService cityService;
 
     public CityController(final CityService cityService) {
@@ -113,4 +120,36 @@ public class CityController {
         return cityService.searchCity(request.lat(), request.lon());
     }
 
+    @Operation(summary = "Search for a city by latitude and longitude, cacheable")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved city search results", content =
+                    @Content(schema = @Schema(implementation = CitySearchResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid latitude or longitude", content =
+                    @Content(schema = @Schema(implementation = ProblemDetail.class))),
+            @ApiResponse(responseCode = "503", description = "Service Unavailable", content =
+                    @Content(schema = @Schema(implementation = ProblemDetail.class)))
+    })
+    @GetMapping(path = "/search")
+    public ResponseEntity<CitySearchResponse> searchCityGet(@Valid @ModelAttribute CitySearchRequest request){
+        return ResponseEntity.ok()
+                .cacheControl(SEARCH_CACHE_CONTROL)
+                .body(cityService.searchCity(request.lat(), request.lon()));
+    }
+
+    @Operation(summary = "Get the closest cities to a latitude and longitude, optionally within a radius in km")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the closest cities, closest first", content =
+                    @Content(array = @ArraySchema(schema = @Schema(implementation = CityNearbyResponse.class)))),
+            @ApiResponse(responseCode = "400", description = "Invalid latitude, longitude, limit or radius", content =
+                    @Content(schema = @Schema(implementation = ProblemDetail.class))),
+            @ApiResponse(responseCode = "503", description = "Service Unavailable", content =
+                    @Content(schema = @Schema(implementation = ProblemDetail.class)))
+    })
+    @GetMapping(path = "/nearby")
+    public ResponseEntity<List<CityNearbyResponse>> searchNearbyCities(@Valid @ModelAttribute CityNearbyRequest request){
+        return ResponseEntity.ok()
+                .cacheControl(SEARCH_CACHE_CONTROL)
+                .body(cityService.searchNearbyCities(request.lat(), request.lon(), request.limitOrDefault(), request.radiusKm()));
+    }
+
 }
@@ -2,21 +2,36 @@ package com.example.weatherapi.controllers;
 
 
 import com.example.weatherapi.domain.weather.Weather;
+import com.example.weatherapi.domain.weather.WeatherBatchRequest;
+import com.example.weatherapi.domain.weather.WeatherBatchResult;
+import com.example.weatherapi.domain.weather.WeatherPointRequest;
 import com.example.weatherapi.exceptions.ApiConnectionException;
 import com.example.weatherapi.exceptions.CityNotFoundException;
+import com.example.weatherapi.services.WeatherBatchService;
 import com.example.weatherapi.services.WeatherService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller that handles the requests to the api, redirects the requests to the service layer
@@ -29,10 +44,14 @@ import java.util.List;
 @Tag(name = "Weather", description = "Weather endpoint")
 public class WeatherController {
 
+    private static final Logger LOG = LoggerFactory.getLogger(WeatherController.class);
+
     private final WeatherService weatherService;
+    private final WeatherBatchService weatherBatchService;
 
-    public WeatherController(final WeatherService weatherService){
+    public WeatherController(final WeatherService weatherService, final WeatherBatchService weatherBatchService){
         this.weatherService = weatherService;
+        this.weatherBatchService = weatherBatchService;
     }
 
     /**
@@ -48,7 +67,9 @@ public class WeatherController {
      *
      * @param city the name of the city to retrieve weather data for
      * @param apis optional list of APIs to query (e.g., fmi, smhi, yr); if omitted, all will be used
-     * @return the merged weather data for the specified city
+     * @param acceptEncoding the Accept-Encoding header, the body is sent gzip encoded if the client accepts it
+     * @return the merged weather data for the specified city as json, with a strong ETag. A cache miss is answered
+     * asynchronously, the request thread isn't held while the APIs are called
      * @throws ApiConnectionException if all selected APIs are unavailable
      * @throws CityNotFoundException if the city is not found in the database
      */
@@ -59,7 +80,7 @@ public class WeatherController {
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved weather data", content =
-                    @Content(schema = @Schema(implementation = Weather.class))),
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = Weather.class))),
             @ApiResponse(responseCode = "400", description = "Bad Request", content =
                     @Content(schema = @Schema(implementation = ProblemDetail.class))),
             @ApiResponse(responseCode = "404", description = "City not found", content =
@@ -68,14 +89,136 @@ public class WeatherController {
                     @Content(schema = @Schema(implementation = ProblemDetail.class)))
     })
     @GetMapping(path = "/{city}")
-    public ResponseEntity<Weather> getWeather(
+    public CompletableFuture<ResponseEntity<byte[]>> getWeather(
             @PathVariable final String city,
             @Parameter(description = "List of APIs to query (e.g., fmi, smhi, yr). If not provided, all APIs are used.")
-            @RequestParam(required = false) String[] apis){
+            @RequestParam(required = false) String[] apis,
+            @Parameter(hidden = true)
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding){
+        boolean acceptsGzip = acceptsGzip(acceptEncoding);
         if(apis == null || apis.length == 0){
-            return weatherService.fetchWeatherMergedResponse(city);
+            return weatherService.fetchWeatherMergedResponse(city, acceptsGzip);
+        }
+        return weatherService.fetchWeatherMergedCustomApisResponse(city, List.of(apis), acceptsGzip);
+    }
+
+    /**
+     * Returns the weather for any coordinates, without having to find the closest city first.
+     * <p>
+     * The coordinates are snapped to a grid cell and the weather is for the center of the cell, so requests for
+     * coordinates close to each other share one cached response.
+     * <p>
+     * Example requests:
+     * <ul>
+     *     <li>GET /v1/weather/point?lat=59.33&amp;lon=18.07 — uses all available APIs (FMI, SMHI, YR)</li>
+     *     <li>GET /v1/weather/point?lat=59.33&amp;lon=18.07&amp;apis=smhi,yr — uses only the specified APIs</li>
+     * </ul>
+     *
+     * @param request the latitude and longitude
+     * @param apis optional list of APIs to query (e.g., fmi, smhi, yr); if omitted, all will be used
+     * @param acceptEncoding the Accept-Encoding header, the body is sent gzip encoded if the client accepts it
+     * @return the merged weather data for the grid cell as json, with a strong ETag
+     * @throws ApiConnectionException if all selected APIs are unavailable
+     */
+    @Operation(
+            summary = "Get weather by coordinates",
+            description = "Returns weather data for the grid cell the coordinates are in, from all APIs (FMI, SMHI, YR) " +
+                    "if no `apis` are specified."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved weather data", content =
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = Weather.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid latitude, longitude or APIs", content =
+                    @Content(schema = @Schema(implementation = ProblemDetail.class))),
+            @ApiResponse(responseCode = "503", description = "Service Unavailable", content =
+                    @Content(schema = @Schema(implementation = ProblemDetail.class)))
+    })
+    @GetMapping(path = "/point")
+    public CompletableFuture<ResponseEntity<byte[]>> getWeatherPoint(
+            @Valid @ModelAttribute WeatherPointRequest request,
+            @Parameter(description = "List of APIs to query (e.g., fmi, smhi, yr). If not provided, all APIs are used.")
+            @RequestParam(required = false) String[] apis,
+            @Parameter(hidden = true)
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding){
+        return weatherService.fetchWeatherPointResponse(request.lat(), request.lon(),
+                apis == null ? List.of() : List.of(apis), acceptsGzip(acceptEncoding));
+    }
+
+    /**
+     * Returns the weather for several cities in one request, each with its own APIs.
+     * <p>
+     * Cities that are cached are answered right away, the others are loaded in parallel. Every city gets its own
+     * status, a city that fails doesn't fail the others. The results are in the same order as the cities in the
+     * request, with {@code stream=true} each city is sent as its own line of ndjson as soon as it's ready instead.
+     * <p>
+     * Example request body:
+     * <pre>{"cities": [{"city": "Stockholm"}, {"city": "Göteborg", "apis": ["smhi", "yr"]}]}</pre>
+     *
+     * @param request the cities and their APIs, at most 50
+     * @return the weather or the error of every city
+     */
+    @Operation(
+            summary = "Get weather for several cities",
+            description = "Returns the weather for up to 50 cities, each with the APIs given for it or all APIs. " +
+                    "Every city has its own `status`, with the weather if it's 200 and an `error` otherwise. " +
+                    "With `?stream=true` every city is streamed as its own line of ndjson when it's ready."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The result of every city", content = {
+                    @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = WeatherBatchResult.class))),
+                    @Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = WeatherBatchResult.class))}),
+            @ApiResponse(responseCode = "400", description = "No cities, too many cities or a city without a name", content =
+                    @Content(schema = @Schema(implementation = ProblemDetail.class)))
+    })
+    @PostMapping(path = "/batch")
+    public CompletableFuture<List<WeatherBatchResult>> getWeatherBatch(@Valid @RequestBody WeatherBatchRequest request){
+        WeatherBatchResult[] results = new WeatherBatchResult[request.cities().size()];
+        // The request thread is released while the cities load, like on the other weather endpoints
+        return weatherBatchService.fetchWeatherBatch(request.cities(), result -> results[result.index()] = result)
+                .thenApply(ignored -> Arrays.asList(results));
+    }
+
+    // A query parameter instead of Accept: application/x-ndjson, a client accepting */* would match both mappings
+    @Operation(hidden = true)
+    @PostMapping(path = "/batch", params = "stream=true")
+    public ResponseBodyEmitter getWeatherBatchStream(@Valid @RequestBody WeatherBatchRequest request){
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter() {
+            @Override
+            protected void extendResponse(ServerHttpResponse outputMessage) {
+                super.extendResponse(outputMessage);
+                outputMessage.getHeaders().setContentType(MediaType.APPLICATION_NDJSON);
+            }
+        };
+        weatherBatchService.fetchWeatherBatch(request.cities(), result -> sendLine(emitter, result))
+                .whenComplete((ignored, throwable) -> emitter.complete());
+        return emitter;
+    }
+
+    // Results arrive from several threads, a line and its newline are sent together
+    private static void sendLine(ResponseBodyEmitter emitter, WeatherBatchResult result) {
+        synchronized (emitter) {
+            try {
+                emitter.send(result, MediaType.APPLICATION_JSON);
+                emitter.send("\n", MediaType.TEXT_PLAIN);
+            } catch (IOException | IllegalStateException e) {
+                // The client is gone, the remaining cities are still loaded into the cache
+                LOG.debug("Could not stream batch result for {}: {}", result.city(), e.getMessage());
+            }
+        }
+    }
+
+    // gzip is accepted if it's listed without q=0, the pre-rendered body only exists as json and gzip
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if(acceptEncoding == null) {
+            return false;
+        }
+        for (String encoding : acceptEncoding.split(",")) {
+            String[] parts = encoding.split(";");
+            if(parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
         }
-        return weatherService.fetchWeatherMergedCustomApisResponse(city, List.of(apis));
+        return false;
     }
 
 }
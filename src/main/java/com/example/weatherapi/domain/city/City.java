@@ -1,5 +1,6 @@
 package com.example.weatherapi.domain.city;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.*;
@@ -54,4 +55,13 @@ public class City {
     """
     )
     private List<ZonedDateTime> sunsetList;
+
+    // A grid cell of /weather/point instead of a city in the database, its weather is only kept in the point cache
+    @JsonIgnore
+    @Schema(hidden = true)
+    private boolean point;
+
+    public City(String name, Double lat, Double lon, List<ZonedDateTime> sunriseList, List<ZonedDateTime> sunsetList) {
+        this(name, lat, lon, sunriseList, sunsetList, false);
+    }
 }
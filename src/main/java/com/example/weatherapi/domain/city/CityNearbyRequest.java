@@ -0,0 +1,40 @@
+package com.example.weatherapi.domain.city;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Builder;
+
+@Builder
+public record CityNearbyRequest(
+
+        @Schema(description = "Latitute of the location", example = "59.3293")
+        @NotNull(message = "Latitude cannot be null")
+        @Min(value = 55, message = "Latitude must be between 55 and 71")
+        @Max(value = 71, message = "Latitude must be between 55 and 71")
+        Double lat,
+
+        @Schema(description = "Longitude of the location", example = "18.0686")
+        @NotNull(message = "Longitude cannot be null")
+        @Min(value = 4, message = "Longitude must be between 4 and 32")
+        @Max(value = 32, message = "Longitude must be between 4 and 32")
+        Double lon,
+
+        @Schema(description = "Max number of cities to return, 10 if not set", example = "10")
+        @Min(value = 1, message = "Limit must be between 1 and 100")
+        @Max(value = 100, message = "Limit must be between 1 and 100")
+        Integer limit,
+
+        @Schema(description = "Only return cities within this distance in km", example = "50")
+        @Min(value = 0, message = "Radius must be between 0 and 2000 km")
+        @Max(value = 2000, message = "Radius must be between 0 and 2000 km")
+        Double radiusKm
+) {
+
+    public static final int DEFAULT_LIMIT = 10;
+
+    public int limitOrDefault() {
+        return limit == null ? DEFAULT_LIMIT : limit;
+    }
+}
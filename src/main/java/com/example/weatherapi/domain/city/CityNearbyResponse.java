@@ -0,0 +1,3 @@
+package com.example.weatherapi.domain.city;
+
+public record CityNearbyResponse(String name, double lat, double lon, double distanceKm) { }
@@ -0,0 +1,61 @@
+package com.example.weatherapi.domain.city;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * The read only city of a cached weather, the sun lists are copied read only and every setter throws.
+ */
+public final class FrozenCity extends City {
+
+    private FrozenCity(City city) {
+        super(city.getName(), city.getLat(), city.getLon(),
+                city.getSunriseList() == null ? null : List.copyOf(city.getSunriseList()),
+                city.getSunsetList() == null ? null : List.copyOf(city.getSunsetList()),
+                city.isPoint());
+    }
+
+    /**
+     * @return a read only copy of the city, the city itself if it's already read only
+     */
+    public static City of(City city) {
+        if (city == null || city instanceof FrozenCity) {
+            return city;
+        }
+        return new FrozenCity(city);
+    }
+
+    @Override
+    public void setName(String name) {
+        throw frozen();
+    }
+
+    @Override
+    public void setLat(Double lat) {
+        throw frozen();
+    }
+
+    @Override
+    public void setLon(Double lon) {
+        throw frozen();
+    }
+
+    @Override
+    public void setSunriseList(List<ZonedDateTime> sunriseList) {
+        throw frozen();
+    }
+
+    @Override
+    public void setSunsetList(List<ZonedDateTime> sunsetList) {
+        throw frozen();
+    }
+
+    @Override
+    public void setPoint(boolean point) {
+        throw frozen();
+    }
+
+    private static UnsupportedOperationException frozen() {
+        return new UnsupportedOperationException("The city of a cached weather is shared and can't be changed");
+    }
+}
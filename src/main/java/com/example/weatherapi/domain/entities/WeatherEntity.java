@@ -32,4 +32,9 @@ public class WeatherEntity {
     @OneToMany(mappedBy = "weatherEntity", cascade = CascadeType.ALL)
     private List<WeatherDataEntity> weatherDataList;
 
+    // The whole time series packed by WeatherBlobCodec, null if it's stored as weather_data rows
+    @Lob
+    @Column(name = "data_blob")
+    private byte[] dataBlob;
+
 }
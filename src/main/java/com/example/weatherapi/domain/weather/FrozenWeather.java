@@ -0,0 +1,59 @@
+package com.example.weatherapi.domain.weather;
+
+import com.example.weatherapi.domain.city.City;
+import com.example.weatherapi.domain.city.FrozenCity;
+
+import java.time.ZonedDateTime;
+import java.util.Map;
+
+/**
+ * The read only weather that is kept in the cache, created by {@link Weather#freeze()}.<br>
+ * The same instance is handed to every request, so every setter throws instead of changing the weather for all of them.
+ */
+final class FrozenWeather extends Weather {
+
+    FrozenWeather(Weather weather) {
+        super(weather.getMessage(), weather.getTimestamp(), FrozenCity.of(weather.getCity()), weather.getInformation(),
+                null, weather.getSeries());
+    }
+
+    @Override
+    public void setMessage(String message) {
+        throw frozen();
+    }
+
+    @Override
+    public void setTimestamp(ZonedDateTime timestamp) {
+        throw frozen();
+    }
+
+    @Override
+    public void setCity(City city) {
+        throw frozen();
+    }
+
+    @Override
+    public void setInformation(Information information) {
+        throw frozen();
+    }
+
+    @Override
+    public void setWeatherData(Map<ZonedDateTime, WeatherData> weatherData) {
+        throw frozen();
+    }
+
+    @Override
+    public void setSeries(WeatherSeries series) {
+        throw frozen();
+    }
+
+    @Override
+    public void addWeatherData(ZonedDateTime validTime, float temperature, int weatherCode, float windSpeed,
+                               float windDirection, float humidity, float precipitation) {
+        throw frozen();
+    }
+
+    private static UnsupportedOperationException frozen() {
+        return new UnsupportedOperationException("Cached weather is shared and can't be changed");
+    }
+}
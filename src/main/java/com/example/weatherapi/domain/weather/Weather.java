@@ -1,8 +1,10 @@
 package com.example.weatherapi.domain.weather;
 
 import com.example.weatherapi.domain.city.City;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.*;
+import lombok.extern.jackson.Jacksonized;
 
 import java.time.ZonedDateTime;
 import java.util.*;
@@ -45,6 +47,12 @@ public class Weather {
     @Builder.Default
     private Map<ZonedDateTime, WeatherData> weatherData = new LinkedHashMap<>();
 
+    // Replaces weatherData in frozen weather and weather read from the database, see getWeatherData
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private WeatherSeries series;
+
     @Getter
     @Schema(name = "Information", description = "Units and time base used in the response")
     public static class Information {
@@ -65,30 +73,53 @@ public class Weather {
         private final String humidity = "%";
     }
 
-    @Data
-    @Builder
-    @NoArgsConstructor
-    @AllArgsConstructor
+    // Immutable so the merged map and the cache can share the same instances, use toBuilder() to change a value
+    @Value
+    @Builder(toBuilder = true)
+    @Jacksonized
     @Schema(name = "WeatherData", description = "Weather values for a specific timestamp")
     public static class WeatherData {
 
         @Schema(example = "1.9", description = "Air temperature in Celsius")
-        private float temperature;
+        float temperature;
 
         @Schema(example = "5", description = "Weather condition code")
-        private int weatherCode;
+        int weatherCode;
 
         @Schema(example = "1.4", description = "Wind speed in m/s")
-        private float windSpeed;
+        float windSpeed;
 
         @Schema(example = "48", description = "Wind direction in degrees", minimum = "0", maximum = "360")
-        private float windDirection;
+        float windDirection;
 
         @Schema(example = "0.0", description = "Precipitation in mm/hr")
-        private float precipitation;
+        float precipitation;
 
         @Schema(example = "50", description = "Relative humidity in percent", minimum = "0", maximum = "100")
-        private float humidity;
+        float humidity;
+    }
+
+    /**
+     * @return the weather data as a map, built from the series if this weather is backed by one
+     */
+    public Map<ZonedDateTime, WeatherData> getWeatherData() {
+        return series != null ? series.toMap() : weatherData;
+    }
+
+    public void setWeatherData(Map<ZonedDateTime, WeatherData> weatherData) {
+        this.weatherData = weatherData;
+        this.series = null;
+    }
+
+    /**
+     * @return the weather data as a columnar series, built from the map if this weather isn't backed by one
+     */
+    @JsonIgnore
+    public WeatherSeries getSeries() {
+        if (series != null) {
+            return series;
+        }
+        return weatherData == null ? WeatherSeries.empty() : WeatherSeries.of(weatherData);
     }
 
     public void addWeatherData(ZonedDateTime validTime,
@@ -98,6 +129,9 @@ public class Weather {
                                float windDirection,
                                float humidity,
                                float precipitation) {
+        if (series != null) {
+            throw new UnsupportedOperationException("Weather backed by a series can't be changed");
+        }
         weatherData.put(validTime, WeatherData.builder()
                 .temperature(temperature)
                 .weatherCode(weatherCode)
@@ -108,4 +142,15 @@ public class Weather {
                 .build());
     }
 
+    /**
+     * Creates a read only copy of this weather for the cache.<br>
+     * The weather data is kept as a series, which can't be modified and takes a fraction of the memory of the map,
+     * the city's sun lists are copied read only and every setter of the copy and its city throws, so the same
+     * instance can be handed out to every caller.
+     * @return the frozen copy, this weather if it's already frozen
+     */
+    public Weather freeze() {
+        return this instanceof FrozenWeather ? this : new FrozenWeather(this);
+    }
+
 }
@@ -0,0 +1,31 @@
+package com.example.weatherapi.domain.weather;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+public record WeatherBatchRequest(
+
+        @Schema(description = "The cities to get the weather for, at most 50")
+        @NotEmpty(message = "Cities cannot be empty")
+        @Size(max = 50, message = "At most 50 cities per batch")
+        List<@Valid @NotNull Entry> cities
+) {
+
+    public record Entry(
+
+            @Schema(description = "Name of the city", example = "Stockholm")
+            @NotBlank(message = "City cannot be blank")
+            String city,
+
+            @Schema(description = "APIs to merge (e.g., fmi, smhi, yr), all APIs if not provided", example = "[\"smhi\", \"yr\"]")
+            List<String> apis
+    ) { }
+}
@@ -0,0 +1,34 @@
+package com.example.weatherapi.domain.weather;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * The weather or the error for one entry of a batch request.
+ *
+ * @param index the position of the entry in the request, streamed results arrive in the order they complete
+ * @param weather the json body that was rendered when the weather was cached, embedded as it is
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record WeatherBatchResult(
+        int index,
+        String city,
+        List<String> apis,
+        int status,
+        @Schema(implementation = Weather.class)
+        @JsonRawValue
+        String weather,
+        String error
+) {
+
+    public static WeatherBatchResult success(int index, WeatherBatchRequest.Entry entry, String weather) {
+        return new WeatherBatchResult(index, entry.city(), entry.apis(), 200, weather, null);
+    }
+
+    public static WeatherBatchResult failure(int index, WeatherBatchRequest.Entry entry, int status, String error) {
+        return new WeatherBatchResult(index, entry.city(), entry.apis(), status, null, error);
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.weatherapi.domain.weather;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.*;
+
+/**
+ * The time series of a forecast stored column by column in primitive arrays, sorted by time.<br>
+ * A map entry with a boxed timestamp and a WeatherData object per hour takes several times the memory, so the cache,
+ * the merge and the database work on this and the map is only built for the json response.
+ * Immutable, the arrays are never handed out.
+ */
+public final class WeatherSeries {
+
+    private static final WeatherSeries EMPTY = new WeatherSeries(new long[0], new float[0], new int[0],
+            new float[0], new float[0], new float[0], new float[0]);
+
+    private final long[] epochSeconds;
+    private final float[] temperature;
+    private final int[] weatherCode;
+    private final float[] windSpeed;
+    private final float[] windDirection;
+    private final float[] precipitation;
+    private final float[] humidity;
+
+    private WeatherSeries(long[] epochSeconds, float[] temperature, int[] weatherCode, float[] windSpeed,
+                          float[] windDirection, float[] precipitation, float[] humidity) {
+        this.epochSeconds = epochSeconds;
+        this.temperature = temperature;
+        this.weatherCode = weatherCode;
+        this.windSpeed = windSpeed;
+        this.windDirection = windDirection;
+        this.precipitation = precipitation;
+        this.humidity = humidity;
+    }
+
+    public static WeatherSeries empty() {
+        return EMPTY;
+    }
+
+    public static WeatherSeries of(Map<ZonedDateTime, Weather.WeatherData> weatherData) {
+        Builder builder = builder(weatherData.size());
+        weatherData.forEach((validTime, data) -> builder.add(validTime.toEpochSecond(), data));
+        return builder.build();
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public int size() {
+        return epochSeconds.length;
+    }
+
+    public boolean isEmpty() {
+        return epochSeconds.length == 0;
+    }
+
+    public long epochSecond(int index) {
+        return epochSeconds[index];
+    }
+
+    public ZonedDateTime validTime(int index) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSeconds[index]), ZoneOffset.UTC);
+    }
+
+    public float temperature(int index) {
+        return temperature[index];
+    }
+
+    public int weatherCode(int index) {
+        return weatherCode[index];
+    }
+
+    public float windSpeed(int index) {
+        return windSpeed[index];
+    }
+
+    public float windDirection(int index) {
+        return windDirection[index];
+    }
+
+    public float precipitation(int index) {
+        return precipitation[index];
+    }
+
+    public float humidity(int index) {
+        return humidity[index];
+    }
+
+    public Weather.WeatherData weatherData(int index) {
+        return Weather.WeatherData.builder()
+                .temperature(temperature[index])
+                .weatherCode(weatherCode[index])
+                .windSpeed(windSpeed[index])
+                .windDirection(windDirection[index])
+                .precipitation(precipitation[index])
+                .humidity(humidity[index])
+                .build();
+    }
+
+    /**
+     * @return the index of the timestamp, or a negative value if the series doesn't have it
+     */
+    public int indexOf(long epochSecond) {
+        return Arrays.binarySearch(epochSeconds, epochSecond);
+    }
+
+    /**
+     * Builds the map the json response is made of, keyed by UTC timestamps in time order.
+     * @return a new read only map
+     */
+    public Map<ZonedDateTime, Weather.WeatherData> toMap() {
+        Map<ZonedDateTime, Weather.WeatherData> weatherData = new LinkedHashMap<>(size() * 4 / 3 + 1);
+        for (int i = 0; i < size(); i++) {
+            weatherData.put(validTime(i), weatherData(i));
+        }
+        return Collections.unmodifiableMap(weatherData);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof WeatherSeries other)) return false;
+        return Arrays.equals(epochSeconds, other.epochSeconds)
+                && Arrays.equals(temperature, other.temperature)
+                && Arrays.equals(weatherCode, other.weatherCode)
+                && Arrays.equals(windSpeed, other.windSpeed)
+                && Arrays.equals(windDirection, other.windDirection)
+                && Arrays.equals(precipitation, other.precipitation)
+                && Arrays.equals(humidity, other.humidity);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(epochSeconds);
+        result = 31 * result + Arrays.hashCode(temperature);
+        result = 31 * result + Arrays.hashCode(weatherCode);
+        result = 31 * result + Arrays.hashCode(windSpeed);
+        result = 31 * result + Arrays.hashCode(windDirection);
+        result = 31 * result + Arrays.hashCode(precipitation);
+        result = 31 * result + Arrays.hashCode(humidity);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "WeatherSeries(size=" + size() + ")";
+    }
+
+    /**
+     * Collects points in any order, build sorts them by time and keeps the first point of a timestamp added twice.
+     */
+    public static final class Builder {
+
+        private long[] epochSeconds;
+        private float[] temperature;
+        private int[] weatherCode;
+        private float[] windSpeed;
+        private float[] windDirection;
+        private float[] precipitation;
+        private float[] humidity;
+        private int size;
+        private boolean sorted = true;
+
+        private Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 16);
+            epochSeconds = new long[capacity];
+            temperature = new float[capacity];
+            weatherCode = new int[capacity];
+            windSpeed = new float[capacity];
+            windDirection = new float[capacity];
+            precipitation = new float[capacity];
+            humidity = new float[capacity];
+        }
+
+        public Builder add(long epochSecond, Weather.WeatherData data) {
+            return add(epochSecond, data.getTemperature(), data.getWeatherCode(), data.getWindSpeed(),
+                    data.getWindDirection(), data.getHumidity(), data.getPrecipitation());
+        }
+
+        // Same order of values as Weather.addWeatherData
+        public Builder add(long epochSecond, float temperature, int weatherCode, float windSpeed,
+                           float windDirection, float humidity, float precipitation) {
+            if (size == epochSeconds.length) {
+                grow();
+            }
+            if (size > 0 && epochSecond <= epochSeconds[size - 1]) {
+                sorted = false;
+            }
+            this.epochSeconds[size] = epochSecond;
+            this.temperature[size] = temperature;
+            this.weatherCode[size] = weatherCode;
+            this.windSpeed[size] = windSpeed;
+            this.windDirection[size] = windDirection;
+            this.precipitation[size] = precipitation;
+            this.humidity[size] = humidity;
+            size++;
+            return this;
+        }
+
+        public WeatherSeries build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            if (sorted) {
+                return new WeatherSeries(Arrays.copyOf(epochSeconds, size), Arrays.copyOf(temperature, size),
+                        Arrays.copyOf(weatherCode, size), Arrays.copyOf(windSpeed, size),
+                        Arrays.copyOf(windDirection, size), Arrays.copyOf(precipitation, size),
+                        Arrays.copyOf(humidity, size));
+            }
+            return buildSorted();
+        }
+
+        private WeatherSeries buildSorted() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            // Stable, so the first point added for a timestamp comes first
+            Arrays.sort(order, Comparator.comparingLong(i -> epochSeconds[i]));
+
+            Builder unique = new Builder(size);
+            for (int i : order) {
+                if (unique.size > 0 && unique.epochSeconds[unique.size - 1] == epochSeconds[i]) {
+                    continue;
+                }
+                unique.add(epochSeconds[i], temperature[i], weatherCode[i], windSpeed[i],
+                        windDirection[i], humidity[i], precipitation[i]);
+            }
+            return unique.build();
+        }
+
+        private void grow() {
+            int capacity = epochSeconds.length * 2;
+            epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+            temperature = Arrays.copyOf(temperature, capacity);
+            weatherCode = Arrays.copyOf(weatherCode, capacity);
+            windSpeed = Arrays.copyOf(windSpeed, capacity);
+            windDirection = Arrays.copyOf(windDirection, capacity);
+            precipitation = Arrays.copyOf(precipitation, capacity);
+            humidity = Arrays.copyOf(humidity, capacity);
+        }
+    }
+}
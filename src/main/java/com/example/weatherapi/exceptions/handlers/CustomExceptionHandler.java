@@ -18,6 +18,7 @@ import java.net.URI;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Comparator;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 @ControllerAdvice
@@ -112,12 +113,26 @@ public class CustomExceptionHandler {
         return createProblemDetail(HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage(), request,generateTypeFromException(ex));
     }
 
+    // The executor of the weather loads is full
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ProblemDetail handleRejectedExecutionException(RejectedExecutionException ex, WebRequest request) {
+        logger.warn("Weather load rejected: {}", ex.getMessage());
+        return createProblemDetail(HttpStatus.SERVICE_UNAVAILABLE, "Too many weather requests are loading right now, please try again later.", request, generateTypeFromException(ex));
+    }
+
     @ExceptionHandler(RateLimitExceededException.class)
     public ProblemDetail handleRateLimitExceededException(RateLimitExceededException ex, WebRequest request) {
         logger.warn(ex.getMessage());
         return createProblemDetail(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage(), request, generateTypeFromException(ex));
     }
 
+    // A single api request whose api couldn't be reached
+    @ExceptionHandler(ApiConnectionException.class)
+    public ProblemDetail handleApiConnectionException(ApiConnectionException ex, WebRequest request) {
+        logger.warn(ex.getMessage());
+        return createProblemDetail(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage(), request, generateTypeFromException(ex));
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ProblemDetail handleMethodArgumentNotValid(MethodArgumentNotValidException ex, WebRequest request) {
         // Get all validation errors and join them into a single string sorted by alphabetical order of the field name,
@@ -0,0 +1,80 @@
+package com.example.weatherapi.http;
+
+import javax.net.ssl.*;
+import java.security.KeyManagementException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * SSLContext that delegates everything to another context but counts the created SSLEngines.<br>
+ * The JDK HttpClient creates exactly one engine per new TLS connection, so the counter tells us how many
+ * connections were opened compared to how many requests were sent.
+ * The engines are wrapped in {@link HandshakeTimingSslEngine}, which reports how long each connection's handshake took.
+ */
+final class ConnectionCountingSslContext extends SSLContext {
+
+    ConnectionCountingSslContext(SSLContext delegate, LongAdder connections, LongConsumer handshakeNanos) {
+        super(new CountingSpi(delegate, connections, handshakeNanos), delegate.getProvider(), delegate.getProtocol());
+    }
+
+    private static final class CountingSpi extends SSLContextSpi {
+
+        private final SSLContext delegate;
+        private final LongAdder connections;
+        private final LongConsumer handshakeNanos;
+
+        private CountingSpi(SSLContext delegate, LongAdder connections, LongConsumer handshakeNanos) {
+            this.delegate = delegate;
+            this.connections = connections;
+            this.handshakeNanos = handshakeNanos;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr) throws KeyManagementException {
+            delegate.init(km, tm, sr);
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            connections.increment();
+            return new HandshakeTimingSslEngine(delegate.createSSLEngine(), handshakeNanos);
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            connections.increment();
+            return new HandshakeTimingSslEngine(delegate.createSSLEngine(host, port), handshakeNanos);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.weatherapi.http;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+
+@Component
+public class FmiHttpClient extends UpstreamHttpClient {
+
+    public FmiHttpClient(
+            @Value("${fmi.http.version:HTTP_2}") HttpClient.Version version,
+            @Value("${fmi.http.connect-timeout-ms:3000}") long connectTimeoutMs,
+            @Value("${fmi.http.request-timeout-ms:6000}") long requestTimeoutMs) {
+        super("Fmi", version, connectTimeoutMs, requestTimeoutMs);
+    }
+}
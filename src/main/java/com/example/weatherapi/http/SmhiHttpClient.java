@@ -0,0 +1,17 @@
+package com.example.weatherapi.http;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+
+@Component
+public class SmhiHttpClient extends UpstreamHttpClient {
+
+    public SmhiHttpClient(
+            @Value("${smhi.http.version:HTTP_2}") HttpClient.Version version,
+            @Value("${smhi.http.connect-timeout-ms:3000}") long connectTimeoutMs,
+            @Value("${smhi.http.request-timeout-ms:6000}") long requestTimeoutMs) {
+        super("Smhi", version, connectTimeoutMs, requestTimeoutMs);
+    }
+}
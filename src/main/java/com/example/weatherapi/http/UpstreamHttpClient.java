@@ -0,0 +1,172 @@
+package com.example.weatherapi.http;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Long-lived HTTP client for one upstream weather provider.<br>
+ * Each provider gets its own {@link HttpClient}, so connections (and HTTP/2 streams where the provider supports it)
+ * are reused between fetches instead of paying a new TCP and TLS handshake on every cache miss.
+ * <p>
+ * The JDK client does not expose connection events, so new connections are counted through
+ * {@link ConnectionCountingSslContext}. It can't tell which request a connection was opened for, so reuse is only
+ * reported for all requests together, as the ratio of opened connections to sent requests.
+ * The TLS handshake of every new connection is timed by the engines of that context.
+ */
+public abstract class UpstreamHttpClient implements MeterBinder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UpstreamHttpClient.class);
+
+    private final String api;
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private volatile Timer requestTimer;
+    private volatile Timer handshakeTimer;
+    private volatile Timer successfulFetchTimer;
+    private volatile Timer failedFetchTimer;
+
+    protected UpstreamHttpClient(String api, HttpClient.Version version, long connectTimeoutMs, long requestTimeoutMs) {
+        this.api = api;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.httpClient = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .sslContext(new ConnectionCountingSslContext(defaultSslContext(), connections, this::recordHandshake))
+                .build();
+        LOG.info("Created {} HTTP client with version: {}, connect timeout: {} ms, request timeout: {} ms",
+                api, version, connectTimeoutMs, requestTimeoutMs);
+    }
+
+    public HttpResponse<String> get(URI uri) throws IOException, InterruptedException {
+        return get(uri, null, HttpResponse.BodyHandlers.ofString());
+    }
+
+    public HttpResponse<String> get(URI uri, Map<String, String> headers) throws IOException, InterruptedException {
+        return get(uri, headers, HttpResponse.BodyHandlers.ofString());
+    }
+
+    public <T> HttpResponse<T> get(URI uri, Map<String, String> headers, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                .uri(uri)
+                .timeout(requestTimeout)
+                .GET();
+
+        if (headers != null) {
+            headers.forEach(requestBuilder::header);
+        }
+
+        long start = System.nanoTime();
+        requests.increment();
+        try {
+            return httpClient.send(requestBuilder.build(), bodyHandler);
+        } catch (IOException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            Timer timer = requestTimer;
+            if (timer != null) {
+                timer.record(elapsed, TimeUnit.NANOSECONDS);
+            }
+            LOG.debug("{} request took {} ms", api, elapsed / 1000000);
+        }
+    }
+
+    /**
+     * Records a whole fetch from the provider, from sending the request until the body was parsed.<br>
+     * The request timer stops when the headers arrive, this one also covers streaming and parsing the body,
+     * and counts every failed fetch, bad status codes and parse errors included.
+     * @param elapsedNanos the duration of the fetch
+     * @param success false if the fetch failed for any reason
+     */
+    public void recordFetch(long elapsedNanos, boolean success) {
+        Timer timer = success ? successfulFetchTimer : failedFetchTimer;
+        if (timer != null) {
+            timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void recordHandshake(long elapsedNanos) {
+        Timer timer = handshakeTimer;
+        if (timer != null) {
+            timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Share of requests that were served on an already open connection, 0 before the first request.
+     */
+    public double getConnectionReuseRatio() {
+        long total = requests.sum();
+        if (total == 0) {
+            return 0;
+        }
+        return Math.max(0, 1 - (double) connections.sum() / total);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        String apiTag = api.toUpperCase();
+        requestTimer = Timer.builder("upstream.http.requests")
+                .description("Upstream HTTP request latency")
+                .tag("api", apiTag)
+                .register(registry);
+        handshakeTimer = Timer.builder("upstream.http.handshake")
+                .description("TLS handshake time of new upstream connections")
+                .tag("api", apiTag)
+                .register(registry);
+        successfulFetchTimer = Timer.builder("upstream.fetch")
+                .description("Upstream fetch latency including parsing the response")
+                .tag("api", apiTag)
+                .tag("outcome", "success")
+                .register(registry);
+        failedFetchTimer = Timer.builder("upstream.fetch")
+                .description("Upstream fetch latency including parsing the response")
+                .tag("api", apiTag)
+                .tag("outcome", "error")
+                .register(registry);
+        FunctionCounter.builder("upstream.http.connections", connections, LongAdder::sum)
+                .description("TLS connections opened to the upstream API")
+                .tag("api", apiTag)
+                .register(registry);
+        FunctionCounter.builder("upstream.http.failures", failures, LongAdder::sum)
+                .description("Upstream HTTP requests that failed with an I/O error")
+                .tag("api", apiTag)
+                .register(registry);
+        Gauge.builder("upstream.http.connection.reuse.ratio", this, UpstreamHttpClient::getConnectionReuseRatio)
+                .description("Share of upstream requests served on a reused connection")
+                .tag("api", apiTag)
+                .register(registry);
+    }
+
+    private static SSLContext defaultSslContext() {
+        try {
+            return SSLContext.getDefault();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No default SSLContext available", e);
+        }
+    }
+}
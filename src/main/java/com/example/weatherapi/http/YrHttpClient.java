@@ -0,0 +1,17 @@
+package com.example.weatherapi.http;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+
+@Component
+public class YrHttpClient extends UpstreamHttpClient {
+
+    public YrHttpClient(
+            @Value("${yr.http.version:HTTP_2}") HttpClient.Version version,
+            @Value("${yr.http.connect-timeout-ms:3000}") long connectTimeoutMs,
+            @Value("${yr.http.request-timeout-ms:6000}") long requestTimeoutMs) {
+        super("Yr", version, connectTimeoutMs, requestTimeoutMs);
+    }
+}
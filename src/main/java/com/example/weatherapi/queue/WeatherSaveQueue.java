@@ -1,15 +1,26 @@
 package com.example.weatherapi.queue;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 
 @Component
-public class WeatherSaveQueue {
+public class WeatherSaveQueue implements MeterBinder {
 
     private static final Logger LOG = LoggerFactory.getLogger(WeatherSaveQueue.class);
 
@@ -17,7 +28,7 @@ public class WeatherSaveQueue {
     private static final long RETRY_SLEEP_MS = 100;
     public static final int MAX_RETRY = 3;
 
-    private final BlockingQueue<Runnable> taskQueue = new LinkedBlockingQueue<>(MAX_QUEUE_SIZE);
+    private final BlockingQueue<QueuedTask> taskQueue = new LinkedBlockingQueue<>(MAX_QUEUE_SIZE);
     private final ExecutorService executorService = Executors.newSingleThreadExecutor(r -> {
         Thread thread = new Thread(r, "SaveWorker");
         thread.setDaemon(true);
@@ -26,6 +37,29 @@ public class WeatherSaveQueue {
 
     private volatile boolean running = true;
 
+    private final LongAdder droppedTasks = new LongAdder();
+    private final LongAdder failedTasks = new LongAdder();
+    private volatile Timer taskLatencyTimer;
+    private volatile Timer batchTimer;
+
+    // Null runs every task on its own, without a transaction around it
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public WeatherSaveQueue() {
+        this(null, 1);
+    }
+
+    /**
+     * @param transactionTemplate the transaction that queued tasks are run in, all tasks of a batch share one
+     * @param batchSize max number of queued tasks that are taken and written together
+     */
+    @Autowired
+    public WeatherSaveQueue(TransactionTemplate transactionTemplate,
+                            @Value("${save.queue.batch-size:50}") int batchSize) {
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = Math.max(1, batchSize);
+    }
 
     @PostConstruct
     public void startWorker() {
@@ -33,9 +67,12 @@ public class WeatherSaveQueue {
         executorService.submit(() -> {
             while (running || !taskQueue.isEmpty()) {
                 try {
-                    Runnable task = taskQueue.poll(1, TimeUnit.SECONDS);
+                    QueuedTask task = taskQueue.poll(1, TimeUnit.SECONDS);
                     if (task != null) {
-                        executeTaskWithRetry(task);
+                        List<QueuedTask> batch = new ArrayList<>(batchSize);
+                        batch.add(task);
+                        taskQueue.drainTo(batch, batchSize - 1);
+                        executeBatch(batch);
                     }
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
@@ -51,11 +88,31 @@ public class WeatherSaveQueue {
         if (!running) {
             throw new IllegalStateException("Cannot add tasks after shutdown");
         }
-        if (!taskQueue.offer(task)) {
+        if (!taskQueue.offer(new QueuedTask(task, System.nanoTime()))) {
+            droppedTasks.increment();
             LOG.error("Task queue is full! Task dropped.");
         }
     }
 
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("save.queue.depth", taskQueue, BlockingQueue::size)
+                .description("Tasks waiting in the save queue")
+                .register(registry);
+        FunctionCounter.builder("save.queue.dropped", droppedTasks, LongAdder::sum)
+                .description("Tasks dropped because the save queue was full")
+                .register(registry);
+        FunctionCounter.builder("save.queue.failed", failedTasks, LongAdder::sum)
+                .description("Tasks given up on after the max number of retries")
+                .register(registry);
+        taskLatencyTimer = Timer.builder("save.queue.task.latency")
+                .description("Time from a task being queued until it was written")
+                .register(registry);
+        batchTimer = Timer.builder("save.queue.batch")
+                .description("Time to write one batch of tasks")
+                .register(registry);
+    }
+
     @PreDestroy
     public void shutdownWorker() {
         running = false;
@@ -71,16 +128,53 @@ public class WeatherSaveQueue {
         }
     }
 
+    /**
+     * Runs all tasks of the batch in one transaction, so Hibernate can send their inserts as JDBC batches
+     * and commits once for the whole batch.<br>
+     * If the batch fails it's rolled back and every task is run again on its own, so one bad task doesn't
+     * drop the others.
+     */
+    private void executeBatch(List<QueuedTask> batch) {
+        long start = System.nanoTime();
+        if (batch.size() == 1 || transactionTemplate == null) {
+            batch.forEach(this::executeTaskWithRetry);
+        } else {
+            try {
+                transactionTemplate.executeWithoutResult(status -> batch.forEach(QueuedTask::run));
+                LOG.debug("Saved batch of {} tasks in {} ms", batch.size(), (System.nanoTime() - start) / 1000000);
+            } catch (Exception e) {
+                LOG.warn("Batch of {} tasks failed, running them one at a time: {}", batch.size(), e.getMessage());
+                batch.forEach(this::executeTaskWithRetry);
+            }
+        }
+        recordBatch(batch, start);
+    }
+
+    private void recordBatch(List<QueuedTask> batch, long start) {
+        long end = System.nanoTime();
+        if (batchTimer != null) {
+            batchTimer.record(end - start, TimeUnit.NANOSECONDS);
+        }
+        if (taskLatencyTimer != null) {
+            batch.forEach(task -> taskLatencyTimer.record(end - task.queuedAt(), TimeUnit.NANOSECONDS));
+        }
+    }
+
     private void executeTaskWithRetry(Runnable task) {
         int attempt = 1;
         while (true) {
             try {
-                task.run();
+                if (transactionTemplate != null) {
+                    transactionTemplate.executeWithoutResult(status -> task.run());
+                } else {
+                    task.run();
+                }
                 return;
             } catch (Exception e) {
                 LOG.error("Task execution failed on attempt {}: {}", attempt, task, e);
                 if (attempt >= MAX_RETRY) {
                     LOG.error("Max retries reached for task: {}", task);
+                    failedTasks.increment();
                     return;
                 }
                 attempt++;
@@ -95,4 +189,17 @@ public class WeatherSaveQueue {
         }
     }
 
+    // The task with the time it was queued, for the latency of the queue
+    private record QueuedTask(Runnable task, long queuedAt) implements Runnable {
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
 }
@@ -0,0 +1,48 @@
+package com.example.weatherapi.ratelimits;
+
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.function.Supplier;
+
+/**
+ * The lane an upstream fetch waits in at the rate limiters.<br>
+ * INTERACTIVE fetches are for requests a user is waiting for and always get the next request interval first,
+ * BACKGROUND fetches refresh the cache and only get the intervals no interactive fetch is waiting for.
+ * <p>
+ * The priority belongs to the thread that starts the fetch, it's INTERACTIVE unless the work is run with
+ * runInBackground, callInBackground or on an executor decorated with backgroundTaskDecorator.
+ */
+public enum FetchPriority {
+    INTERACTIVE,
+    BACKGROUND;
+
+    private static final ThreadLocal<FetchPriority> CURRENT = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    public static FetchPriority current() {
+        return CURRENT.get();
+    }
+
+    public static void runInBackground(Runnable task) {
+        callInBackground(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public static <T> T callInBackground(Supplier<T> task) {
+        FetchPriority previous = CURRENT.get();
+        CURRENT.set(BACKGROUND);
+        try {
+            return task.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * @return a decorator that runs every task of the executor as BACKGROUND
+     */
+    public static TaskDecorator backgroundTaskDecorator() {
+        return task -> () -> runInBackground(task);
+    }
+}
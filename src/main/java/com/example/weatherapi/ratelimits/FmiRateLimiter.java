@@ -14,8 +14,10 @@ public class FmiRateLimiter extends RateLimiter {
     public FmiRateLimiter(
             @Value("${fmi.rate-limiter.minimum-request-interval-ms:200}") long timePerRequestMs,
             @Value("${fmi.rate-limiter.burst-capacity:600}") long burstCapacity,
-            @Value("${fmi.rate-limiter.daily-capacity:10000}") long dailyCapacity) {
+            @Value("${fmi.rate-limiter.daily-capacity:10000}") long dailyCapacity,
+            RateLimitBucketStore bucketStore) {
         super("Fmi",
+                bucketStore,
                 createRequestBandwidth(timePerRequestMs),
                 createBurstBandwidth(burstCapacity),
                 createDailyBandwidth(dailyCapacity)
@@ -0,0 +1,159 @@
+package com.example.weatherapi.ratelimits;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.distributed.jdbc.PrimaryKeyMapper;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import io.github.bucket4j.distributed.proxy.optimization.DelayParameters;
+import io.github.bucket4j.distributed.proxy.optimization.Optimization;
+import io.github.bucket4j.distributed.proxy.optimization.Optimizations;
+import io.github.bucket4j.mysql.Bucket4jMySQL;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the buckets in a database table, so every instance of the application shares one budget per api and it
+ * survives restarts.
+ * <p>
+ * A bucket row is locked with SELECT ... FOR UPDATE while its tokens are taken. To keep the database off the hot path
+ * each instance takes up to max-unsynced-tokens tokens from its local copy of the bucket and writes them back in one
+ * go, at the latest after max-unsynced-ms. Together the instances can go over a limit by at most that many tokens
+ * each, 0 syncs every token.
+ * <p>
+ * The rate limiters take the tokens on the store's own threads, at most rate-limiter.jdbc.threads database calls run
+ * at once.
+ * <p>
+ * The table is created on startup if it doesn't exist yet. Turn it off with rate-limiter.jdbc.create-table=false when
+ * the application user isn't allowed to create tables.
+ */
+@Component
+@ConditionalOnProperty(name = "rate-limiter.store", havingValue = "jdbc")
+public class JdbcBucketStore implements RateLimitBucketStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcBucketStore.class);
+
+    private final ProxyManager<String> proxyManager;
+    private final Optimization optimization;
+    private final ExecutorService executor;
+
+    public JdbcBucketStore(DataSource dataSource, String table, long maxUnsyncedTokens, long maxUnsyncedMs) {
+        this(dataSource, table, maxUnsyncedTokens, maxUnsyncedMs, 2, true);
+    }
+
+    @Autowired
+    public JdbcBucketStore(DataSource dataSource,
+                           @Value("${rate-limiter.jdbc.table:rate_limit_bucket}") String table,
+                           @Value("${rate-limiter.jdbc.max-unsynced-tokens:10}") long maxUnsyncedTokens,
+                           @Value("${rate-limiter.jdbc.max-unsynced-ms:1000}") long maxUnsyncedMs,
+                           @Value("${rate-limiter.jdbc.threads:4}") int threads,
+                           @Value("${rate-limiter.jdbc.create-table:true}") boolean createTable) {
+        if (createTable) {
+            createTableIfMissing(dataSource, table);
+        }
+        this.proxyManager = Bucket4jMySQL.selectForUpdateBasedBuilder(dataSource)
+                .primaryKeyMapper(PrimaryKeyMapper.STRING)
+                .table(table)
+                .idColumn("id")
+                .stateColumn("state")
+                .build();
+        this.optimization = maxUnsyncedTokens > 0
+                ? Optimizations.delaying(new DelayParameters(maxUnsyncedTokens, Duration.ofMillis(maxUnsyncedMs)))
+                : null;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "RateLimitStore-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        LOG.info("Rate limit buckets are shared through the {} table", table);
+    }
+
+    /**
+     * The capacity and refill are part of the key, a changed limit starts a new bucket instead of using the stored
+     * one, e.g. smhi:daily:10000:10000/86400000 for 10000 tokens refilled every 86400000 ms.
+     */
+    @Override
+    public Bucket getBucket(String key, Bandwidth limit) {
+        BucketConfiguration configuration = BucketConfiguration.builder().addLimit(limit).build();
+        String bucketKey = key + ":" + limit.getCapacity() + ":" + limit.getRefillTokens() + "/"
+                + TimeUnit.NANOSECONDS.toMillis(limit.getRefillPeriodNanos());
+        if (optimization == null) {
+            return proxyManager.builder().build(bucketKey, () -> configuration);
+        }
+        return proxyManager.builder()
+                .withOptimization(optimization)
+                .build(bucketKey, () -> configuration);
+    }
+
+    private static void createTableIfMissing(DataSource dataSource, String table) {
+        String sql = "CREATE TABLE IF NOT EXISTS " + table + " (id VARCHAR(64) NOT NULL PRIMARY KEY, state BLOB)";
+        try (Connection connection = dataSource.getConnection()) {
+            if (hasTable(connection.getMetaData(), table)) {
+                return;
+            }
+            // IF NOT EXISTS, another instance starting at the same time may create it first
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+                LOG.info("Created the {} table", table);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not create the " + table + " table, create it with " + sql, e);
+        }
+    }
+
+    /**
+     * Databases differ in the case they store names in, so the table is looked up in both.
+     */
+    private static boolean hasTable(DatabaseMetaData metaData, String table) throws SQLException {
+        String catalog = metaData.getConnection().getCatalog();
+        for (String name : new String[]{table, table.toUpperCase()}) {
+            try (ResultSet tables = metaData.getTables(catalog, null, name, null)) {
+                if (tables.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Executor executor() {
+        return executor;
+    }
+
+    /**
+     * Lets the database calls that already started finish, tokens asked for after this fail like any other store error.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                LOG.warn("Rate limit store threads did not terminate within the timeout, forcing shutdown");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+}
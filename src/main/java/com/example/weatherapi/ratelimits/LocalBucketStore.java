@@ -0,0 +1,30 @@
+package com.example.weatherapi.ratelimits;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.TimeMeter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the buckets in memory, every instance of the application has its own budget and it starts full after a restart.
+ */
+@Component
+@ConditionalOnProperty(name = "rate-limiter.store", havingValue = "local", matchIfMissing = true)
+public class LocalBucketStore implements RateLimitBucketStore {
+
+    private final TimeMeter timeMeter;
+
+    public LocalBucketStore() {
+        this(TimeMeter.SYSTEM_MILLISECONDS);
+    }
+
+    public LocalBucketStore(TimeMeter timeMeter) {
+        this.timeMeter = timeMeter;
+    }
+
+    @Override
+    public Bucket getBucket(String key, Bandwidth limit) {
+        return Bucket.builder().addLimit(limit).withCustomTimePrecision(timeMeter).build();
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.weatherapi.ratelimits;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Where the burst and daily buckets of the rate limiters keep their tokens.
+ */
+public interface RateLimitBucketStore {
+
+    /**
+     * @param key the name of the bucket, the same key is the same bucket for everyone using the store
+     * @param limit the capacity and refill of the bucket
+     */
+    Bucket getBucket(String key, Bandwidth limit);
+
+    /**
+     * Where the rate limiters take tokens from the buckets after a waiter got its request interval.<br>
+     * A store that blocks on I/O returns its own threads, so the rate limiter's scheduler thread never waits for it.
+     * @return runs the task on the calling thread unless overridden
+     */
+    default Executor executor() {
+        return Runnable::run;
+    }
+}
@@ -2,40 +2,126 @@ package com.example.weatherapi.ratelimits;
 
 import com.example.weatherapi.exceptions.RateLimitExceededException;
 import io.github.bucket4j.*;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
-public abstract class RateLimiter {
+/**
+ * Spaces the requests to an upstream API by its minimum request interval and enforces its burst and daily limits.
+ * <p>
+ * Callers wait in one of two lanes, see {@link FetchPriority}. A request interval goes to the oldest interactive
+ * waiter, background waiters only get the intervals no interactive waiter needs. Waiting doesn't hold a thread, a
+ * scheduler completes the future of the next waiter when the interval has passed. A caller whose wait would be longer
+ * than its max wait is rejected right away instead of waiting in vain, and is dropped if the wait gets longer while it
+ * is queued, for example when interactive waiters go ahead of a background one.
+ * <p>
+ * The burst and daily buckets may be in a database, so the scheduler only hands out the intervals. The tokens of the
+ * burst and daily limits are taken afterwards on the executor of the bucket store.
+ */
+public abstract class RateLimiter implements MeterBinder {
 
     private final Logger LOG = LoggerFactory.getLogger(RateLimiter.class);
 
+    // One daemon thread for every limiter unless another scheduler is passed, it only hands the request intervals to the waiters
+    private static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler();
+
     private final Bucket perRequestBucket;
     private final Bucket burstBucket;
     private final Bucket dailyBucket;
+    // Where the burst and daily tokens are taken, never the scheduler thread if the buckets need I/O
+    private final Executor limitExecutor;
 
     private final TimeMeter timeMeter;
+    private final ScheduledExecutorService scheduler;
 
     private final long burstCapacity;
     private final long dailyCapacity;
     private final String burstRefillInterval;
     private final String api;
 
+    private final LongAdder burstRejections = new LongAdder();
+    private final LongAdder dailyRejections = new LongAdder();
+    private final LongAdder deadlineRejections = new LongAdder();
+    private volatile Timer waitTimer;
+
+    private final long requestIntervalNanos;
+    // The lanes and the scheduled drain are guarded by interactiveLane
+    private final Deque<Waiter> interactiveLane = new ArrayDeque<>();
+    private final Deque<Waiter> backgroundLane = new ArrayDeque<>();
+    private ScheduledFuture<?> scheduledDrain;
+
+    private volatile Duration interactiveMaxWait = Duration.ofSeconds(10);
+    private volatile Duration backgroundMaxWait = Duration.ofMinutes(1);
+
     protected RateLimiter(String api, Bandwidth perRequestLimit, Bandwidth burstLimit, Bandwidth dailyLimit) {
         this(api, TimeMeter.SYSTEM_MILLISECONDS, perRequestLimit, burstLimit, dailyLimit);
     }
 
     protected RateLimiter(String api, TimeMeter timeMeter, Bandwidth perRequestLimit, Bandwidth burstLimit, Bandwidth dailyLimit) {
+        this(api, timeMeter, SCHEDULER, perRequestLimit, burstLimit, dailyLimit);
+    }
+
+    /**
+     * @param scheduler runs the drains and timeouts of the waiters, tests pass one that only runs them when its clock
+     * is moved forward together with the time meter
+     */
+    protected RateLimiter(String api, TimeMeter timeMeter, ScheduledExecutorService scheduler,
+                          Bandwidth perRequestLimit, Bandwidth burstLimit, Bandwidth dailyLimit) {
+        this(api, timeMeter, scheduler, new LocalBucketStore(timeMeter), perRequestLimit, burstLimit, dailyLimit);
+    }
+
+    /**
+     * The burst and daily buckets are taken from the store, so they may be shared with other instances. The minimum
+     * request interval only spaces the requests of this instance and is always kept in memory, the scheduler checks
+     * it for every waiter.
+     */
+    protected RateLimiter(String api, RateLimitBucketStore bucketStore, Bandwidth perRequestLimit, Bandwidth burstLimit, Bandwidth dailyLimit) {
+        this(api, TimeMeter.SYSTEM_MILLISECONDS, SCHEDULER, bucketStore, perRequestLimit, burstLimit, dailyLimit);
+    }
+
+    protected RateLimiter(String api, TimeMeter timeMeter, ScheduledExecutorService scheduler, RateLimitBucketStore bucketStore,
+                          Bandwidth perRequestLimit, Bandwidth burstLimit, Bandwidth dailyLimit) {
         this.api = api;
         this.timeMeter = timeMeter;
+        this.scheduler = scheduler;
         this.perRequestBucket = Bucket.builder().addLimit(perRequestLimit).withCustomTimePrecision(timeMeter).build();
-        this.burstBucket = Bucket.builder().addLimit(burstLimit).withCustomTimePrecision(timeMeter).build();
-        this.dailyBucket = Bucket.builder().addLimit(dailyLimit).withCustomTimePrecision(timeMeter).build();
+        this.burstBucket = bucketStore.getBucket(api.toLowerCase() + ":burst", burstLimit);
+        this.dailyBucket = bucketStore.getBucket(api.toLowerCase() + ":daily", dailyLimit);
+        this.limitExecutor = bucketStore.executor();
         this.burstCapacity = burstLimit.getCapacity();
         this.dailyCapacity = dailyLimit.getCapacity();
         this.burstRefillInterval = formatDuration(burstLimit.getRefillPeriodNanos());
+        this.requestIntervalNanos = perRequestLimit.getRefillPeriodNanos() / perRequestLimit.getRefillTokens();
+    }
+
+    /**
+     * How long a caller of each priority waits for a request interval at most.
+     */
+    @Autowired
+    public void setMaxWaits(@Value("${rate-limiter.interactive-max-wait-ms:10000}") long interactiveMaxWaitMs,
+                            @Value("${rate-limiter.background-max-wait-ms:60000}") long backgroundMaxWaitMs) {
+        this.interactiveMaxWait = Duration.ofMillis(interactiveMaxWaitMs);
+        this.backgroundMaxWait = Duration.ofMillis(backgroundMaxWaitMs);
     }
 
     public static Bandwidth createRequestBandwidth(long timePerRequestMs) {
@@ -63,12 +149,142 @@ public abstract class RateLimiter {
     }
 
     public void acquire() throws InterruptedException {
-        long startTime = System.currentTimeMillis();
+        acquire(FetchPriority.INTERACTIVE);
+    }
+
+    /**
+     * Waits for a request interval in the lane of the priority, blocking the caller.
+     * @throws RateLimitExceededException if the burst or daily limit is reached or the wait would be too long
+     */
+    public void acquire(FetchPriority priority) throws InterruptedException {
+        CompletableFuture<Void> acquired = acquireAsync(priority);
+        try {
+            acquired.get();
+        } catch (InterruptedException e) {
+            acquired.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public CompletableFuture<Void> acquireAsync(FetchPriority priority) {
+        return acquireAsync(priority, priority == FetchPriority.INTERACTIVE ? interactiveMaxWait : backgroundMaxWait);
+    }
+
+    /**
+     * Waits for a request interval in the lane of the priority without holding a thread.
+     * @param maxWait how long the caller waits at most, it's rejected right away if the wait would be longer
+     * @return completes when the request may be sent, completes exceptionally with RateLimitExceededException if the
+     * burst or daily limit is reached or the wait would be longer than maxWait. Dependent stages run on the executor of
+     * the bucket store, the scheduler thread for buckets in memory, unless they are async.
+     */
+    public CompletableFuture<Void> acquireAsync(FetchPriority priority, Duration maxWait) {
+        Waiter waiter = awaitInterval(priority, maxWait);
+        CompletableFuture<Void> acquired = waiter.future.thenRunAsync(this::consumeLimits, limitExecutor);
+        // A caller that gives up leaves the lane, so it doesn't take an interval
+        acquired.whenComplete((ignored, e) -> {
+            if (acquired.isCancelled()) {
+                waiter.future.cancel(false);
+            }
+        });
+        return acquired;
+    }
+
+    // The waiter's future completes when it may send its request as far as the minimum request interval is concerned
+    private Waiter awaitInterval(FetchPriority priority, Duration maxWait) {
+        Waiter waiter = new Waiter(priority, System.nanoTime(), maxWait.toNanos());
+        boolean granted;
+        synchronized (interactiveLane) {
+            // Interactive waiters only queue behind other interactive waiters
+            int waitersAhead = priority == FetchPriority.INTERACTIVE
+                    ? interactiveLane.size()
+                    : interactiveLane.size() + backgroundLane.size();
+            granted = waitersAhead == 0 && perRequestBucket.tryConsume(1);
+            if (!granted) {
+                long estimatedWait = nanosToNextInterval() + waitersAhead * requestIntervalNanos;
+                if (estimatedWait > waiter.maxWaitNanos) {
+                    rejectWait(waiter);
+                    return waiter;
+                }
+                lane(priority).addLast(waiter);
+                waiter.timeout = scheduler.schedule(() -> expire(waiter), waiter.maxWaitNanos, TimeUnit.NANOSECONDS);
+                scheduleDrain();
+            }
+        }
+        if (granted) {
+            grant(waiter);
+        }
+        return waiter;
+    }
+
+    // Hands out every request interval that has passed, interactive waiters first
+    private void drain() {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (interactiveLane) {
+            scheduledDrain = null;
+            while (true) {
+                Waiter next = nextWaiter();
+                if (next == null) {
+                    break;
+                }
+                if (!perRequestBucket.tryConsume(1)) {
+                    scheduleDrain();
+                    break;
+                }
+                lane(next.priority).pollFirst();
+                next.timeout.cancel(false);
+                granted.add(next);
+            }
+        }
+        granted.forEach(this::grant);
+    }
+
+    // Drops the waiters that timed out or were cancelled from the front of the lanes
+    private Waiter nextWaiter() {
+        for (Deque<Waiter> lane : List.of(interactiveLane, backgroundLane)) {
+            while (!lane.isEmpty() && lane.peekFirst().future.isDone()) {
+                lane.pollFirst();
+            }
+            if (!lane.isEmpty()) {
+                return lane.peekFirst();
+            }
+        }
+        return null;
+    }
 
-        perRequestBucket.asBlocking().consume(1);
+    private Deque<Waiter> lane(FetchPriority priority) {
+        return priority == FetchPriority.INTERACTIVE ? interactiveLane : backgroundLane;
+    }
+
+    private void scheduleDrain() {
+        if (scheduledDrain == null) {
+            scheduledDrain = scheduler.schedule(this::drain, nanosToNextInterval(), TimeUnit.NANOSECONDS);
+        }
+    }
 
+    private long nanosToNextInterval() {
+        return perRequestBucket.estimateAbilityToConsume(1).getNanosToWaitForRefill();
+    }
+
+    // The waiter has its request interval, the burst and daily limits are checked by consumeLimits
+    private void grant(Waiter waiter) {
+        Timer timer = waitTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - waiter.queuedAt, TimeUnit.NANOSECONDS);
+        }
+        LOG.debug("Rate limit check for {} took {} ms", api, (System.nanoTime() - waiter.queuedAt) / 1000000);
+        waiter.future.complete(null);
+    }
+
+    // Runs on the executor of the bucket store, the buckets may be in a database
+    private void consumeLimits() {
         // Check burst limit
         if (!burstBucket.tryConsume(1)) {
+            burstRejections.increment();
             throw new RateLimitExceededException(
                     "Rate limit exceeded for " + api +
                     ". The " + api + " API allows up to " + burstCapacity +
@@ -78,14 +294,107 @@ public abstract class RateLimiter {
 
         // Check daily limit
         if (!dailyBucket.tryConsume(1)) {
+            dailyRejections.increment();
             throw new RateLimitExceededException(
                     "Rate limit exceeded for " + api +
                             ". The " + api + " API allows up to " + dailyCapacity +
                             " requests per day. Please try again in " + formatDuration(getTimeToWait(dailyBucket, timeMeter)) + "."
             );
         }
+    }
+
+    // The waiter is still queued when its max wait is over, unless the drain granted it just before
+    private void expire(Waiter waiter) {
+        boolean queued;
+        synchronized (interactiveLane) {
+            queued = lane(waiter.priority).remove(waiter);
+        }
+        if (queued) {
+            rejectWait(waiter);
+        }
+    }
+
+    private void rejectWait(Waiter waiter) {
+        if (waiter.future.completeExceptionally(new RateLimitExceededException(
+                "Rate limit exceeded for " + api + ". The next request to the " + api + " API can't be sent within " +
+                        formatDuration(waiter.maxWaitNanos) + ". Please try again later."))) {
+            deadlineRejections.increment();
+        }
+    }
+
+    /**
+     * Checks if both the burst and the daily bucket have more than the reserved share of their capacity left.<br>
+     * Background work checks this first so it never uses the budget that user requests need.
+     * @param reservedShare the share of the capacity to keep for user requests, between 0 and 1
+     * @return true if there are more tokens left than the reserved share
+     */
+    public boolean hasHeadroom(double reservedShare) {
+        return burstBucket.getAvailableTokens() > burstCapacity * reservedShare
+                && dailyBucket.getAvailableTokens() > dailyCapacity * reservedShare;
+    }
 
-        LOG.debug("Rate limit check for {} took {} ms", api, System.currentTimeMillis() - startTime);
+    public String getApi() {
+        return api;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        String apiTag = api.toUpperCase();
+        waitTimer = Timer.builder("ratelimiter.wait")
+                .description("Time spent waiting for the per request interval of the upstream API")
+                .tag("api", apiTag)
+                .register(registry);
+        Gauge.builder("ratelimiter.tokens.remaining", burstBucket, Bucket::getAvailableTokens)
+                .description("Requests left before the rate limit of the upstream API is reached")
+                .tag("api", apiTag)
+                .tag("window", "burst")
+                .register(registry);
+        Gauge.builder("ratelimiter.tokens.remaining", dailyBucket, Bucket::getAvailableTokens)
+                .description("Requests left before the rate limit of the upstream API is reached")
+                .tag("api", apiTag)
+                .tag("window", "daily")
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.rejections", burstRejections, LongAdder::sum)
+                .description("Requests rejected because the rate limit of the upstream API was reached")
+                .tag("api", apiTag)
+                .tag("window", "burst")
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.rejections", dailyRejections, LongAdder::sum)
+                .description("Requests rejected because the rate limit of the upstream API was reached")
+                .tag("api", apiTag)
+                .tag("window", "daily")
+                .register(registry);
+        FunctionCounter.builder("ratelimiter.rejections", deadlineRejections, LongAdder::sum)
+                .description("Requests rejected because the rate limit of the upstream API was reached")
+                .tag("api", apiTag)
+                .tag("window", "deadline")
+                .register(registry);
+        Gauge.builder("ratelimiter.waiting", interactiveLane, this::laneSize)
+                .description("Requests waiting for their turn to call the upstream API")
+                .tag("api", apiTag)
+                .tag("priority", "interactive")
+                .register(registry);
+        Gauge.builder("ratelimiter.waiting", backgroundLane, this::laneSize)
+                .description("Requests waiting for their turn to call the upstream API")
+                .tag("api", apiTag)
+                .tag("priority", "background")
+                .register(registry);
+    }
+
+    private int laneSize(Deque<Waiter> lane) {
+        synchronized (interactiveLane) {
+            return lane.size();
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "RateLimiter-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
     }
 
     private long getTimeToWait(Bucket bucket, TimeMeter timeMeter) {
@@ -106,4 +415,18 @@ public abstract class RateLimiter {
         }
         return TimeUnit.NANOSECONDS.toSeconds(nanos) + " seconds";
     }
+
+    private static final class Waiter {
+        private final FetchPriority priority;
+        private final long queuedAt;
+        private final long maxWaitNanos;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private ScheduledFuture<?> timeout;
+
+        private Waiter(FetchPriority priority, long queuedAt, long maxWaitNanos) {
+            this.priority = priority;
+            this.queuedAt = queuedAt;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+    }
 }
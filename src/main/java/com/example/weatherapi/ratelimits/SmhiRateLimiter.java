@@ -12,9 +12,11 @@ public class SmhiRateLimiter extends RateLimiter {
     public SmhiRateLimiter(
             @Value("${smhi.rate-limiter.minimum-request-interval-ms:200}") long timePerRequestMs,
             @Value("${smhi.rate-limiter.burst-capacity:1000}") long burstCapacity,
-            @Value("${smhi.rate-limiter.daily-capacity:10000}") long dailyCapacity
+            @Value("${smhi.rate-limiter.daily-capacity:10000}") long dailyCapacity,
+            RateLimitBucketStore bucketStore
     ) {
         super("Smhi",
+                bucketStore,
                 createRequestBandwidth(timePerRequestMs),
                 createBurstBandwidth(burstCapacity),
                 createDailyBandwidth(dailyCapacity)
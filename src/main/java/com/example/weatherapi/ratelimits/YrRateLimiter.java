@@ -12,9 +12,11 @@ public class YrRateLimiter extends RateLimiter {
     public YrRateLimiter(
             @Value("${yr.rate-limiter.minimum-request-interval-ms:200}") long timePerRequestMs,
             @Value("${yr.rate-limiter.burst-capacity:1000}") long burstCapacity,
-            @Value("${yr.rate-limiter.daily-capacity:10000}") long dailyCapacity
+            @Value("${yr.rate-limiter.daily-capacity:10000}") long dailyCapacity,
+            RateLimitBucketStore bucketStore
     ) {
         super("Yr",
+                bucketStore,
                 createRequestBandwidth(timePerRequestMs),
                 createBurstBandwidth(burstCapacity),
                 createDailyBandwidth(dailyCapacity)
@@ -2,6 +2,7 @@ package com.example.weatherapi.repositories;
 
 import com.example.weatherapi.domain.entities.CityEntity;
 import com.example.weatherapi.domain.entities.LatestWeatherApiEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -15,14 +16,49 @@ public interface LatestWeatherApiRepository extends JpaRepository<LatestWeatherA
 
     Optional<LatestWeatherApiEntity> findByCityAndSmhiAndYrAndFmi(CityEntity city, boolean smhi, boolean yr, boolean fmi);
 
+    /**
+     * Loads the latest weather of a city and api combination together with its city and data points in one query.<br>
+     * The name is compared as it is so idx_city_name can be used, pass the name the city is stored with.
+     * MySQL's default collation compares it ignoring case.
+     * @return the latest weather, or empty if there is none or it's older than the threshold
+     */
     @Query("""
     SELECT lwa
     FROM LatestWeatherApiEntity lwa
+    JOIN FETCH lwa.city c
     JOIN FETCH lwa.latestWeather lw
-    JOIN FETCH lw.weatherDataList wd
+    LEFT JOIN FETCH lw.weatherDataList wd
+    WHERE c.name = :cityName
+    AND lwa.smhi = :smhi AND lwa.yr = :yr AND lwa.fmi = :fmi
+    AND lw.timeStamp > :validThreshold
+    """)
+    Optional<LatestWeatherApiEntity> findValidLatestWeather(@Param("cityName") String cityName,
+                                                            @Param("smhi") boolean smhi,
+                                                            @Param("yr") boolean yr,
+                                                            @Param("fmi") boolean fmi,
+                                                            @Param("validThreshold") ZonedDateTime validThreshold);
+
+    /**
+     * Pages through the latest weather younger than the threshold without loading it, see findWithWeatherByIdIn.
+     */
+    @Query("""
+    SELECT lwa.id
+    FROM LatestWeatherApiEntity lwa
+    JOIN lwa.latestWeather lw
     WHERE lw.timeStamp > :validThreshold
+    ORDER BY lwa.id
+    """)
+    List<UUID> findValidWeatherIds(@Param("validThreshold") ZonedDateTime validThreshold, Pageable pageable);
+
+    @Query("""
+    SELECT lwa
+    FROM LatestWeatherApiEntity lwa
+    JOIN FETCH lwa.city c
+    JOIN FETCH lwa.latestWeather lw
+    LEFT JOIN FETCH lw.weatherDataList wd
+    WHERE lwa.id IN :ids
     """)
-    List<LatestWeatherApiEntity> findValidWeatherData(@Param("validThreshold") ZonedDateTime validThreshold);
+    List<LatestWeatherApiEntity> findWithWeatherByIdIn(@Param("ids") List<UUID> ids);
 
 
 }
@@ -2,8 +2,18 @@ package com.example.weatherapi.repositories;
 
 import com.example.weatherapi.domain.entities.WeatherDataEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.UUID;
+
 @Repository
 public interface WeatherDataRepository extends JpaRepository<WeatherDataEntity, Long> {
+
+    @Modifying
+    @Query("DELETE FROM WeatherDataEntity wd WHERE wd.weatherEntity.id IN :weatherIds")
+    int deleteByWeatherIds(@Param("weatherIds") List<UUID> weatherIds);
 }
@@ -1,15 +1,34 @@
 package com.example.weatherapi.repositories;
 
 import com.example.weatherapi.domain.entities.WeatherEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface WeatherEntityRepository extends JpaRepository<WeatherEntity, Integer> {
 
+    /**
+     * Forecasts older than the cutoff that no latest_weather_api row points to anymore, nothing reads those.
+     */
+    @Query("""
+    SELECT w.id
+    FROM WeatherEntity w
+    WHERE w.timeStamp < :cutoff
+    AND NOT EXISTS (SELECT 1 FROM LatestWeatherApiEntity lwa WHERE lwa.latestWeather = w)
+    """)
+    List<UUID> findSupersededIds(@Param("cutoff") ZonedDateTime cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM WeatherEntity w WHERE w.id IN :ids")
+    int deleteByIds(@Param("ids") List<UUID> ids);
+
 }
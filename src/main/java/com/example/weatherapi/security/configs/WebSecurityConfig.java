@@ -6,6 +6,7 @@ import com.example.weatherapi.exceptions.handlers.CustomAuthenticationEntryPoint
 import com.example.weatherapi.security.CustomUserDetailsService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -44,8 +45,10 @@ public class WebSecurityConfig {
                 .requestMatchers("/weather/**").permitAll()
                 .requestMatchers("/status/**").permitAll()
                 .requestMatchers("/actuator/health/**").permitAll()
+                .requestMatchers("/actuator/prometheus").hasRole(UserRole.ADMIN.toString())
                 .requestMatchers("/city/names").permitAll()
                 .requestMatchers("/city/search").permitAll()
+                .requestMatchers("/city/nearby").permitAll()
                 .requestMatchers("/swagger-ui/**").permitAll()
                 .requestMatchers("/swagger-ui.html").permitAll()
                 .requestMatchers("/v3/api-docs/swagger-config").permitAll()
@@ -92,6 +95,7 @@ public class WebSecurityConfig {
         cors.setAllowedMethods(List.of("GET", "POST"));
         cors.setAllowCredentials(true);
         cors.setAllowedHeaders(List.of("*"));
+        cors.setExposedHeaders(List.of(HttpHeaders.ETAG));
         cors.setMaxAge(3600L);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", cors);
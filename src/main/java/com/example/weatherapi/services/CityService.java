@@ -1,6 +1,7 @@
 package com.example.weatherapi.services;
 
 import com.example.weatherapi.domain.city.City;
+import com.example.weatherapi.domain.city.CityNearbyResponse;
 import com.example.weatherapi.domain.city.CitySearchResponse;
 import com.example.weatherapi.domain.dto.CityDto;
 import com.example.weatherapi.domain.entities.CityEntity;
@@ -14,4 +15,5 @@ public interface CityService {
     String deleteCity(String name);
     List<CityDto> getAllCityNames();
     CitySearchResponse searchCity(double lat, double lon);
+    List<CityNearbyResponse> searchNearbyCities(double lat, double lon, int limit, Double radiusKm);
 }
@@ -0,0 +1,18 @@
+package com.example.weatherapi.services;
+
+import com.example.weatherapi.domain.weather.WeatherBatchRequest;
+import com.example.weatherapi.domain.weather.WeatherBatchResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public interface WeatherBatchService {
+
+    /**
+     * Answers every entry that is fresh in the memory cache right away, then loads the rest in parallel.
+     * @param onResult called once per entry as soon as its weather or error is ready, from any thread
+     * @return completes when every entry has a result, never exceptionally
+     */
+    CompletableFuture<Void> fetchWeatherBatch(List<WeatherBatchRequest.Entry> entries, Consumer<WeatherBatchResult> onResult);
+}
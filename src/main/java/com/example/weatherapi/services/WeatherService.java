@@ -1,13 +1,46 @@
 package com.example.weatherapi.services;
 
-import com.example.weatherapi.domain.weather.Weather;
+import com.example.weatherapi.cache.CachedWeather;
 import org.springframework.http.ResponseEntity;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface WeatherService {
 
-    ResponseEntity<Weather> fetchWeatherMergedResponse(String city);
-    ResponseEntity<Weather> fetchWeatherMergedCustomApisResponse(String city, List<String> apis);
+    /**
+     * A cached weather completes right away, a cache miss completes when its load is done, without the caller's thread
+     * waiting for it.
+     * @param acceptsGzip if the client accepts a gzip encoded body
+     * @return the json body of the merged weather, rendered when it was cached
+     */
+    CompletableFuture<ResponseEntity<byte[]>> fetchWeatherMergedResponse(String city, boolean acceptsGzip);
+    CompletableFuture<ResponseEntity<byte[]>> fetchWeatherMergedCustomApisResponse(String city, List<String> apis, boolean acceptsGzip);
+
+    /**
+     * @param apis the apis to merge, all active apis if null or empty
+     * @return the json body of the merged weather for the grid cell the coordinates are in
+     */
+    CompletableFuture<ResponseEntity<byte[]>> fetchWeatherPointResponse(double lat, double lon, List<String> apis, boolean acceptsGzip);
+
+    /**
+     * @param apis the apis to merge, all active apis if null or empty
+     * @return the merged weather, loaded the same way as for the response methods but on the caller's thread
+     */
+    CachedWeather getWeather(String city, List<String> apis);
+
+    /**
+     * Only looks in the memory cache, nothing is loaded and stale entries aren't refreshed.
+     * @param apis the apis to merge, all active apis if null or empty
+     * @return the fresh merged weather, or null if it has to be loaded
+     */
+    CachedWeather getFreshWeather(String city, List<String> apis);
+
+    /**
+     * Fetches the weather from the apis again and replaces the cached entry, even if it's still fresh.
+     * @param city the name of the city
+     * @param apis the apis to merge
+     */
+    void refreshWeather(String city, List<String> apis);
 
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.example.weatherapi.services.impl;
 
 import com.example.weatherapi.cache.CityCache;
+import com.example.weatherapi.domain.city.CityNearbyResponse;
 import com.example.weatherapi.domain.city.CitySearchResponse;
 import com.example.weatherapi.domain.dto.CityDto;
 import com.example.weatherapi.domain.entities.CityEntity;
@@ -9,18 +10,19 @@ import com.example.weatherapi.exceptions.CityNotFoundException;
 import com.example.weatherapi.exceptions.InvalidCityException;
 import com.example.weatherapi.repositories.CityRepository;
 import com.example.weatherapi.services.CityService;
+import com.example.weatherapi.util.CityIndex;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.Optional;
 
 import static com.example.weatherapi.util.CityMapper.toEntity;
-import static com.example.weatherapi.util.GeoUtils.haversine;
-import static java.util.Comparator.comparingDouble;
 
 @Service
 public class CityServiceImpl implements CityService {
@@ -48,6 +50,7 @@ public class CityServiceImpl implements CityService {
             throw new InvalidCityException("City already exists: " + city.getName());
         }
         CityEntity citySaved = cityRepository.save(toEntity(city));
+        invalidateCityCacheAfterCommit();
         logger.info("A new city has been created: {}", citySaved);
         return citySaved;
     }
@@ -68,10 +71,25 @@ public class CityServiceImpl implements CityService {
         }
         CityEntity deletedCity = cityOptional.get();
         cityRepository.deleteByNameIgnoreCase(name);
+        invalidateCityCacheAfterCommit();
         logger.info("City has been deleted: {}", deletedCity);
         return "City '" + deletedCity.getName() + "' deleted successfully";
     }
 
+    // Invalidating before the commit would let a request in between cache the cities from before the change again
+    private void invalidateCityCacheAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cityCache.invalidate();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cityCache.invalidate();
+            }
+        });
+    }
+
     @Override
     public List<CityDto> getAllCityNames() {
         return cityCache.getAllCitiesDto();
@@ -79,10 +97,25 @@ public class CityServiceImpl implements CityService {
 
     @Override
     public CitySearchResponse searchCity(double lat, double lng) {
-        return cityCache.getAllCities().stream()
-                .min(comparingDouble(city -> haversine(lat, lng, city.getLat(), city.getLon())))
+        return cityCache.getCityIndex().nearest(lat, lng, 1).stream()
+                .findFirst()
+                .map(CityIndex.CityDistance::city)
                 .map(cityEntity -> new CitySearchResponse(cityEntity.getName(), cityEntity.getLat(), cityEntity.getLon()))
                 .orElse(null);
     }
 
+    // The closest cities, if a radius is given only the ones within it
+    @Override
+    public List<CityNearbyResponse> searchNearbyCities(double lat, double lng, int limit, Double radiusKm) {
+        CityIndex cityIndex = cityCache.getCityIndex();
+        List<CityIndex.CityDistance> cities = radiusKm == null
+                ? cityIndex.nearest(lat, lng, limit)
+                : cityIndex.withinRadius(lat, lng, radiusKm, limit);
+        return cities.stream()
+                .map(cityDistance -> new CityNearbyResponse(cityDistance.city().getName(),
+                        cityDistance.city().getLat(), cityDistance.city().getLon(),
+                        Math.round(cityDistance.distanceKm() * 100) / 100.0))
+                .toList();
+    }
+
 }
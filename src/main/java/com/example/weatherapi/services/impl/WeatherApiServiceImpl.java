@@ -8,8 +8,6 @@ import com.example.weatherapi.domain.entities.ApiStatus;
 import com.example.weatherapi.domain.weather.Weather;
 import com.example.weatherapi.exceptions.ApiDisabledException;
 import com.example.weatherapi.services.WeatherApiService;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,7 +21,6 @@ public class WeatherApiServiceImpl implements WeatherApiService {
     private final ApiStatusCache apiStatusCache;
     private final MemoryCacheUtils memoryCacheUtils;
     private final CacheDB cacheDB;
-    private final ObjectMapper objectMapper;
     private final Logger LOG;
 
     @Autowired
@@ -35,7 +32,6 @@ public class WeatherApiServiceImpl implements WeatherApiService {
         this.memoryCacheUtils = memoryCacheUtils;
         this.cacheDB = cacheDB;
         this.LOG = LoggerFactory.getLogger(WeatherApiServiceImpl.class);
-        this.objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
     }
 
     @Override
@@ -62,9 +58,11 @@ public class WeatherApiServiceImpl implements WeatherApiService {
     @Override
     public void saveWeatherData(String apiName, Weather weather, boolean smhiFlag, boolean yrFlag, boolean fmiFlag) {
         String key = getKey(weather.getCity(), apiName);
-        cacheDB.saveDB(weather, smhiFlag, yrFlag, fmiFlag);
+        if (!weather.getCity().isPoint()) {
+            cacheDB.saveDB(weather, smhiFlag, yrFlag, fmiFlag);
+        }
         getSunriseSunset(weather);
-        memoryCacheUtils.putWeatherInCache(key, objectMapper.convertValue(weather, Weather.class));
+        memoryCacheUtils.putWeatherInCache(key, weather);
     }
 
     private String getKey(City city, String apiName) {
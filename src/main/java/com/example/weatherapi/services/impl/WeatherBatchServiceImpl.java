@@ -0,0 +1,147 @@
+package com.example.weatherapi.services.impl;
+
+import com.example.weatherapi.cache.CachedWeather;
+import com.example.weatherapi.domain.weather.WeatherBatchRequest;
+import com.example.weatherapi.domain.weather.WeatherBatchResult;
+import com.example.weatherapi.exceptions.ApiConnectionException;
+import com.example.weatherapi.exceptions.ApiDisabledException;
+import com.example.weatherapi.exceptions.CityNotFoundException;
+import com.example.weatherapi.exceptions.InvalidApiUsageException;
+import com.example.weatherapi.exceptions.InvalidCityException;
+import com.example.weatherapi.exceptions.RateLimitExceededException;
+import com.example.weatherapi.ratelimits.FmiRateLimiter;
+import com.example.weatherapi.ratelimits.RateLimiter;
+import com.example.weatherapi.ratelimits.SmhiRateLimiter;
+import com.example.weatherapi.ratelimits.YrRateLimiter;
+import com.example.weatherapi.services.WeatherBatchService;
+import com.example.weatherapi.services.WeatherService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import static com.example.weatherapi.services.impl.WeatherServiceImpl.API_FMI;
+import static com.example.weatherapi.services.impl.WeatherServiceImpl.API_SMHI;
+import static com.example.weatherapi.services.impl.WeatherServiceImpl.API_YR;
+
+/**
+ * Serves many cities in one request.<br>
+ * Cache hits are answered on the request thread before anything is loaded, the misses are loaded on
+ * weatherBatchExecutor, so at most weather.batch.parallelism of them wait for the apis at once and the rate limiters
+ * space their calls. A miss whose apis have no burst or daily tokens left fails right away instead of waiting for
+ * the rate limiter to reject it.
+ */
+@Service
+public class WeatherBatchServiceImpl implements WeatherBatchService {
+
+    private final Logger log;
+    private final WeatherService weatherService;
+    private final Map<String, RateLimiter> rateLimiters;
+    private final Executor batchExecutor;
+
+    @Autowired
+    public WeatherBatchServiceImpl(WeatherService weatherService,
+                                   SmhiRateLimiter smhiRateLimiter,
+                                   YrRateLimiter yrRateLimiter,
+                                   FmiRateLimiter fmiRateLimiter,
+                                   @Qualifier("weatherBatchExecutor") Executor batchExecutor) {
+        this.weatherService = weatherService;
+        this.rateLimiters = Map.of(
+                API_SMHI, smhiRateLimiter,
+                API_YR, yrRateLimiter,
+                API_FMI, fmiRateLimiter);
+        this.batchExecutor = batchExecutor;
+        this.log = LoggerFactory.getLogger(WeatherBatchServiceImpl.class);
+    }
+
+    @Override
+    public CompletableFuture<Void> fetchWeatherBatch(List<WeatherBatchRequest.Entry> entries, Consumer<WeatherBatchResult> onResult) {
+        List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            WeatherBatchRequest.Entry entry = entries.get(i);
+            CachedWeather cachedWeather = weatherService.getFreshWeather(entry.city(), entry.apis());
+            if (cachedWeather != null) {
+                onResult.accept(toResult(i, entry, cachedWeather));
+            } else {
+                misses.add(i);
+            }
+        }
+
+        // Entries for the same city and apis share one load
+        Map<String, CompletableFuture<CachedWeather>> loads = new HashMap<>();
+        List<CompletableFuture<Void>> results = new ArrayList<>(misses.size());
+        for (int index : misses) {
+            WeatherBatchRequest.Entry entry = entries.get(index);
+            CompletableFuture<CachedWeather> load = loads.computeIfAbsent(getLoadKey(entry), key -> load(entry));
+            results.add(load.handle((cachedWeather, throwable) -> {
+                onResult.accept(throwable == null
+                        ? toResult(index, entry, cachedWeather)
+                        : toFailure(index, entry, throwable));
+                return null;
+            }));
+        }
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new));
+    }
+
+    private CompletableFuture<CachedWeather> load(WeatherBatchRequest.Entry entry) {
+        List<String> apis = entry.apis() == null ? List.of() : entry.apis();
+        Collection<RateLimiter> limiters = apis.isEmpty()
+                ? rateLimiters.values()
+                : apis.stream().map(api -> rateLimiters.get(api.toUpperCase())).filter(Objects::nonNull).toList();
+        if (!limiters.stream().allMatch(rateLimiter -> rateLimiter.hasHeadroom(0))) {
+            return CompletableFuture.failedFuture(new RateLimitExceededException(
+                    "Rate limit exceeded for " + (apis.isEmpty() ? "one of the APIs" : apis) + ". Please try again later."));
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(() -> weatherService.getWeather(entry.city(), apis), batchExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new RateLimitExceededException(
+                    "Too many batch requests at once. Please try again later."));
+        }
+    }
+
+    private WeatherBatchResult toResult(int index, WeatherBatchRequest.Entry entry, CachedWeather cachedWeather) {
+        return WeatherBatchResult.success(index, entry, new String(cachedWeather.json(), StandardCharsets.UTF_8));
+    }
+
+    // The same statuses CustomExceptionHandler gives a single city request
+    private WeatherBatchResult toFailure(int index, WeatherBatchRequest.Entry entry, Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+        HttpStatus status;
+        if (cause instanceof CityNotFoundException) {
+            status = HttpStatus.NOT_FOUND;
+        } else if (cause instanceof InvalidApiUsageException || cause instanceof InvalidCityException) {
+            status = HttpStatus.BAD_REQUEST;
+        } else if (cause instanceof ApiDisabledException || cause instanceof RateLimitExceededException
+                || cause instanceof ApiConnectionException) {
+            status = HttpStatus.SERVICE_UNAVAILABLE;
+        } else {
+            log.warn("Batch weather for {} with APIs {} failed: {}", entry.city(), entry.apis(), cause.getMessage());
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+        }
+        return WeatherBatchResult.failure(index, entry, status.value(), cause.getMessage());
+    }
+
+    private static String getLoadKey(WeatherBatchRequest.Entry entry) {
+        List<String> apis = entry.apis() == null ? List.of() : entry.apis().stream().map(String::toUpperCase).sorted().toList();
+        return entry.city().toLowerCase() + String.join("_", apis);
+    }
+}
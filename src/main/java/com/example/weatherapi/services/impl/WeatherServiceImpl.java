@@ -5,41 +5,53 @@ import com.example.weatherapi.api.SmhiApi;
 import com.example.weatherapi.api.YrApi;
 import com.example.weatherapi.cache.ApiStatusCache;
 import com.example.weatherapi.cache.CacheDB;
+import com.example.weatherapi.cache.CachedWeather;
 import com.example.weatherapi.cache.MemoryCacheUtils;
 import com.example.weatherapi.domain.city.City;
 import com.example.weatherapi.domain.entities.ApiStatus;
 import com.example.weatherapi.domain.weather.Weather;
+import com.example.weatherapi.domain.weather.WeatherSeries;
 import com.example.weatherapi.exceptions.*;
+import com.example.weatherapi.ratelimits.FetchPriority;
+import com.example.weatherapi.ratelimits.FmiRateLimiter;
+import com.example.weatherapi.ratelimits.RateLimiter;
+import com.example.weatherapi.ratelimits.SmhiRateLimiter;
+import com.example.weatherapi.ratelimits.YrRateLimiter;
 import com.example.weatherapi.services.CityService;
 import com.example.weatherapi.services.WeatherService;
-import com.example.weatherapi.util.DataStructures;
+import com.example.weatherapi.util.GridCell;
+import com.example.weatherapi.util.SingleFlight;
+import com.example.weatherapi.util.WeatherMergeEngine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.Consumer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static com.example.weatherapi.util.CityMapper.toModel;
 import static com.example.weatherapi.util.SunriseUtil.getSunriseSunset;
 import static com.example.weatherapi.util.WeatherValidation.validateApis;
 
 @Service
-public class WeatherServiceImpl implements WeatherService {
+public class WeatherServiceImpl implements WeatherService, MeterBinder {
 
     private final CityService cityService;
     private final FmiApi fmiApi;
@@ -48,20 +60,24 @@ public class WeatherServiceImpl implements WeatherService {
     private final CacheDB cacheDB;
     private final Logger log;
     private final MemoryCacheUtils memoryCacheUtils;
-    private final ConcurrentHashMap<String, Lock> locks = new ConcurrentHashMap<>();
+    private final SingleFlight<CachedWeather> singleFlight = new SingleFlight<>("weather");
     private final ApiStatusCache apiStatusCache;
-
-    private static final String TEMPERATURE = "temperature";
-    private static final String WIND_SPEED = "windSpeed";
-    private static final String PRECIPITATION = "precipitation";
-    private static final String HUMIDITY = "humidity";
+    private final Executor refreshExecutor;
+    private final Executor loadExecutor;
+    // Size of the grid cells in degrees that /weather/point snaps to, per api
+    private final Map<String, Double> gridDegrees;
+    private final double mergedGridDegrees;
+    private final Map<String, RateLimiter> rateLimiters;
+    // Share of each api's rate limits that /weather/point can't use, it's kept for the cities
+    private final double pointReservedRateLimitShare;
 
     public static final String API_SMHI = "SMHI";
     public static final String API_YR = "YR";
     public static final String API_FMI = "FMI";
     List<String> allAvailableApis = List.of(API_SMHI, API_YR, API_FMI);
 
-    private static final float INVALID_VALUE = -99f;
+    // Loads on the thread that asked for the weather, for callers that wait for it anyway
+    private static final Executor CALLER_THREAD = Runnable::run;
 
     @Autowired
     public WeatherServiceImpl(CityService cityService,
@@ -70,7 +86,17 @@ public class WeatherServiceImpl implements WeatherService {
                               FmiApi fmiApi,
                               CacheDB cacheDB,
                               MemoryCacheUtils memoryCacheUtils,
-                              ApiStatusCache apiStatusCache
+                              ApiStatusCache apiStatusCache,
+                              @Qualifier("weatherRefreshExecutor") Executor refreshExecutor,
+                              @Qualifier("weatherLoadExecutor") Executor loadExecutor,
+                              SmhiRateLimiter smhiRateLimiter,
+                              YrRateLimiter yrRateLimiter,
+                              FmiRateLimiter fmiRateLimiter,
+                              @Value("${weather.point.grid.smhi-degrees:0.025}") double smhiGridDegrees,
+                              @Value("${weather.point.grid.yr-degrees:0.01}") double yrGridDegrees,
+                              @Value("${weather.point.grid.fmi-degrees:0.1}") double fmiGridDegrees,
+                              @Value("${weather.point.grid.merged-degrees:0.025}") double mergedGridDegrees,
+                              @Value("${weather.point.reserved-rate-limit-share:0.5}") double pointReservedRateLimitShare
     ) {
         this.cityService = cityService;
         this.fmiApi = fmiApi;
@@ -79,79 +105,164 @@ public class WeatherServiceImpl implements WeatherService {
         this.cacheDB = cacheDB;
         this.memoryCacheUtils = memoryCacheUtils;
         this.apiStatusCache = apiStatusCache;
+        this.refreshExecutor = refreshExecutor;
+        this.loadExecutor = loadExecutor;
+        this.gridDegrees = Map.of(API_SMHI, smhiGridDegrees, API_YR, yrGridDegrees, API_FMI, fmiGridDegrees);
+        this.mergedGridDegrees = mergedGridDegrees;
+        this.rateLimiters = Map.of(API_SMHI, smhiRateLimiter, API_YR, yrRateLimiter, API_FMI, fmiRateLimiter);
+        this.pointReservedRateLimitShare = pointReservedRateLimitShare;
         this.log = LoggerFactory.getLogger(WeatherServiceImpl.class);
     }
 
+    // Time callers spend loading a key or waiting for another caller's load of it
     @Override
-    public ResponseEntity<Weather> fetchWeatherMergedResponse(String cityName) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        return new ResponseEntity<>(getWeatherMerged(cityName.toLowerCase()), headers, HttpStatus.OK);
+    public void bindTo(MeterRegistry registry) {
+        singleFlight.bindTo(registry);
+    }
+
+    // Cache misses are loaded on the load executor, the request thread is released until the load is done
+    @Override
+    public CompletableFuture<ResponseEntity<byte[]>> fetchWeatherMergedResponse(String cityName, boolean acceptsGzip) {
+        return getWeatherMerged(cityName.toLowerCase(), loadExecutor)
+                .thenApply(cachedWeather -> createResponse(cachedWeather, acceptsGzip));
+    }
+
+    @Override
+    public CompletableFuture<ResponseEntity<byte[]>> fetchWeatherMergedCustomApisResponse(String cityName, List<String> enabledApis, boolean acceptsGzip) {
+        return getWeatherMergedCustomApis(cityName.toLowerCase(), enabledApis, loadExecutor)
+                .thenApply(cachedWeather -> createResponse(cachedWeather, acceptsGzip));
     }
 
     @Override
-    public ResponseEntity<Weather> fetchWeatherMergedCustomApisResponse(String cityName, List<String> enabledApis) {
+    public CompletableFuture<ResponseEntity<byte[]>> fetchWeatherPointResponse(double lat, double lon, List<String> enabledApis, boolean acceptsGzip) {
+        return getWeatherPoint(lat, lon, enabledApis, loadExecutor)
+                .thenApply(cachedWeather -> createResponse(cachedWeather, acceptsGzip));
+    }
+
+    /**
+     * Writes the body that was rendered when the weather was cached, the weather isn't serialized again.<br>
+     * Spring answers If-None-Match and If-Modified-Since with 304 Not Modified from the ETag and Last-Modified headers,
+     * clients may keep the body for as long as the cache entry stays fresh.
+     */
+    private ResponseEntity<byte[]> createResponse(CachedWeather cachedWeather, boolean acceptsGzip) {
+        long maxAge = Math.max(0, memoryCacheUtils.getTimeUntilStale(cachedWeather).toSeconds());
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
-        return new ResponseEntity<>(getWeatherMergedCustomApis(cityName.toLowerCase(), enabledApis), headers, HttpStatus.OK);
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        // The weather's timestamp is the oldest of the merged apis, it can stay the same when another api's data changes
+        headers.setLastModified(cachedWeather.cachedAt());
+        headers.setCacheControl(CacheControl.maxAge(maxAge, TimeUnit.SECONDS));
+        if (acceptsGzip && cachedWeather.hasGzip()) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            headers.setETag(cachedWeather.gzipEtag());
+            return new ResponseEntity<>(cachedWeather.gzipJson(), headers, HttpStatus.OK);
+        }
+        headers.setETag(cachedWeather.etag());
+        return new ResponseEntity<>(cachedWeather.json(), headers, HttpStatus.OK);
     }
 
-    public Weather getWeatherMerged(String cityName) {
+    @Override
+    public CachedWeather getWeather(String cityName, List<String> enabledApis) {
+        return getWeatherMergedCustomApis(cityName.toLowerCase(), enabledApis);
+    }
 
-        List<String> enabledApis = apiStatusCache.getAllApiStatuses().stream()
-                .filter(ApiStatus::isActive)
-                .map(ApiStatus::getApiName)
-                .sorted()
-                .toList();
-        if(enabledApis.isEmpty()){
-            throw new ApiDisabledException("All apis are disabled");
-        }
+    public CachedWeather getWeatherMerged(String cityName) {
+        return SingleFlight.join(getWeatherMerged(cityName, CALLER_THREAD));
+    }
 
-        String key;
-        if (isAllApisEnabled(enabledApis)) {
-            key = cityName.toLowerCase() + "merged";
-        } else {
-            key = getKey(cityName, enabledApis);
+    public CachedWeather getWeatherMergedCustomApis(String cityName, List<String> enabledApis) {
+        return SingleFlight.join(getWeatherMergedCustomApis(cityName, enabledApis, CALLER_THREAD));
+    }
+
+    /**
+     * @param enabledApis the apis to merge, all active apis if null or empty
+     */
+    public CachedWeather getWeatherPoint(double lat, double lon, List<String> enabledApis) {
+        return SingleFlight.join(getWeatherPoint(lat, lon, enabledApis, CALLER_THREAD));
+    }
+
+    @Override
+    public CachedWeather getFreshWeather(String cityName, List<String> enabledApis) {
+        String name = cityName.toLowerCase();
+        List<String> activeApis = getActiveApis();
+        if(enabledApis != null && !enabledApis.isEmpty()) {
+            List<String> apis = enabledApis.stream().map(String::toUpperCase).sorted().toList();
+            String key = getKey(name, apis);
+            CachedWeather weatherFromCache = memoryCacheUtils.getCachedWeatherFromCache(key, name, apis);
+            if(weatherFromCache != null) {
+                if(apis.size() > 1) {
+                    memoryCacheUtils.recordAccess(key, name, apis);
+                }
+                return weatherFromCache;
+            }
+            // Same as getWeatherMergedCustomApis, all active apis are the merged entry
+            if(!new HashSet<>(activeApis).equals(new HashSet<>(apis))) {
+                return null;
+            }
+        }
+        if(activeApis.isEmpty()) {
+            return null;
         }
 
-        Weather weatherFromCache = memoryCacheUtils.getWeatherFromCache(key, cityName, enabledApis);
+        String key = getMergedKey(name, activeApis);
+        CachedWeather weatherFromCache = memoryCacheUtils.getCachedWeatherFromCache(key, name, activeApis);
         if(weatherFromCache != null) {
-            return weatherFromCache;
+            memoryCacheUtils.recordAccess(key, name, activeApis);
         }
+        return weatherFromCache;
+    }
 
-        log.debug("Thread attempting to acquire lock for City: {}", cityName);
+    /**
+     * @param executor the executor a cache miss is loaded on
+     * @return the cached weather, or the future of its load
+     */
+    private CompletableFuture<CachedWeather> getWeatherMerged(String cityName, Executor executor) {
 
-        // Keep locks cached (bounded city set → small fixed map) makes a tiny difference in response time
-        Lock lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
-        lock.lock();
+        List<String> enabledApis = getActiveApis();
+        if(enabledApis.isEmpty()){
+            throw new ApiDisabledException("All apis are disabled");
+        }
 
-        try {
-            log.debug("Thread acquired lock for City: {} with Merged APIs: {}", cityName, enabledApis);
-            weatherFromCache = memoryCacheUtils.getWeatherFromCache(key, cityName, enabledApis);
-            if(weatherFromCache != null) {
-                return weatherFromCache;
+        String key = getMergedKey(cityName, enabledApis);
+
+        CachedWeather weatherFromCache = memoryCacheUtils.getCachedWeatherFromCache(key, cityName, enabledApis);
+        if(weatherFromCache != null) {
+            memoryCacheUtils.recordAccess(key, cityName, enabledApis);
+            return CompletableFuture.completedFuture(weatherFromCache);
+        }
+
+        return loadWeather(key, cityName, enabledApis, executor, () -> {
+            // Another load for the same key may have finished between the cache check and this load starting
+            CachedWeather cachedWeather = memoryCacheUtils.getCachedWeatherFromCache(key, cityName, enabledApis);
+            if(cachedWeather != null) {
+                return cachedWeather;
             }
 
             City city = toModel(cityService.getCityByName(cityName));
 
+            CachedWeather databaseWeather = getWeatherFromDatabase(key, city, enabledApis);
+            if(databaseWeather != null) {
+                return databaseWeather;
+            }
+
             return processAndCacheWeather(enabledApis, key, city);
-        } finally {
-            lock.unlock();
-            log.debug("Thread released lock for City: {} with Merged APIs: {}", cityName, enabledApis);
-        }
+        });
     }
 
-    public Weather getWeatherMergedCustomApis(String cityName, List<String> enabledApis) {
+    private CompletableFuture<CachedWeather> getWeatherMergedCustomApis(String cityName, List<String> enabledApis, Executor executor) {
         if(enabledApis == null || enabledApis.isEmpty()) {
-            return getWeatherMerged(cityName);
+            return getWeatherMerged(cityName, executor);
         }
 
         enabledApis = enabledApis.stream().map(String::toUpperCase).sorted().toList();
         String key = getKey(cityName, enabledApis);
 
-        Weather weatherFromCache = memoryCacheUtils.getWeatherFromCache(key, cityName, enabledApis);
+        CachedWeather weatherFromCache = memoryCacheUtils.getCachedWeatherFromCache(key, cityName, enabledApis);
         if(weatherFromCache != null) {
-            return weatherFromCache;
+            if(enabledApis.size() > 1) {
+                memoryCacheUtils.recordAccess(key, cityName, enabledApis);
+            }
+            return CompletableFuture.completedFuture(weatherFromCache);
         }
 
         List<String> allActiveApis = validateApis(enabledApis, apiStatusCache);
@@ -161,51 +272,185 @@ public class WeatherServiceImpl implements WeatherService {
         }
 
         if (new HashSet<>(allActiveApis).equals(new HashSet<>(enabledApis))){
-            return getWeatherMerged(cityName);
+            return getWeatherMerged(cityName, executor);
         }
 
-        log.debug("Thread attempting to acquire lock for City: {} with Custom APIs: {}", cityName, enabledApis);
+        List<String> requestedApis = enabledApis;
+        Supplier<CachedWeather> loader = () -> {
+            CachedWeather cachedWeather = memoryCacheUtils.getCachedWeatherFromCache(key, cityName, requestedApis);
+            if(cachedWeather != null) {
+                return cachedWeather;
+            }
+
+            City city = toModel(cityService.getCityByName(cityName));
 
-        Lock lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
-        lock.lock();
+            if(requestedApis.size() == 1){
+                Weather weather = getWeatherSingleApi(city, requestedApis.get(0));
+                // The api cached its weather under the same key, only render it again if that entry is already gone
+                CachedWeather apiCachedWeather = memoryCacheUtils.getCachedWeather(key);
+                return apiCachedWeather != null ? apiCachedWeather : memoryCacheUtils.putWeatherInCache(key, weather);
+            }
 
-        try {
-            log.debug("Thread acquired lock for City: {} with Custom APIs: {}", cityName, enabledApis);
-            weatherFromCache = memoryCacheUtils.getWeatherFromCache(key, cityName, enabledApis);
-            if(weatherFromCache != null) {
-                return weatherFromCache;
+            CachedWeather databaseWeather = getWeatherFromDatabase(key, city, requestedApis);
+            if(databaseWeather != null) {
+                return databaseWeather;
             }
 
-            City city = toModel(cityService.getCityByName(cityName));
+            return processAndCacheWeather(requestedApis, key, city);
+        };
+
+        // A single api is the api's own cache entry, those are never served stale
+        if(requestedApis.size() == 1) {
+            return singleFlight.submit(key, loader, executor);
+        }
+        return loadWeather(key, cityName, requestedApis, executor, loader);
+    }
 
-            if(enabledApis.size() == 1){
-                return getWeatherSingleApi(city, enabledApis.get(0));
+    /**
+     * Loads merged weather that wasn't fresh in the cache.<br>
+     * A stale entry (older than cache.time.in.minutes but younger than the hard ttl) is returned immediately and
+     * refreshed in the background, only callers without any cached entry wait for the upstream apis.
+     */
+    private CompletableFuture<CachedWeather> loadWeather(String key, String cityName, List<String> enabledApis,
+                                                         Executor executor, Supplier<CachedWeather> loader) {
+        CachedWeather staleWeather = memoryCacheUtils.getStaleCachedWeatherFromCache(key, cityName);
+        if(staleWeather != null) {
+            singleFlight.executeAsync(key, loader, refreshExecutor)
+                    .exceptionally(e -> {
+                        log.warn("Background refresh failed for City: {} with key: {}: {}", cityName, key, e.getMessage());
+                        return null;
+                    });
+            memoryCacheUtils.recordAccess(key, cityName, enabledApis);
+            return CompletableFuture.completedFuture(staleWeather);
+        }
+        return singleFlight.submit(key, loader, executor).thenApply(weather -> {
+            memoryCacheUtils.recordAccess(key, cityName, enabledApis);
+            return weather;
+        });
+    }
+
+    /**
+     * Gets the weather for any coordinates, snapped to a grid cell so requests for nearby coordinates share one cache
+     * entry and one load.<br>
+     * The merged cell uses weather.point.grid.merged-degrees, unless every api's grid is coarser, and each api is called
+     * for the cell of its own grid that the center of the merged cell is in. A single api uses its own grid.
+     * Point weather is only kept in its own memory cache, it's never saved to the database.
+     * <p>
+     * Any coordinates can be asked for, so cache misses are loaded like background work: they wait in the BACKGROUND
+     * lane of the rate limiters and are rejected while an api has less than weather.point.reserved-rate-limit-share of
+     * its limits left, that budget is kept for the cities.
+     * @param enabledApis the apis to merge, all active apis if null or empty
+     * @param executor the executor a cache miss is loaded on
+     */
+    private CompletableFuture<CachedWeather> getWeatherPoint(double lat, double lon, List<String> enabledApis, Executor executor) {
+        List<String> apis;
+        if(enabledApis == null || enabledApis.isEmpty()) {
+            apis = getActiveApis();
+            if(apis.isEmpty()){
+                throw new ApiDisabledException("All apis are disabled");
             }
+        } else {
+            apis = enabledApis.stream().map(String::toUpperCase).distinct().sorted().toList();
+            validateApis(apis, apiStatusCache);
+        }
 
-            return processAndCacheWeather(enabledApis, key, city);
-        } finally {
-            lock.unlock();
-            log.debug("Thread released lock for City: {} with Custom APIs: {}", cityName, enabledApis);
+        double degrees = apis.size() == 1
+                ? gridDegrees.get(apis.get(0))
+                : Math.max(mergedGridDegrees, apis.stream().mapToDouble(gridDegrees::get).min().orElseThrow());
+        GridCell cell = GridCell.snap(lat, lon, degrees);
+        String key = getKey(cell.name(), apis);
+
+        CachedWeather weatherFromCache = memoryCacheUtils.getCachedWeatherFromCache(key, cell.name(), apis);
+        if(weatherFromCache != null) {
+            return CompletableFuture.completedFuture(weatherFromCache);
+        }
+
+        List<String> apisWithoutHeadroom = apis.stream()
+                .filter(api -> !rateLimiters.get(api).hasHeadroom(pointReservedRateLimitShare))
+                .toList();
+        if(!apisWithoutHeadroom.isEmpty()) {
+            return CompletableFuture.failedFuture(new RateLimitExceededException("Weather by coordinates is limited to keep "
+                    + "requests to " + apisWithoutHeadroom + " for the cities. Please try again later."));
         }
+
+        return singleFlight.submit(key, () -> FetchPriority.callInBackground(() -> {
+            CachedWeather cachedWeather = memoryCacheUtils.getCachedWeatherFromCache(key, cell.name(), apis);
+            if(cachedWeather != null) {
+                return cachedWeather;
+            }
+
+            City city = cell.toCity();
+            if(apis.size() == 1) {
+                // The cell is on the grid of the api, so the api caches its weather under the same key
+                Weather weather = getWeatherSingleApi(city, apis.get(0));
+                CachedWeather apiCachedWeather = memoryCacheUtils.getCachedWeather(key);
+                return apiCachedWeather != null ? apiCachedWeather : memoryCacheUtils.putWeatherInCache(key, weather);
+            }
+            return processAndCacheWeather(apis, key, city, api -> cell.snapTo(gridDegrees.get(api)).toCity());
+        }), executor);
     }
 
-    private Weather processAndCacheWeather(List<String> enabledApis, String key, City city) {
+    @Override
+    public void refreshWeather(String cityName, List<String> enabledApis) {
+        List<String> apis = enabledApis.stream().map(String::toUpperCase).sorted().toList();
+        String key = getMergedKey(cityName, apis);
+        validateApis(apis, apiStatusCache);
 
-        DataStructures dataStructures = new DataStructures();
+        singleFlight.execute(key, () -> {
+            // Otherwise still fresh api entries would be merged again and the new entry would be no newer than them
+            apis.forEach(api -> memoryCacheUtils.evictCacheIfPresent(cityName.toLowerCase() + api, cityName));
 
-        Weather mergedWeather = fetchWeatherData(city, enabledApis, dataStructures);
+            City city = toModel(cityService.getCityByName(cityName));
 
-        mergedWeather.getWeatherData().entrySet().removeIf(entry -> entry.getValue().getWeatherCode() == -1);
+            return processAndCacheWeather(apis, key, city);
+        });
+    }
 
-        if (dataStructures.successfulApis().size() > 1) {
-            cacheDB.saveDB(mergedWeather, dataStructures.successfulApis());
+    /**
+     * The second cache tier, another instance may already have saved fresh weather for the apis to the database.<br>
+     * Refreshes skip it, they always call the apis.
+     * @return the weather from the database, now in the memory cache as well, or null if the apis have to be called
+     * because there is none or it's about to go stale
+     */
+    private CachedWeather getWeatherFromDatabase(String key, City city, List<String> enabledApis) {
+        Weather weather;
+        try {
+            weather = cacheDB.getWeatherFromCache(city.getName(),
+                    enabledApis.contains(API_SMHI),
+                    enabledApis.contains(API_YR),
+                    enabledApis.contains(API_FMI));
+        } catch (RuntimeException e) {
+            log.warn("Could not read weather for City: {} from the database: {}", city.getName(), e.getMessage());
+            return null;
         }
+        if(weather == null) {
+            return null;
+        }
+        getSunriseSunset(weather);
+        // Stays fresh for as long as the saved weather is, not a full cache time from now
+        return memoryCacheUtils.putWeatherInCache(key, weather, weather.getTimestamp().toInstant());
+    }
 
-        getSunriseSunset(mergedWeather);
+    private CachedWeather processAndCacheWeather(List<String> enabledApis, String key, City city) {
+        return processAndCacheWeather(enabledApis, key, city, api -> city);
+    }
 
-        memoryCacheUtils.putWeatherInCache(key, mergedWeather);
+    /**
+     * @param cityForApi the location each api is called for
+     */
+    private CachedWeather processAndCacheWeather(List<String> enabledApis, String key, City city, Function<String, City> cityForApi) {
 
-        return mergedWeather;
+        List<String> successfulApis = new ArrayList<>();
+
+        Weather mergedWeather = fetchWeatherData(city, cityForApi, enabledApis, successfulApis);
+
+        if (successfulApis.size() > 1 && !city.isPoint()) {
+            cacheDB.saveDB(mergedWeather, successfulApis);
+        }
+
+        getSunriseSunset(mergedWeather);
+
+        return memoryCacheUtils.putWeatherInCache(key, mergedWeather);
     }
 
     private Weather getWeatherSingleApi(City city, String s) {
@@ -217,69 +462,38 @@ public class WeatherServiceImpl implements WeatherService {
         throw new InvalidApiUsageException("Unsupported API:" + s);
     }
 
-    private Weather fetchWeatherData(City city, List<String> enabledApis, DataStructures dataStructures) throws WeatherNotFilledException {
+    private Weather fetchWeatherData(City city, Function<String, City> cityForApi, List<String> enabledApis,
+                                     List<String> successfulApis) throws WeatherNotFilledException {
 
         List<CompletableFuture<Void>> futures = new ArrayList<>();
-        List<ZonedDateTime> apiTimestamps = Collections.synchronizedList(new ArrayList<>());
-
-        Map<String, Throwable> failedApis = new HashMap<>();
+        Map<String, Weather> weatherByApi = new ConcurrentHashMap<>();
+        Map<String, Throwable> failedApis = new ConcurrentHashMap<>();
 
         if (enabledApis.contains(API_SMHI)) {
-            CompletableFuture<Void> smhi = fetchAndProcessWeatherData(
-                    API_SMHI,
-                    smhiApi.fetchWeatherSmhiAsync(city).thenApply(weather -> {
-                        apiTimestamps.add(weather.getTimestamp());
-                        return weather;
-                    }),
-                    dataStructures.mergedWeatherData(),
-                    dataStructures.updateCountMap(),
-                    dataStructures.successfulApis(),
-                    failedApis
-            );
-            futures.add(smhi);
+            futures.add(collectWeather(API_SMHI, smhiApi.fetchWeatherSmhiAsync(cityForApi.apply(API_SMHI)), weatherByApi, failedApis));
         }
-
         if (enabledApis.contains(API_YR)) {
-            CompletableFuture<Void> yr = fetchAndProcessWeatherData(
-                    API_YR,
-                    yrApi.fetchWeatherYrAsync(city).thenApply(weather -> {
-                        apiTimestamps.add(weather.getTimestamp());
-                        return weather;
-                    }),
-                    dataStructures.mergedWeatherData(),
-                    dataStructures.updateCountMap(),
-                    dataStructures.successfulApis(),
-                    failedApis
-            );
-            futures.add(yr);
+            futures.add(collectWeather(API_YR, yrApi.fetchWeatherYrAsync(cityForApi.apply(API_YR)), weatherByApi, failedApis));
         }
-
         if (enabledApis.contains(API_FMI)) {
-            CompletableFuture<Weather> fmiWeatherFuture = fmiApi.fetchWeatherFmiAsync(city);
-            CompletableFuture<Void> fmi = CompletableFuture.anyOf(
-                    futures.toArray(new CompletableFuture<?>[0])
-            ).thenCompose(v -> fetchAndProcessWeatherData(
-                    API_FMI,
-                    fmiWeatherFuture.thenApply(weather -> {
-                        apiTimestamps.add(weather.getTimestamp());
-                        return weather;
-                    }),
-                    dataStructures.mergedWeatherData(),
-                    dataStructures.updateCountMap(),
-                    dataStructures.successfulApis(),
-                    failedApis
-                    )
-            );
-            futures.add(fmi);
+            futures.add(collectWeather(API_FMI, fmiApi.fetchWeatherFmiAsync(cityForApi.apply(API_FMI)), weatherByApi, failedApis));
         }
 
         CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        successfulApis.addAll(weatherByApi.keySet());
 
-        if(dataStructures.mergedWeatherData().isEmpty()) {
+        // SMHI and YR create the points and SMHI has the final say on the weather code, FMI is only merged into them
+        List<WeatherMergeEngine.Source> sources = new ArrayList<>();
+        addSource(sources, weatherByApi.get(API_SMHI), true, true);
+        addSource(sources, weatherByApi.get(API_YR), true, false);
+        addSource(sources, weatherByApi.get(API_FMI), false, false);
+        WeatherSeries mergedSeries = WeatherMergeEngine.merge(sources);
+
+        if(mergedSeries.isEmpty()) {
             handleApiFailures(failedApis, enabledApis);
         }
 
-        if (dataStructures.mergedWeatherData().isEmpty()) {
+        if (mergedSeries.isEmpty()) {
             if (enabledApis.size() == 1 && failedApis.size() == 1 && failedApis.containsKey(enabledApis.get(0))) {
                 // Single API request and it failed; rethrow the original exception
                 Throwable originalException = failedApis.values().iterator().next();
@@ -301,185 +515,45 @@ public class WeatherServiceImpl implements WeatherService {
                 );
             }
         }
+        log.info("Merged weather data from {} for City: {}", successfulApis, city.getName());
 
-        calculateAverages(dataStructures.mergedWeatherData(), dataStructures.updateCountMap());
-        setScaleWeatherData(dataStructures.mergedWeatherData());
-
-        ZonedDateTime oldestTimestamp = apiTimestamps.stream()
+        ZonedDateTime oldestTimestamp = weatherByApi.values().stream()
+                .map(Weather::getTimestamp)
                 .min(ZonedDateTime::compareTo)
                 .orElse(ZonedDateTime.now(ZoneId.of("UTC")));
 
         return Weather.builder()
-                .message(createMessage(city, dataStructures.successfulApis()))
-                .weatherData(dataStructures.mergedWeatherData())
+                .message(createMessage(city, successfulApis))
+                .weatherData(null)
+                .series(mergedSeries)
                 .timestamp(oldestTimestamp)
                 .city(city)
                 .build();
     }
 
-    private CompletableFuture<Void> fetchAndProcessWeatherData(
+    private void addSource(List<WeatherMergeEngine.Source> sources, Weather weather,
+                           boolean createsPoints, boolean preferredWeatherCode) {
+        if (weather != null) {
+            sources.add(new WeatherMergeEngine.Source(weather.getSeries(), createsPoints, preferredWeatherCode));
+        }
+    }
+
+    private CompletableFuture<Void> collectWeather(
             String apiName,
             CompletableFuture<Weather> weatherFuture,
-            Map<ZonedDateTime, Weather.WeatherData> mergedWeatherData,
-            Map<String, Map<ZonedDateTime, Map<String, Integer>>> updateCountMap,
-            List<String> successfulApis,
+            Map<String, Weather> weatherByApi,
             Map<String, Throwable> failedApis) {
 
-        return CompletableFuture.runAsync(() -> weatherFuture
+        return weatherFuture
                 .exceptionally(e -> {
-                    failedApis.put(apiName, e.getCause());
+                    failedApis.put(apiName, e.getCause() != null ? e.getCause() : e);
                     return null;
                 })
                 .thenAccept(weather -> {
                     if (weather != null) {
-                        mergeWeatherDataIntoMergedData(
-                                weather.getWeatherData(),
-                                apiName,
-                                mergedWeatherData,
-                                updateCountMap
-                        );
-                        successfulApis.add(apiName);
+                        weatherByApi.put(apiName, weather);
                     }
-                }).join());
-    }
-
-    private synchronized void mergeWeatherDataIntoMergedData(
-            Map<ZonedDateTime, Weather.WeatherData> newData,
-            String api,
-            Map<ZonedDateTime, Weather.WeatherData> mergedWeatherData,
-            Map<String, Map<ZonedDateTime, Map<String, Integer>>> updateCountMap) {
-
-        AtomicInteger newDataCount = new AtomicInteger();
-        AtomicInteger mergedDataCount = new AtomicInteger();
-
-        newData.forEach((key, newDataItem) -> {
-            Weather.WeatherData existingData = mergedWeatherData.get(key);
-            if (existingData != null) {
-                updateDataField(newDataItem.getTemperature(),
-                        existingData::setTemperature,
-                        existingData.getTemperature(),
-                        key,
-                        TEMPERATURE,
-                        updateCountMap);
-                updateDataField(newDataItem.getPrecipitation(),
-                        existingData::setPrecipitation,
-                        existingData.getPrecipitation(),
-                        key,
-                        PRECIPITATION,
-                        updateCountMap);
-                updateDataField(newDataItem.getWindSpeed(),
-                        existingData::setWindSpeed,
-                        existingData.getWindSpeed(),
-                        key,
-                        WIND_SPEED,
-                        updateCountMap);
-                updateDataField(newDataItem.getHumidity(),
-                        existingData::setHumidity,
-                        existingData.getHumidity(),
-                        key,
-                        HUMIDITY,
-                        updateCountMap);
-
-                if (newDataItem.getWindDirection() != INVALID_VALUE) {
-                    existingData.setWindDirection(
-                            getAvgWindDirection(
-                                    existingData.getWindDirection(),
-                                    newDataItem.getWindDirection()
-                            )
-                    );
-                }
-                existingData.setWeatherCode(determineWeatherCode(api,existingData, newDataItem));
-                mergedDataCount.incrementAndGet();
-            } else if (!api.equals(API_FMI)) {
-                mergedWeatherData.put(key, newDataItem);
-                updateCount(key, TEMPERATURE, updateCountMap);
-                updateCount(key, WIND_SPEED, updateCountMap);
-                updateCount(key, PRECIPITATION, updateCountMap);
-                updateCount(key, HUMIDITY, updateCountMap);
-                newDataCount.incrementAndGet();
-            }
-        });
-        log.info("{} weather data from {}",
-                (newDataCount.get() > 0 && mergedDataCount.get() == 0) ? "Added" : "Merged",  api);
-    }
-
-    private void updateDataField(
-            float newDataValue,
-            Consumer<Float> setter,
-            float existingValue,
-            ZonedDateTime key,
-            String fieldName,
-            Map<String, Map<ZonedDateTime, Map<String, Integer>>> updateCountMap
-    ) {
-        if (newDataValue != INVALID_VALUE) {
-            setter.accept(existingValue + newDataValue);
-            updateCount(key, fieldName, updateCountMap);
-        }
-    }
-
-    private int determineWeatherCode(
-            String api, Weather.WeatherData existingData, Weather.WeatherData newDataItem) {
-        if (api.equals(API_SMHI)) {
-            return newDataItem.getWeatherCode();
-        } else {
-            return existingData.getWeatherCode() > -1 ? existingData.getWeatherCode() : newDataItem.getWeatherCode();
-        }
-    }
-
-    private void updateCount(ZonedDateTime key, String attribute, Map<String, Map<ZonedDateTime, Map<String, Integer>>> updateCountMap) {
-        updateCountMap.computeIfAbsent(attribute, k -> new ConcurrentHashMap<>())
-                .computeIfAbsent(key, k -> new ConcurrentHashMap<>())
-                .merge(attribute, 1, Integer::sum);
-    }
-
-    private int getUpdateCount(ZonedDateTime key, String attribute, Map<String, Map<ZonedDateTime, Map<String, Integer>>> updateCountMap) {
-        return updateCountMap.getOrDefault(attribute, Collections.emptyMap())
-                .getOrDefault(key, Collections.emptyMap())
-                .getOrDefault(attribute, 1);
-    }
-
-    private void calculateAverages(Map<ZonedDateTime, Weather.WeatherData> mergedWeatherData, Map<String, Map<ZonedDateTime, Map<String, Integer>>> updateCountMap) {
-        for (Map.Entry<ZonedDateTime, Weather.WeatherData> entry : mergedWeatherData.entrySet()) {
-            ZonedDateTime key = entry.getKey();
-            Weather.WeatherData data = entry.getValue();
-
-            data.setTemperature(data.getTemperature() / getUpdateCount(key, TEMPERATURE, updateCountMap));
-            data.setWindSpeed(data.getWindSpeed() / getUpdateCount(key, WIND_SPEED, updateCountMap));
-            data.setPrecipitation(data.getPrecipitation() / getUpdateCount(key, PRECIPITATION, updateCountMap));
-            data.setHumidity(data.getHumidity() / getUpdateCount(key, HUMIDITY, updateCountMap));
-
-        }
-    }
-
-    private float getAvgWindDirection(float existingWindDirection, float newDataWindDirection) {
-        // Convert wind directions to Cartesian coordinates
-        double existingX = Math.cos(Math.toRadians(existingWindDirection));
-        double existingY = Math.sin(Math.toRadians(existingWindDirection));
-        double newX = Math.cos(Math.toRadians(newDataWindDirection));
-        double newY = Math.sin(Math.toRadians(newDataWindDirection));
-
-        // Sum up Cartesian coordinates
-        double sumX = existingX + newX;
-        double sumY = existingY + newY;
-
-        // Convert back to polar coordinates
-        float avgWindDirection = (float) Math.toDegrees(Math.atan2(sumY, sumX));
-        if (avgWindDirection < 0) {
-            avgWindDirection += 360;
-        }
-        return avgWindDirection;
-    }
-
-
-        private void setScaleWeatherData(Map<ZonedDateTime, Weather.WeatherData> mergedWeatherData){
-        for (Map.Entry<ZonedDateTime, Weather.WeatherData> entry : mergedWeatherData.entrySet()) {
-            Weather.WeatherData weatherData = entry.getValue();
-            weatherData.setTemperature(BigDecimal.valueOf(weatherData.getTemperature()).setScale(1, RoundingMode.HALF_UP).floatValue());
-            weatherData.setWindDirection(BigDecimal.valueOf(weatherData.getWindDirection()).setScale(1, RoundingMode.HALF_UP).floatValue());
-            weatherData.setWindSpeed(BigDecimal.valueOf(weatherData.getWindSpeed()).setScale(1, RoundingMode.HALF_UP).floatValue());
-            weatherData.setPrecipitation(BigDecimal.valueOf(weatherData.getPrecipitation()).setScale(1, RoundingMode.HALF_UP).floatValue());
-            weatherData.setHumidity(BigDecimal.valueOf(weatherData.getHumidity()).setScale(1, RoundingMode.HALF_UP).floatValue());
-        }
+                });
     }
 
     private String createMessage(City city, List<String> successfulApis){
@@ -501,6 +575,20 @@ public class WeatherServiceImpl implements WeatherService {
         return messageBuilder.toString();
     }
 
+    private List<String> getActiveApis() {
+        return apiStatusCache.getAllApiStatuses().stream()
+                .filter(ApiStatus::isActive)
+                .map(ApiStatus::getApiName)
+                .sorted()
+                .toList();
+    }
+
+    private String getMergedKey(String cityName, List<String> enabledApis) {
+        return isAllApisEnabled(enabledApis)
+                ? cityName.toLowerCase() + "merged"
+                : getKey(cityName, enabledApis);
+    }
+
     private boolean isAllApisEnabled(List<String> allActiveApis) {
         return new HashSet<>(allActiveApis).equals(new HashSet<>(allAvailableApis));
     }
@@ -0,0 +1,174 @@
+package com.example.weatherapi.util;
+
+import com.example.weatherapi.domain.entities.CityEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Immutable k-d tree over the cities for nearest and radius searches.<br>
+ * Every city is stored as a point on the unit sphere, the straight line distance between two points grows with the
+ * great circle distance, so the tree is searched without any trig and only the results get a haversine distance.
+ * The tree is kept implicitly in the arrays, the median of a range is its node and the two halves its subtrees.
+ */
+public final class CityIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371;
+    private static final CityIndex EMPTY = new CityIndex(new CityEntity[0], new double[0][0]);
+
+    private final CityEntity[] cities;
+    // x, y and z of every city, in the same order as the cities
+    private final double[][] points;
+
+    private CityIndex(CityEntity[] cities, double[][] points) {
+        this.cities = cities;
+        this.points = points;
+    }
+
+    public static CityIndex of(List<CityEntity> cities) {
+        if (cities.isEmpty()) {
+            return EMPTY;
+        }
+        Integer[] order = new Integer[cities.size()];
+        double[][] unsorted = new double[cities.size()][];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            unsorted[i] = toPoint(cities.get(i).getLat(), cities.get(i).getLon());
+        }
+        build(order, unsorted, 0, order.length, 0);
+
+        CityEntity[] sortedCities = new CityEntity[order.length];
+        double[][] points = new double[order.length][];
+        for (int i = 0; i < order.length; i++) {
+            sortedCities[i] = cities.get(order[i]);
+            points[i] = unsorted[order[i]];
+        }
+        return new CityIndex(sortedCities, points);
+    }
+
+    public int size() {
+        return cities.length;
+    }
+
+    /**
+     * @param limit the max number of cities to return
+     * @return the closest cities to the location, closest first
+     */
+    public List<CityDistance> nearest(double lat, double lon, int limit) {
+        if (limit <= 0 || cities.length == 0) {
+            return List.of();
+        }
+        // Furthest candidate on top, so it's the one replaced when a closer city is found
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(
+                Comparator.comparingDouble(Candidate::squaredDistance).reversed());
+        searchNearest(toPoint(lat, lon), 0, cities.length, 0, limit, candidates);
+        return toResults(lat, lon, new ArrayList<>(candidates), limit);
+    }
+
+    /**
+     * @param radiusKm the max great circle distance from the location
+     * @param limit the max number of cities to return
+     * @return the closest cities within the radius, closest first
+     */
+    public List<CityDistance> withinRadius(double lat, double lon, double radiusKm, int limit) {
+        if (radiusKm < 0 || limit <= 0 || cities.length == 0) {
+            return List.of();
+        }
+        // The straight line distance on the unit sphere of the radius, anything past half the earth is everything
+        double angle = Math.min(radiusKm / EARTH_RADIUS_KM, Math.PI);
+        double chord = 2 * Math.sin(angle / 2);
+        List<Candidate> candidates = new ArrayList<>();
+        searchRadius(toPoint(lat, lon), 0, cities.length, 0, chord * chord, candidates);
+        return toResults(lat, lon, candidates, limit);
+    }
+
+    private void searchNearest(double[] target, int from, int to, int axis, int limit, PriorityQueue<Candidate> candidates) {
+        if (from >= to) {
+            return;
+        }
+        int median = (from + to) >>> 1;
+        double squaredDistance = squaredDistance(target, points[median]);
+        if (candidates.size() < limit) {
+            candidates.add(new Candidate(median, squaredDistance));
+        } else if (squaredDistance < candidates.peek().squaredDistance()) {
+            candidates.poll();
+            candidates.add(new Candidate(median, squaredDistance));
+        }
+
+        double delta = target[axis] - points[median][axis];
+        int nextAxis = (axis + 1) % 3;
+        boolean lowerFirst = delta < 0;
+        searchNearest(target, lowerFirst ? from : median + 1, lowerFirst ? median : to, nextAxis, limit, candidates);
+        // The other side can only hold a closer city if the splitting plane is closer than the furthest candidate
+        if (candidates.size() < limit || delta * delta < candidates.peek().squaredDistance()) {
+            searchNearest(target, lowerFirst ? median + 1 : from, lowerFirst ? to : median, nextAxis, limit, candidates);
+        }
+    }
+
+    private void searchRadius(double[] target, int from, int to, int axis, double maxSquaredDistance, List<Candidate> candidates) {
+        if (from >= to) {
+            return;
+        }
+        int median = (from + to) >>> 1;
+        double squaredDistance = squaredDistance(target, points[median]);
+        if (squaredDistance <= maxSquaredDistance) {
+            candidates.add(new Candidate(median, squaredDistance));
+        }
+
+        double delta = target[axis] - points[median][axis];
+        int nextAxis = (axis + 1) % 3;
+        if (delta < 0 || delta * delta <= maxSquaredDistance) {
+            searchRadius(target, from, median, nextAxis, maxSquaredDistance, candidates);
+        }
+        if (delta >= 0 || delta * delta <= maxSquaredDistance) {
+            searchRadius(target, median + 1, to, nextAxis, maxSquaredDistance, candidates);
+        }
+    }
+
+    // Only the returned cities get their distance in km
+    private List<CityDistance> toResults(double lat, double lon, List<Candidate> candidates, int limit) {
+        candidates.sort(Comparator.comparingDouble(Candidate::squaredDistance));
+        return candidates.stream()
+                .limit(limit)
+                .map(candidate -> {
+                    CityEntity city = cities[candidate.index()];
+                    return new CityDistance(city, GeoUtils.haversine(lat, lon, city.getLat(), city.getLon()));
+                })
+                .toList();
+    }
+
+    // Sorts the range on the axis and recurses into both halves around the median, cycling through x, y and z
+    private static void build(Integer[] order, double[][] points, int from, int to, int axis) {
+        if (to - from <= 1) {
+            return;
+        }
+        Arrays.sort(order, from, to, Comparator.comparingDouble(i -> points[i][axis]));
+        int median = (from + to) >>> 1;
+        int nextAxis = (axis + 1) % 3;
+        build(order, points, from, median, nextAxis);
+        build(order, points, median + 1, to, nextAxis);
+    }
+
+    private static double[] toPoint(double lat, double lon) {
+        double latRad = Math.toRadians(lat);
+        double lonRad = Math.toRadians(lon);
+        double cosLat = Math.cos(latRad);
+        return new double[]{cosLat * Math.cos(lonRad), cosLat * Math.sin(lonRad), Math.sin(latRad)};
+    }
+
+    private static double squaredDistance(double[] a, double[] b) {
+        double dx = a[0] - b[0];
+        double dy = a[1] - b[1];
+        double dz = a[2] - b[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    public record CityDistance(CityEntity city, double distanceKm) {
+    }
+
+    private record Candidate(int index, double squaredDistance) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.weatherapi.util;
+
+import com.example.weatherapi.domain.city.City;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * A cell of a regular lat/lon grid, used to share forecasts between requests for nearby coordinates.<br>
+ * Every coordinate inside the cell is answered with the forecast for its center, so the center is used for the
+ * upstream calls and its name is the cache and single-flight key instead of the raw coordinates.
+ *
+ * @param lat the latitude of the center
+ * @param lon the longitude of the center
+ * @param name the center as "lat,lon" with exact decimals
+ */
+public record GridCell(double lat, double lon, String name) {
+
+    /**
+     * @param lat the latitude to snap
+     * @param lon the longitude to snap
+     * @param degrees the size of the cells in degrees, the same for latitude and longitude
+     * @return the cell the coordinates are in
+     */
+    public static GridCell snap(double lat, double lon, double degrees) {
+        if (degrees <= 0) {
+            throw new IllegalArgumentException("Grid size must be positive: " + degrees);
+        }
+        BigDecimal size = BigDecimal.valueOf(degrees);
+        BigDecimal centerLat = center(lat, size);
+        BigDecimal centerLon = center(lon, size);
+        return new GridCell(centerLat.doubleValue(), centerLon.doubleValue(),
+                centerLat.toPlainString() + "," + centerLon.toPlainString());
+    }
+
+    /**
+     * Snaps the center of this cell to another grid, so every coordinate in this cell ends up in the same cell of the
+     * other grid.
+     */
+    public GridCell snapTo(double degrees) {
+        return snap(lat, lon, degrees);
+    }
+
+    /**
+     * @return a city for the cell that is only kept in the memory cache, never saved to the database
+     */
+    public City toCity() {
+        return City.builder()
+                .name(name)
+                .lat(lat)
+                .lon(lon)
+                .point(true)
+                .build();
+    }
+
+    // Computed in decimal, so a coordinate on the edge of a cell is always in the cell above it and the name has no
+    // double noise
+    private static BigDecimal center(double value, BigDecimal size) {
+        BigDecimal index = BigDecimal.valueOf(value).divide(size, 0, RoundingMode.FLOOR);
+        return index.add(new BigDecimal("0.5")).multiply(size).stripTrailingZeros();
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.weatherapi.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key into one.<br>
+ * The first caller for a key becomes the leader and starts the loader, every caller that arrives while the load is in
+ * flight joins the same future instead of waiting on a lock and loading again. With {@link #execute} the loader runs
+ * on the leader's thread and joined callers block until it's done, with {@link #submit} it runs on an executor and
+ * every caller only gets the future, so no caller holds a thread while the load is in flight.
+ * The in-flight entry is removed as soon as the load completes, so the next miss starts a new load.
+ * <p>
+ * When bound to a registry the time callers spend waiting for a value from {@link #execute} or {@link #submit} is
+ * recorded per role, the leader's time is the load itself and a joined caller's time is what it waited for the leader.
+ *
+ * @param <T> the type of the loaded value
+ */
+public class SingleFlight<T> implements MeterBinder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SingleFlight.class);
+
+    private final ConcurrentHashMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+    private final String name;
+
+    private volatile Timer leaderTimer;
+    private volatile Timer joinedTimer;
+
+    public SingleFlight() {
+        this("default");
+    }
+
+    /**
+     * @param name the name the metrics are tagged with
+     */
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Loads the value for the key, or joins the load that is already in flight for it.
+     * @param key the key to coalesce on
+     * @param loader the loader, only called by the leader
+     * @return the loaded value
+     * @throws RuntimeException the exception thrown by the loader, for the leader and every joined caller
+     */
+    public T execute(String key, Supplier<T> loader) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> existing = inFlight.putIfAbsent(key, future);
+        long start = System.nanoTime();
+        if (existing != null) {
+            LOG.debug("Joining in-flight load for key: {}", key);
+            try {
+                return join(existing);
+            } finally {
+                record(joinedTimer, start);
+            }
+        }
+
+        try {
+            T value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+            record(leaderTimer, start);
+        }
+    }
+
+    /**
+     * Loads the value for the key on the executor, or joins the load that is already in flight for it.<br>
+     * The caller gets the future right away, neither the leader nor a joined caller waits on its own thread.
+     * @param key the key to coalesce on
+     * @param loader the loader, only called by the leader
+     * @param executor the executor to run the loader on
+     * @return the future of the new or the already in-flight load, completed with the exception thrown by the loader
+     * if it failed
+     */
+    public CompletableFuture<T> submit(String key, Supplier<T> loader, Executor executor) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> existing = inFlight.putIfAbsent(key, future);
+        long start = System.nanoTime();
+        if (existing != null) {
+            LOG.debug("Joining in-flight load for key: {}", key);
+            existing.whenComplete((value, throwable) -> record(joinedTimer, start));
+            return existing;
+        }
+        future.whenComplete((value, throwable) -> record(leaderTimer, start));
+        start(key, loader, executor, future);
+        return future;
+    }
+
+    /**
+     * Starts a load for the key on the executor, unless one is already in flight for it.<br>
+     * Used for background refreshes, the caller never waits for the load.
+     * @param key the key to coalesce on
+     * @param loader the loader, only called if no load for the key was in flight
+     * @param executor the executor to run the loader on
+     * @return the future of the new or the already in-flight load
+     */
+    public CompletableFuture<T> executeAsync(String key, Supplier<T> loader, Executor executor) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            LOG.debug("Load already in flight for key: {}", key);
+            return existing;
+        }
+        start(key, loader, executor, future);
+        return future;
+    }
+
+    /**
+     * Waits for a future from {@link #submit} or {@link #executeAsync}, for callers that need the value on their own
+     * thread.
+     * @return the loaded value
+     * @throws RuntimeException the exception thrown by the loader
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private void start(String key, Supplier<T> loader, Executor executor, CompletableFuture<T> future) {
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(loader.get());
+                } catch (RuntimeException | Error e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, future);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return true if a load for the key is in flight
+     */
+    public boolean isInFlight(String key) {
+        return inFlight.containsKey(key);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        leaderTimer = Timer.builder("singleflight.wait")
+                .description("Time callers spent loading or waiting for an in-flight load")
+                .tag("name", name)
+                .tag("role", "leader")
+                .register(registry);
+        joinedTimer = Timer.builder("singleflight.wait")
+                .description("Time callers spent loading or waiting for an in-flight load")
+                .tag("name", name)
+                .tag("role", "joined")
+                .register(registry);
+        Gauge.builder("singleflight.in.flight", inFlight, ConcurrentHashMap::size)
+                .description("Keys with a load in flight")
+                .tag("name", name)
+                .register(registry);
+    }
+
+    private static void record(Timer timer, long start) {
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
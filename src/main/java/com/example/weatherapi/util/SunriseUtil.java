@@ -2,40 +2,65 @@ package com.example.weatherapi.util;
 
 import com.example.weatherapi.domain.city.City;
 import com.example.weatherapi.domain.weather.Weather;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.shredzone.commons.suncalc.SunTimes;
 
+import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 public class SunriseUtil {
 
+    private static final int DAYS = 10;
+
+    // Sun times only depend on the position and the day, so every api combination of a city shares them
+    private static final Cache<SunTimesKey, SunTimesTable> SUN_TIMES = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(2, TimeUnit.DAYS)
+            .build();
+
     private SunriseUtil(){
         throw new IllegalStateException("Utility class");
     }
 
     public static void getSunriseSunset(Weather weather){
-        List<List<ZonedDateTime>> sunRiseSetsList = calculateSunriseSunset(weather.getCity());
-        weather.getCity().setSunriseList(sunRiseSetsList.get(0));
-        weather.getCity().setSunsetList(sunRiseSetsList.get(1));
+        City city = weather.getCity();
+        SunTimesTable sunTimes = getSunTimes(city.getLat(), city.getLon(), LocalDate.now(ZoneOffset.UTC));
+        city.setSunriseList(sunTimes.sunrises());
+        city.setSunsetList(sunTimes.sunsets());
+    }
+
+    /**
+     * @return the sunrises and sunsets for the ten days starting at the UTC day, computed once per position and day
+     */
+    public static SunTimesTable getSunTimes(double lat, double lon, LocalDate day) {
+        return SUN_TIMES.get(new SunTimesKey(lat, lon, day), SunriseUtil::calculateSunriseSunset);
     }
 
-    private static List<List<ZonedDateTime>> calculateSunriseSunset(City city) {
-        List<ZonedDateTime> sunRises = new ArrayList<>();
-        List<ZonedDateTime> sunSets = new ArrayList<>();
-        for (int i = 0; i < 10; i++) {
+    private static SunTimesTable calculateSunriseSunset(SunTimesKey key) {
+        List<ZonedDateTime> sunRises = new ArrayList<>(DAYS);
+        List<ZonedDateTime> sunSets = new ArrayList<>(DAYS);
+        for (int i = 0; i < DAYS; i++) {
             SunTimes times = SunTimes.compute()
-                    .at(city.getLat(), city.getLon())
-                    .today()
-                    .plusDays(i)
+                    .at(key.lat(), key.lon())
+                    .on(key.day().plusDays(i))
                     .timezone(ZoneOffset.UTC)
                     .execute();
 
             sunRises.add(Objects.requireNonNull(times.getRise()));
             sunSets.add(Objects.requireNonNull(times.getSet()));
         }
-        return List.of(sunRises, sunSets);
+        return new SunTimesTable(List.copyOf(sunRises), List.copyOf(sunSets));
+    }
+
+    private record SunTimesKey(double lat, double lon, LocalDate day) {
+    }
+
+    public record SunTimesTable(List<ZonedDateTime> sunrises, List<ZonedDateTime> sunsets) {
     }
 }
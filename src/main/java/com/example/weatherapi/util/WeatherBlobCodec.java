@@ -0,0 +1,100 @@
+package com.example.weatherapi.util;
+
+import com.example.weatherapi.domain.weather.Weather;
+import com.example.weatherapi.domain.weather.WeatherSeries;
+
+import java.io.*;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Packs the time series of a forecast into one compressed blob, used instead of one weather_data row per timestamp.
+ * <p>
+ * Layout before deflate compression: version, count, base timestamp in epoch seconds, then one column per value:
+ * the step in seconds from the previous timestamp, temperature, wind speed, wind direction, precipitation,
+ * humidity and weather code.<br>
+ * The apis switch from 1 hour to 6 or 12 hour steps further ahead, so every step is stored, but the steps repeat
+ * and compress to almost nothing.
+ */
+public class WeatherBlobCodec {
+
+    private static final byte VERSION = 1;
+
+    private WeatherBlobCodec() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static byte[] encode(Map<ZonedDateTime, Weather.WeatherData> weatherData) {
+        return encode(WeatherSeries.of(weatherData));
+    }
+
+    public static byte[] encode(WeatherSeries series) {
+        int count = series.size();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + count * 8);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeByte(VERSION);
+            out.writeInt(count);
+            out.writeLong(count == 0 ? 0 : series.epochSecond(0));
+            for (int i = 0; i < count; i++) {
+                out.writeInt(i == 0 ? 0 : Math.toIntExact(series.epochSecond(i) - series.epochSecond(i - 1)));
+            }
+            for (int i = 0; i < count; i++) out.writeFloat(series.temperature(i));
+            for (int i = 0; i < count; i++) out.writeFloat(series.windSpeed(i));
+            for (int i = 0; i < count; i++) out.writeFloat(series.windDirection(i));
+            for (int i = 0; i < count; i++) out.writeFloat(series.precipitation(i));
+            for (int i = 0; i < count; i++) out.writeFloat(series.humidity(i));
+            for (int i = 0; i < count; i++) out.writeInt(series.weatherCode(i));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode weather data", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the weather data in the order it was encoded, keyed by UTC timestamps
+     */
+    public static Map<ZonedDateTime, Weather.WeatherData> decode(byte[] blob) {
+        return decodeSeries(blob).toMap();
+    }
+
+    public static WeatherSeries decodeSeries(byte[] blob) {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(blob)))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported weather blob version: " + version);
+            }
+            int count = in.readInt();
+            long epochSecond = in.readLong();
+
+            long[] epochSeconds = new long[count];
+            for (int i = 0; i < count; i++) {
+                epochSecond += in.readInt();
+                epochSeconds[i] = epochSecond;
+            }
+            float[] temperature = readFloats(in, count);
+            float[] windSpeed = readFloats(in, count);
+            float[] windDirection = readFloats(in, count);
+            float[] precipitation = readFloats(in, count);
+            float[] humidity = readFloats(in, count);
+
+            WeatherSeries.Builder series = WeatherSeries.builder(count);
+            for (int i = 0; i < count; i++) {
+                series.add(epochSeconds[i], temperature[i], in.readInt(), windSpeed[i],
+                        windDirection[i], humidity[i], precipitation[i]);
+            }
+            return series.build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not decode weather data", e);
+        }
+    }
+
+    private static float[] readFloats(DataInputStream in, int count) throws IOException {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readFloat();
+        }
+        return values;
+    }
+}
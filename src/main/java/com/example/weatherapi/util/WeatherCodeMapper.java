@@ -1,8 +1,7 @@
 package com.example.weatherapi.util;
 
-import com.example.weatherapi.domain.weather.WeatherYr;
-
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class WeatherCodeMapper {
@@ -11,6 +10,7 @@ public class WeatherCodeMapper {
         throw new IllegalStateException("Utility class");
     }
     private static final Map<String, Integer> weatherCodeYrMap = new HashMap<>();
+    private static final List<String> YR_VARIANTS = List.of("_day", "_night", "_polartwilight");
 
     static {
         weatherCodeYrMap.put("clearsky",1);
@@ -56,22 +56,26 @@ public class WeatherCodeMapper {
         weatherCodeYrMap.put("snowshowersandthunder",11);
     }
 
-    private static Integer getWeatherCodeYRMap(String weatherCode) {
-        if (weatherCode == null) {
+    /**
+     * Maps a YR symbol code to our weather code, the _day, _night and _polartwilight variants map to the same code.<br>
+     * The old mapping only stripped _day and _night, so polar twilight steps in the north got -1 and were dropped from
+     * the merged weather, any other suffix still maps to -1.
+     * @param symbolCode the symbol code from the YR API, e.g. "partlycloudy_day"
+     * @return the weather code, or -1 if the symbol code is missing or unknown
+     */
+    public static int mapToWeatherCodeYR(String symbolCode) {
+        if (symbolCode == null) {
             return -1;
         }
-        return weatherCodeYrMap.getOrDefault(weatherCode.replaceAll("_(day|night)$", ""), -1);
+        return weatherCodeYrMap.getOrDefault(stripVariant(symbolCode), -1);
     }
 
-    public static int mapToWeatherCodeYR(WeatherYr.TimeSeries timeSeries) {
-        if(timeSeries.data().next_1_hours() != null){
-            return getWeatherCodeYRMap(timeSeries.data().next_1_hours().summary().symbol_code());
-        } else if(timeSeries.data().next_6_hours() != null){
-            return getWeatherCodeYRMap(timeSeries.data().next_6_hours().summary().symbol_code());
-        } else if(timeSeries.data().next_12_hours() != null){
-            return getWeatherCodeYRMap(timeSeries.data().next_12_hours().summary().symbol_code());
-        } else {
-            return -1;
+    private static String stripVariant(String symbolCode) {
+        for (String variant : YR_VARIANTS) {
+            if (symbolCode.endsWith(variant)) {
+                return symbolCode.substring(0, symbolCode.length() - variant.length());
+            }
         }
+        return symbolCode;
     }
 }
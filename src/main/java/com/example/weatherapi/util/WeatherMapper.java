@@ -5,14 +5,12 @@ import com.example.weatherapi.domain.entities.CityEntity;
 import com.example.weatherapi.domain.entities.WeatherDataEntity;
 import com.example.weatherapi.domain.entities.WeatherEntity;
 import com.example.weatherapi.domain.weather.Weather;
+import com.example.weatherapi.domain.weather.WeatherSeries;
 
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.LinkedHashMap;
 
 import static com.example.weatherapi.util.CityMapper.toModel;
 
@@ -23,55 +21,74 @@ public class WeatherMapper {
     }
 
     public static WeatherEntity convertToWeatherEntity(Weather weather, CityEntity cityEntity) {
+        return convertToWeatherEntity(weather, cityEntity, false);
+    }
+
+    /**
+     * @param blobStorage if the weather data is packed into the data_blob column instead of one weather_data row per timestamp
+     */
+    public static WeatherEntity convertToWeatherEntity(Weather weather, CityEntity cityEntity, boolean blobStorage) {
         WeatherEntity weatherEntity = WeatherEntity.builder()
                 .message(weather.getMessage())
                 .timeStamp(weather.getTimestamp())
                 .city(cityEntity)
                 .build();
 
-        List<WeatherDataEntity> weatherDataEntities = weather.getWeatherData().entrySet().stream()
-                .map(entry -> WeatherDataEntity.builder()
-                        .validTime(entry.getKey())
-                        .temperature(entry.getValue().getTemperature())
-                        .weatherCode(entry.getValue().getWeatherCode())
-                        .windSpeed(entry.getValue().getWindSpeed())
-                        .windDirection(entry.getValue().getWindDirection())
-                        .precipitation(entry.getValue().getPrecipitation())
-                        .humidity(entry.getValue().getHumidity())
-                        .weatherEntity(weatherEntity)
-                        .build())
-                .toList();
+        WeatherSeries series = weather.getSeries();
+        if (blobStorage) {
+            weatherEntity.setDataBlob(WeatherBlobCodec.encode(series));
+            weatherEntity.setWeatherDataList(new ArrayList<>());
+            return weatherEntity;
+        }
+
+        List<WeatherDataEntity> weatherDataEntities = new ArrayList<>(series.size());
+        for (int i = 0; i < series.size(); i++) {
+            weatherDataEntities.add(WeatherDataEntity.builder()
+                    .validTime(series.validTime(i))
+                    .temperature(series.temperature(i))
+                    .weatherCode(series.weatherCode(i))
+                    .windSpeed(series.windSpeed(i))
+                    .windDirection(series.windDirection(i))
+                    .precipitation(series.precipitation(i))
+                    .humidity(series.humidity(i))
+                    .weatherEntity(weatherEntity)
+                    .build());
+        }
 
         weatherEntity.setWeatherDataList(weatherDataEntities);
 
         return weatherEntity;
     }
 
+    /**
+     * Reads both storage formats, forecasts saved as weather_data rows before the blob was enabled still load.
+     * @return weather backed by a series, it can't be changed with addWeatherData
+     */
     public static Weather convertToWeather(WeatherEntity weatherEntity) {
+        WeatherSeries series = weatherEntity.getDataBlob() != null
+                ? WeatherBlobCodec.decodeSeries(weatherEntity.getDataBlob())
+                : convertToWeatherSeries(weatherEntity.getWeatherDataList());
         return Weather.builder()
                 .message(weatherEntity.getMessage())
                 .timestamp(weatherEntity.getTimeStamp())
                 .city(toModel(weatherEntity.getCity()))
-                .weatherData(convertToWeatherDataMap(weatherEntity.getWeatherDataList()))
+                .weatherData(null)
+                .series(series)
                 .build();
     }
 
-    private static Map<ZonedDateTime, Weather.WeatherData> convertToWeatherDataMap(List<WeatherDataEntity> weatherDataEntities) {
-        return weatherDataEntities.stream()
-                .sorted(Comparator.comparing(WeatherDataEntity::getValidTime))
-                .collect(Collectors.toMap(
-                        WeatherDataEntity::getValidTime,
-                        entity -> Weather.WeatherData.builder()
-                                .temperature(entity.getTemperature())
-                                .weatherCode(entity.getWeatherCode())
-                                .windSpeed(entity.getWindSpeed())
-                                .windDirection(entity.getWindDirection())
-                                .precipitation(entity.getPrecipitation())
-                                .humidity(entity.getHumidity())
-                                .build(),
-                        (existing, replacement) -> existing,
-                        LinkedHashMap::new
-                ));
+    private static WeatherSeries convertToWeatherSeries(List<WeatherDataEntity> weatherDataEntities) {
+        WeatherSeries.Builder series = WeatherSeries.builder(weatherDataEntities.size());
+        for (WeatherDataEntity entity : weatherDataEntities) {
+            series.add(entity.getValidTime().toEpochSecond(),
+                    entity.getTemperature(),
+                    entity.getWeatherCode(),
+                    entity.getWindSpeed(),
+                    entity.getWindDirection(),
+                    entity.getHumidity(),
+                    entity.getPrecipitation());
+        }
+        return series.build();
     }
 
     public static Weather createBaseWeather(double lon, double lat, City city, String api) {
@@ -0,0 +1,187 @@
+package com.example.weatherapi.util;
+
+import com.example.weatherapi.domain.weather.WeatherSeries;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Merges the series of several apis into one, point by point.<br>
+ * The series are aligned on a shared timeline and walked once each, sums and counts are kept in primitive arrays
+ * indexed by the timeline, so nothing is allocated per point until the merged series is built.
+ * <p>
+ * The first source with a timestamp creates the point with all its values, later sources add every value that isn't
+ * -99 to the sums. Wind directions are summed as sine and cosine, so every source has the same weight in the circular
+ * mean whatever the order. Values are averaged and rounded to one decimal at the end, points without a weather code
+ * are dropped.
+ */
+public class WeatherMergeEngine {
+
+    public static final float INVALID_VALUE = -99f;
+    private static final int INVALID_WEATHER_CODE = -1;
+
+    private WeatherMergeEngine() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * @param series the weather data of the api
+     * @param createsPoints if the api adds timestamps no earlier source has, otherwise it's only merged into them
+     * @param preferredWeatherCode if the weather code of the api replaces the merged one, otherwise it only fills in
+     *                             a missing code
+     */
+    public record Source(WeatherSeries series, boolean createsPoints, boolean preferredWeatherCode) {
+    }
+
+    /**
+     * @param sources the apis in the order they are merged, the sources that create points should come first
+     * @return the merged series, empty if no source created any points
+     */
+    public static WeatherSeries merge(List<Source> sources) {
+        long[] timeline = createTimeline(sources);
+        int size = timeline.length;
+
+        float[] temperature = new float[size];
+        float[] windSpeed = new float[size];
+        float[] precipitation = new float[size];
+        float[] humidity = new float[size];
+        int[] temperatureCount = new int[size];
+        int[] windSpeedCount = new int[size];
+        int[] precipitationCount = new int[size];
+        int[] humidityCount = new int[size];
+        double[] windSin = new double[size];
+        double[] windCos = new double[size];
+        int[] windDirectionCount = new int[size];
+        int[] weatherCode = new int[size];
+        boolean[] created = new boolean[size];
+
+        for (Source source : sources) {
+            WeatherSeries series = source.series();
+            int point = 0;
+            for (int i = 0; i < series.size(); i++) {
+                long epochSecond = series.epochSecond(i);
+                // Both are sorted, so the position in the timeline only moves forward
+                while (point < size && timeline[point] < epochSecond) {
+                    point++;
+                }
+                if (point == size) {
+                    break;
+                }
+                if (timeline[point] != epochSecond) {
+                    continue;
+                }
+
+                if (!created[point]) {
+                    if (!source.createsPoints()) {
+                        continue;
+                    }
+                    created[point] = true;
+                    temperature[point] = series.temperature(i);
+                    windSpeed[point] = series.windSpeed(i);
+                    precipitation[point] = series.precipitation(i);
+                    humidity[point] = series.humidity(i);
+                    temperatureCount[point] = 1;
+                    windSpeedCount[point] = 1;
+                    precipitationCount[point] = 1;
+                    humidityCount[point] = 1;
+                    weatherCode[point] = series.weatherCode(i);
+                } else {
+                    if (series.temperature(i) != INVALID_VALUE) {
+                        temperature[point] += series.temperature(i);
+                        temperatureCount[point]++;
+                    }
+                    if (series.windSpeed(i) != INVALID_VALUE) {
+                        windSpeed[point] += series.windSpeed(i);
+                        windSpeedCount[point]++;
+                    }
+                    if (series.precipitation(i) != INVALID_VALUE) {
+                        precipitation[point] += series.precipitation(i);
+                        precipitationCount[point]++;
+                    }
+                    if (series.humidity(i) != INVALID_VALUE) {
+                        humidity[point] += series.humidity(i);
+                        humidityCount[point]++;
+                    }
+                    if (source.preferredWeatherCode() || weatherCode[point] <= INVALID_WEATHER_CODE) {
+                        weatherCode[point] = series.weatherCode(i);
+                    }
+                }
+                if (series.windDirection(i) != INVALID_VALUE) {
+                    double radians = Math.toRadians(series.windDirection(i));
+                    windSin[point] += Math.sin(radians);
+                    windCos[point] += Math.cos(radians);
+                    windDirectionCount[point]++;
+                }
+            }
+        }
+
+        WeatherSeries.Builder merged = WeatherSeries.builder(size);
+        for (int point = 0; point < size; point++) {
+            if (!created[point] || weatherCode[point] == INVALID_WEATHER_CODE) {
+                continue;
+            }
+            merged.add(timeline[point],
+                    round(temperature[point] / temperatureCount[point]),
+                    weatherCode[point],
+                    round(windSpeed[point] / windSpeedCount[point]),
+                    windDirectionCount[point] == 0 ? INVALID_VALUE : meanWindDirection(windSin[point], windCos[point]),
+                    round(humidity[point] / humidityCount[point]),
+                    round(precipitation[point] / precipitationCount[point]));
+        }
+        return merged.build();
+    }
+
+    // The sorted timestamps of every source that creates points, without duplicates
+    private static long[] createTimeline(List<Source> sources) {
+        int total = 0;
+        for (Source source : sources) {
+            if (source.createsPoints()) {
+                total += source.series().size();
+            }
+        }
+        long[] timeline = new long[total];
+        int size = 0;
+        for (Source source : sources) {
+            if (source.createsPoints()) {
+                for (int i = 0; i < source.series().size(); i++) {
+                    timeline[size++] = source.series().epochSecond(i);
+                }
+            }
+        }
+        Arrays.sort(timeline);
+
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || timeline[unique - 1] != timeline[i]) {
+                timeline[unique++] = timeline[i];
+            }
+        }
+        return Arrays.copyOf(timeline, unique);
+    }
+
+    /**
+     * The mean of the directions on the circle from the sums of their sines and cosines, so 350 and 10 gives 0 and
+     * not 180. Rounded to one decimal in [0, 360).
+     */
+    private static float meanWindDirection(double sumSin, double sumCos) {
+        float meanWindDirection = round((float) Math.toDegrees(Math.atan2(sumSin, sumCos)));
+        if (meanWindDirection < 0) {
+            meanWindDirection += 360;
+        }
+        return meanWindDirection;
+    }
+
+    /**
+     * Rounds to one decimal, half away from zero, without a BigDecimal per value.<br>
+     * A float that isn't exactly on a rounding boundary is much further from it than the error of scaling it as a
+     * double, and dividing the rounded integer by 10 as a float gives the float closest to the decimal.
+     */
+    static float round(float value) {
+        long scaled = Math.round(Math.abs((double) value) * 10);
+        if (scaled == 0) {
+            return 0f;
+        }
+        float rounded = scaled / 10f;
+        return value < 0 ? -rounded : rounded;
+    }
+}
@@ -2,25 +2,24 @@ package com.example.weatherapi.api;
 
 import com.example.weatherapi.domain.city.City;
 import com.example.weatherapi.domain.weather.Weather;
-import com.example.weatherapi.domain.weather.WeatherFmi;
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.example.weatherapi.api.parsers.FmiResponseParser;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.Scanner;
+import java.time.ZonedDateTime;
 
 import static com.example.weatherapi.utilitytests.WeatherTestUtils.assertWeatherDataFmiRagsved;
 import static com.example.weatherapi.utilitytests.WeatherTestUtils.assertWeatherDataFmiStockholm;
+import static com.example.weatherapi.utilitytests.WeatherTestUtils.buildWeatherDataWithoutWind;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @ActiveProfiles("test")
@@ -58,40 +57,20 @@ class FmiApiTests {
 
     @Test
     void parseXmlTestToWeatherFmiTest4Hours() throws IOException {
-        XmlMapper xmlMapper = new XmlMapper();
+        Weather weather = Weather.builder().build();
         File file = new File("src/test/resources/weatherexamples/fmi/rågsvedexample-4hours.xml");
-        String xmlContent = new String(Files.readAllBytes(file.toPath()));
-        xmlContent = xmlContent.replace("&param=", "&amp;param=").replace("&language=", "&amp;language=");
-        WeatherFmi weatherFmi = xmlMapper.readValue(xmlContent, WeatherFmi.class);
-        assertThat(weatherFmi).isNotNull();
-
-        weatherFmi.getMembers().stream()
-                .map(WeatherFmi.FeatureMember::getPointTimeSeriesObservation)
-                .filter(observation -> observation != null && observation.getResult() != null)
-                .map(WeatherFmi.PointTimeSeriesObservation::getResult)
-                .map(WeatherFmi.Result::getMeasurementTimeseries)
-                .filter(Objects::nonNull)
-                .forEach(timeseries -> {
-                    switch (extractRelevantPart(timeseries.getId())) {
-                        case "Temperature" -> {
-                            assertMeasurement(timeseries, "2024-05-14T13:00:00Z", 20.2);
-                            assertMeasurement(timeseries, "2024-05-14T14:00:00Z", 19.5);
-                        }
-                        case "WindSpeedMS", "WindDirection" -> {
-                            assertMeasurement(timeseries, "2024-05-14T13:00:00Z", Double.NaN);
-                            assertMeasurement(timeseries, "2024-05-14T14:00:00Z", Double.NaN);
-                        }
-                        case "Precipitation1h" -> {
-                            assertMeasurement(timeseries, "2024-05-14T13:00:00Z", 0.0);
-                            assertMeasurement(timeseries, "2024-05-14T14:00:00Z", 0.0);
-                        }
-                    }
-                });
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            FmiResponseParser.parse(inputStream, weather);
+        }
+
+        assertThat(weather.getWeatherData()).hasSize(6);
+        assertMeasurement(weather, "2024-05-14T13:00:00Z", 20.2f, 0.0f);
+        assertMeasurement(weather, "2024-05-14T14:00:00Z", 19.5f, 0.0f);
     }
 
     @Test
     void parseXmlTestToWeatherFmiTest10Days() throws IOException {
-        XmlMapper xmlMapper = new XmlMapper();
+        Weather weather = Weather.builder().build();
         ClassLoader classLoader = getClass().getClassLoader();
 
         // Use getResourceAsStream to handle special characters in filenames
@@ -103,59 +82,59 @@ class FmiApiTests {
             }
 
             System.out.println("Resource found: " + resourcePath);
+            FmiResponseParser.parse(inputStream, weather);
+        }
 
-            String xmlContent = new Scanner(inputStream, StandardCharsets.UTF_8).useDelimiter("\\A").next();
-            xmlContent = xmlContent.replace("&param=", "&amp;param=").replace("&language=", "&amp;language=");
-            WeatherFmi weatherFmi = xmlMapper.readValue(xmlContent, WeatherFmi.class);
-            assertThat(weatherFmi).isNotNull();
-
-            weatherFmi.getMembers().stream()
-                    .map(WeatherFmi.FeatureMember::getPointTimeSeriesObservation)
-                    .filter(observation -> observation != null && observation.getResult() != null)
-                    .map(WeatherFmi.PointTimeSeriesObservation::getResult)
-                    .map(WeatherFmi.Result::getMeasurementTimeseries)
-                    .filter(Objects::nonNull)
-                    .forEach(timeseries -> {
-                        switch (extractRelevantPart(timeseries.getId())) {
-                            case "Temperature" -> {
-                                assertMeasurement(timeseries, "2024-05-16T11:00:00Z", 20.0);
-                                assertMeasurement(timeseries, "2024-05-16T12:00:00Z", 20.3);
-                            }
-                            case "WindSpeedMS", "WindDirection" -> {
-                                assertMeasurement(timeseries, "2024-05-16T11:00:00Z", Double.NaN);
-                                assertMeasurement(timeseries, "2024-05-16T12:00:00Z", Double.NaN);
-                            }
-                            case "Precipitation1h" -> {
-                                assertMeasurement(timeseries, "2024-05-19T12:00:00Z", 0.0);
-                                assertMeasurement(timeseries, "2024-05-19T13:00:00Z", 0.1);
-                            }
-                        }
-                    });
+        assertMeasurement(weather, "2024-05-16T11:00:00Z", 20.0f, null);
+        assertMeasurement(weather, "2024-05-16T12:00:00Z", 20.3f, null);
+        assertMeasurement(weather, "2024-05-19T12:00:00Z", null, 0.0f);
+        assertMeasurement(weather, "2024-05-19T13:00:00Z", null, 0.1f);
+    }
+
+    @Test
+    void parseXmlTestOnlyReadsFirstDocument() throws IOException {
+        Weather weather = Weather.builder().build();
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("weatherexamples/fmi/stockholmExample-2.xml")) {
+            FmiResponseParser.parse(inputStream, weather);
         }
+
+        assertThat(weather.getWeatherData().keySet().iterator().next()).isEqualTo(ZonedDateTime.parse("2024-09-18T17:00:00Z"));
+        assertWeatherDataFmiStockholm(weather);
     }
 
-    private void assertMeasurement(WeatherFmi.MeasurementTimeseries timeseries, String expectedTime, double expectedValue) {
-        Optional<WeatherFmi.MeasurementTVP> matchingPoint = timeseries.getPoints().stream()
-                .map(WeatherFmi.MeasurementTimeseries.Point::getMeasurementTVP)
-                .filter(data -> expectedTime.equals(data.getTime()))
-                .findFirst();
-
-        assertThat(matchingPoint)
-                .isPresent()
-                .hasValueSatisfying(data -> {
-                    if (Double.isNaN(expectedValue)) {
-                        assertThat(data.getValue()).isNaN();
-                    } else {
-                        assertThat(data.getValue()).isEqualTo(expectedValue);
-                    }
-                });
+    @Test
+    void parseXmlTestEscapesUnescapedAmpersands() throws IOException {
+        String xml = """
+                <wfs:FeatureCollection xmlns:wfs="http://www.opengis.net/wfs/2.0" xmlns:gml="http://www.opengis.net/gml/3.2"
+                        xmlns:wml2="http://www.opengis.net/waterml/2.0" xmlns:om="http://www.opengis.net/om/2.0"
+                        xmlns:xlink="http://www.w3.org/1999/xlink">
+                    <om:observedProperty xlink:href="https://opendata.fmi.fi/meta?observableProperty=forecast&param=Temperature&language=eng&amp;x=1"/>
+                    <wml2:MeasurementTimeseries gml:id="mts-1-1-Temperature">
+                        <wml2:point><wml2:MeasurementTVP><wml2:time>2024-05-14T13:00:00Z</wml2:time><wml2:value>NaN</wml2:value></wml2:MeasurementTVP></wml2:point>
+                    </wml2:MeasurementTimeseries>
+                </wfs:FeatureCollection>
+                """;
+        Weather weather = Weather.builder().build();
+        FmiResponseParser.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), weather);
+
+        // NaN temperatures are kept as a row but sanitized to -99 like the other missing values
+        assertThat(weather.getWeatherData().get(ZonedDateTime.parse("2024-05-14T13:00:00Z")))
+                .isEqualTo(buildWeatherDataWithoutWind(-99f, -99f, -99f));
     }
 
-    private String extractRelevantPart(String id) {
-        if (id == null) {
-            return "";
+    private void assertMeasurement(Weather weather, String expectedTime, Float expectedTemperature, Float expectedPrecipitation) {
+        Weather.WeatherData data = weather.getWeatherData().get(ZonedDateTime.parse(expectedTime));
+
+        assertThat(data).isNotNull();
+        // FMI doesn't provide wind in the forecast we query, so both are always set to missing
+        assertThat(data.getWindSpeed()).isEqualTo(-99f);
+        assertThat(data.getWindDirection()).isEqualTo(-99f);
+        assertThat(data.getWeatherCode()).isEqualTo(-1);
+        if (expectedTemperature != null) {
+            assertThat(data.getTemperature()).isEqualTo(expectedTemperature);
+        }
+        if (expectedPrecipitation != null) {
+            assertThat(data.getPrecipitation()).isEqualTo(expectedPrecipitation);
         }
-        int lastDashIndex = id.lastIndexOf('-');
-        return lastDashIndex != -1 ? id.substring(lastDashIndex + 1) : id;
     }
 }
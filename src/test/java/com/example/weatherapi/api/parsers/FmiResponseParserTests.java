@@ -0,0 +1,97 @@
+package com.example.weatherapi.api.parsers;
+
+import com.example.weatherapi.domain.weather.Weather;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FmiResponseParserTests {
+
+    private static final String GML_NAMESPACE = "http://www.opengis.net/gml/3.2";
+    private static final String WML2_NAMESPACE = "http://www.opengis.net/waterml/2.0";
+    private static final String END_OF_ROOT = "</wfs:FeatureCollection>";
+
+    // Test Case 1: The streaming parser gives the same weather data as binding the whole document
+    @ParameterizedTest
+    @ValueSource(strings = {"stockholmExample.xml", "stockholmExample-2.xml", "rågsvedexample-4hours.xml",
+            "rågsvedexample-10days.xml", "rågsvedexample-10days-2.xml"})
+    void shouldMatchTreeParsing(String file) throws Exception {
+        Weather weather = Weather.builder().build();
+        try (InputStream body = open(file)) {
+            FmiResponseParser.parse(body, weather);
+        }
+
+        Map<ZonedDateTime, Weather.WeatherData> expected = parseTree(file);
+        assertThat(expected).isNotEmpty();
+        assertThat(weather.getWeatherData()).isEqualTo(expected);
+    }
+
+    // The mapping of the old WeatherFmi binding, a row per temperature value and -99 for missing or NaN values
+    private Map<ZonedDateTime, Weather.WeatherData> parseTree(String file) throws Exception {
+        String xml;
+        try (InputStream body = open(file)) {
+            xml = new String(body.readAllBytes(), StandardCharsets.UTF_8)
+                    .replace("&param=", "&amp;param=").replace("&language=", "&amp;language=");
+        }
+        // XmlMapper stopped at the end of the root element, one example has more after it
+        xml = xml.substring(0, xml.indexOf(END_OF_ROOT) + END_OF_ROOT.length());
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document document = factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+
+        Map<String, Map<ZonedDateTime, Float>> parameters = new HashMap<>();
+        NodeList timeSeriesList = document.getElementsByTagNameNS(WML2_NAMESPACE, "MeasurementTimeseries");
+        for (int i = 0; i < timeSeriesList.getLength(); i++) {
+            Element timeSeries = (Element) timeSeriesList.item(i);
+            String id = timeSeries.getAttributeNS(GML_NAMESPACE, "id");
+            Map<ZonedDateTime, Float> values = parameters.computeIfAbsent(
+                    id.substring(id.lastIndexOf('-') + 1).toLowerCase(), type -> new HashMap<>());
+            NodeList measurements = timeSeries.getElementsByTagNameNS(WML2_NAMESPACE, "MeasurementTVP");
+            for (int j = 0; j < measurements.getLength(); j++) {
+                Element measurement = (Element) measurements.item(j);
+                String value = text(measurement, "value");
+                if (!value.isEmpty()) {
+                    values.put(ZonedDateTime.parse(text(measurement, "time")), (float) Double.parseDouble(value));
+                }
+            }
+        }
+
+        Map<ZonedDateTime, Weather.WeatherData> weatherData = new LinkedHashMap<>();
+        parameters.getOrDefault("temperature", Map.of()).forEach((validTime, temperature) ->
+                weatherData.put(validTime, Weather.WeatherData.builder()
+                        .temperature(sanitize(temperature))
+                        .weatherCode(-1)
+                        .windSpeed(sanitize(parameters.getOrDefault("windspeedms", Map.of()).get(validTime)))
+                        .windDirection(sanitize(parameters.getOrDefault("winddirection", Map.of()).get(validTime)))
+                        .humidity(sanitize(parameters.getOrDefault("humidity", Map.of()).get(validTime)))
+                        .precipitation(sanitize(parameters.getOrDefault("precipitation1h", Map.of()).get(validTime)))
+                        .build()));
+        return weatherData;
+    }
+
+    private String text(Element element, String name) {
+        return element.getElementsByTagNameNS(WML2_NAMESPACE, name).item(0).getTextContent().trim();
+    }
+
+    private float sanitize(Float value) {
+        return value == null || Float.isNaN(value) ? -99 : value;
+    }
+
+    private InputStream open(String file) {
+        return getClass().getResourceAsStream("/weatherexamples/fmi/" + file);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.weatherapi.api.parsers;
+
+import com.example.weatherapi.domain.weather.Weather;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SmhiResponseParserTests {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Test Case 1: The streaming parser gives the same weather data as binding the whole response tree
+    @ParameterizedTest
+    @ValueSource(strings = {"stockholmExample.json", "göteborgExample.json"})
+    void shouldMatchTreeParsing(String file) throws IOException {
+        Weather weather = Weather.builder().build();
+        try (InputStream body = open(file)) {
+            SmhiResponseParser.parse(body, weather);
+        }
+
+        Map<ZonedDateTime, Weather.WeatherData> expected = parseTree(file);
+        assertThat(expected).isNotEmpty();
+        assertThat(weather.getWeatherData()).isEqualTo(expected);
+    }
+
+    // The mapping of the old WeatherSmhi records, missing values became 0
+    private Map<ZonedDateTime, Weather.WeatherData> parseTree(String file) throws IOException {
+        Map<ZonedDateTime, Weather.WeatherData> weatherData = new LinkedHashMap<>();
+        try (InputStream body = open(file)) {
+            for (JsonNode timeSeries : MAPPER.readTree(body).get("timeSeries")) {
+                JsonNode data = timeSeries.get("data");
+                weatherData.put(ZonedDateTime.parse(timeSeries.get("time").asText()), Weather.WeatherData.builder()
+                        .temperature(value(data, "air_temperature"))
+                        .weatherCode(data.path("symbol_code").asInt(0))
+                        .windSpeed(value(data, "wind_speed"))
+                        .windDirection(value(data, "wind_from_direction"))
+                        .humidity(value(data, "relative_humidity"))
+                        .precipitation((value(data, "precipitation_amount_min") + value(data, "precipitation_amount_max")) / 2)
+                        .build());
+            }
+        }
+        return weatherData;
+    }
+
+    private float value(JsonNode data, String field) {
+        JsonNode value = data.get(field);
+        return value != null && value.isNumber() ? value.floatValue() : 0;
+    }
+
+    private InputStream open(String file) {
+        return getClass().getResourceAsStream("/weatherexamples/smhi/" + file);
+    }
+}
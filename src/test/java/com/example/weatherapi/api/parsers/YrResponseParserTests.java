@@ -0,0 +1,120 @@
+package com.example.weatherapi.api.parsers;
+
+import com.example.weatherapi.domain.weather.Weather;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.weatherapi.util.WeatherCodeMapper.mapToWeatherCodeYR;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class YrResponseParserTests {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final List<String> PERIODS = List.of("next_1_hours", "next_6_hours", "next_12_hours");
+
+    // Test Case 1: The streaming parser gives the same weather data as binding the whole response tree
+    @ParameterizedTest
+    @ValueSource(strings = {"stockholmExample.json", "göteborgExample.json", "rågsvedExample.json"})
+    void shouldMatchTreeParsing(String file) throws IOException {
+        Weather weather = Weather.builder().build();
+        try (InputStream body = open(file)) {
+            YrResponseParser.parse(body, weather);
+        }
+
+        Map<ZonedDateTime, Weather.WeatherData> expected = parseTree(file);
+        assertThat(expected).isNotEmpty();
+        assertThat(weather.getWeatherData()).isEqualTo(expected);
+    }
+
+    // Test Case 2: Precipitation falls through to the next period with an amount, the code comes from the first period
+    @Test
+    void shouldFallBackToLongerPeriods() throws IOException {
+        String json = """
+                {"properties": {"timeseries": [
+                  {"time": "2024-05-15T17:00:00Z", "data": {
+                    "instant": {"details": {"air_temperature": 10.5, "wind_speed": 2.0, "wind_from_direction": 90.0, "relative_humidity": 80.0}},
+                    "next_6_hours": {"summary": {"symbol_code": "rain_polartwilight"}, "details": {}},
+                    "next_12_hours": {"summary": {"symbol_code": "cloudy"}, "details": {"precipitation_amount": 1.5}}}},
+                  {"time": "2024-05-15T18:00:00Z", "data": {
+                    "instant": {"details": {"air_temperature": 11.0, "wind_speed": 2.0, "wind_from_direction": 90.0, "relative_humidity": 80.0}}}}
+                ]}}
+                """;
+        Weather weather = Weather.builder().build();
+        YrResponseParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), weather);
+
+        Weather.WeatherData first = weather.getWeatherData().get(ZonedDateTime.parse("2024-05-15T17:00:00Z"));
+        assertThat(first.getWeatherCode()).isEqualTo(mapToWeatherCodeYR("rain"));
+        assertThat(first.getPrecipitation()).isEqualTo(1.5f);
+        Weather.WeatherData second = weather.getWeatherData().get(ZonedDateTime.parse("2024-05-15T18:00:00Z"));
+        assertThat(second.getWeatherCode()).isEqualTo(-1);
+        assertThat(second.getPrecipitation()).isEqualTo(-99.0f);
+    }
+
+    // Test Case 3: The day, night and polar twilight variants map to the base code, unknown codes to -1
+    @Test
+    void shouldMapSymbolCodeVariants() {
+        int partlyCloudy = mapToWeatherCodeYR("partlycloudy");
+        assertThat(partlyCloudy).isNotEqualTo(-1);
+        assertThat(mapToWeatherCodeYR("partlycloudy_day")).isEqualTo(partlyCloudy);
+        assertThat(mapToWeatherCodeYR("partlycloudy_night")).isEqualTo(partlyCloudy);
+        assertThat(mapToWeatherCodeYR("partlycloudy_polartwilight")).isEqualTo(partlyCloudy);
+        assertThat(mapToWeatherCodeYR("partlycloudy_evening")).isEqualTo(-1);
+        assertThat(mapToWeatherCodeYR(null)).isEqualTo(-1);
+    }
+
+    // The mapping of the old WeatherYr records, which only stripped the _day and _night variants
+    private Map<ZonedDateTime, Weather.WeatherData> parseTree(String file) throws IOException {
+        Map<ZonedDateTime, Weather.WeatherData> weatherData = new LinkedHashMap<>();
+        try (InputStream body = open(file)) {
+            for (JsonNode timeSeries : MAPPER.readTree(body).get("properties").get("timeseries")) {
+                JsonNode data = timeSeries.get("data");
+                JsonNode details = data.get("instant").get("details");
+                weatherData.put(ZonedDateTime.parse(timeSeries.get("time").asText()), Weather.WeatherData.builder()
+                        .temperature(details.get("air_temperature").floatValue())
+                        .weatherCode(weatherCode(data))
+                        .windSpeed(details.get("wind_speed").floatValue())
+                        .windDirection(details.get("wind_from_direction").floatValue())
+                        .humidity(details.get("relative_humidity").floatValue())
+                        .precipitation(precipitation(data))
+                        .build());
+            }
+        }
+        return weatherData;
+    }
+
+    private int weatherCode(JsonNode data) {
+        for (String period : PERIODS) {
+            if (data.has(period)) {
+                String symbolCode = data.get(period).path("summary").path("symbol_code").textValue();
+                return symbolCode == null ? -1 : mapToWeatherCodeYR(symbolCode.replaceAll("_(day|night)$", ""));
+            }
+        }
+        return -1;
+    }
+
+    private float precipitation(JsonNode data) {
+        for (String period : PERIODS) {
+            JsonNode amount = data.path(period).path("details").path("precipitation_amount");
+            if (amount.isNumber()) {
+                return amount.floatValue();
+            }
+        }
+        return -99.0f;
+    }
+
+    private InputStream open(String file) {
+        return getClass().getResourceAsStream("/weatherexamples/yr/" + file);
+    }
+}
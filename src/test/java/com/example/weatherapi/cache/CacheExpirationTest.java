@@ -3,6 +3,8 @@ package com.example.weatherapi.cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import org.junit.jupiter.api.Test;
 import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -49,5 +51,10 @@ class CacheExpirationTest {
         assertNull(cache.get(key, String.class));
     }
 
-}
+    @Test
+    void testHardTtlIsNeverShorterThanCacheTime() {
+        assertEquals(Duration.ofMinutes(180), CachedWeatherExpiry.hardTtl(60, 180));
+        assertEquals(Duration.ofMinutes(60), CachedWeatherExpiry.hardTtl(60, 30));
+    }
 
+}
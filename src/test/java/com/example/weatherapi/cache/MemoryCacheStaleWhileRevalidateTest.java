@@ -0,0 +1,82 @@
+package com.example.weatherapi.cache;
+
+import com.example.weatherapi.domain.city.City;
+import com.example.weatherapi.domain.weather.Weather;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryCacheStaleWhileRevalidateTest {
+
+    private static final String KEY = "stockholmmerged";
+
+    private final AtomicLong nanos = new AtomicLong();
+    private MemoryCacheUtils memoryCacheUtils;
+
+    @BeforeEach
+    void setUp() {
+        Ticker ticker = nanos::get;
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .ticker(ticker)
+                .expireAfterWrite(Duration.ofMinutes(180)));
+
+        // Soft ttl 60 minutes, hard ttl 180 minutes
+        memoryCacheUtils = new MemoryCacheUtils(cacheManager, new ObjectMapper().registerModule(new JavaTimeModule()), 60, true);
+        memoryCacheUtils.putWeatherInCache(KEY, Weather.builder()
+                .city(City.builder().name("Stockholm").build())
+                .timestamp(ZonedDateTime.now(ZoneOffset.UTC))
+                .build());
+    }
+
+    @Test
+    void testFreshEntryIsNotStale() {
+        advance(Duration.ofMinutes(59));
+
+        assertNotNull(memoryCacheUtils.getWeatherFromCache(KEY, "Stockholm", Collections.emptyList()));
+        assertNull(memoryCacheUtils.getStaleWeatherFromCache(KEY, "Stockholm"));
+    }
+
+    @Test
+    void testEntryAfterSoftTtlIsOnlyServedStale() {
+        advance(Duration.ofMinutes(61));
+
+        assertNull(memoryCacheUtils.getWeatherFromCache(KEY, "Stockholm", Collections.emptyList()));
+        Weather stale = memoryCacheUtils.getStaleWeatherFromCache(KEY, "Stockholm");
+        assertNotNull(stale);
+        assertEquals("Stockholm", stale.getCity().getName());
+    }
+
+    @Test
+    void testEntryAfterHardTtlIsGone() {
+        advance(Duration.ofMinutes(181));
+
+        assertNull(memoryCacheUtils.getWeatherFromCache(KEY, "Stockholm", Collections.emptyList()));
+        assertNull(memoryCacheUtils.getStaleWeatherFromCache(KEY, "Stockholm"));
+    }
+
+    @Test
+    void testRewriteMakesEntryFreshAgain() {
+        advance(Duration.ofMinutes(90));
+        memoryCacheUtils.putWeatherInCache(KEY, memoryCacheUtils.getStaleWeatherFromCache(KEY, "Stockholm"));
+
+        assertNotNull(memoryCacheUtils.getWeatherFromCache(KEY, "Stockholm", Collections.emptyList()));
+        assertNull(memoryCacheUtils.getStaleWeatherFromCache(KEY, "Stockholm"));
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+}
@@ -2,6 +2,7 @@ package com.example.weatherapi.cache;
 
 import com.example.weatherapi.domain.city.City;
 import com.example.weatherapi.domain.weather.Weather;
+import com.example.weatherapi.util.GridCell;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,9 +10,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -74,15 +80,132 @@ class MemoryCacheUtilsTest {
     }
 
     @Test
-    void testDeepCopyBehavior() {
+    void testCachedWeatherIsFrozenCopy() {
+        testWeather.getCity().setSunriseList(new ArrayList<>(List.of(ZonedDateTime.now(ZoneOffset.UTC))));
         memoryCacheUtils.putWeatherInCache("testKey", testWeather);
 
         Weather cachedWeather = memoryCacheUtils.getWeatherFromCache("testKey", "TestCity", Collections.emptyList());
 
         assertNotSame(testWeather, cachedWeather);
+        assertSame(cachedWeather, memoryCacheUtils.getWeatherFromCache("testKey", "TestCity", Collections.emptyList()));
 
         assertEquals(testWeather.getCity().getName(), cachedWeather.getCity().getName());
         assertEquals(testWeather.getTimestamp(), cachedWeather.getTimestamp());
+
+        Map<ZonedDateTime, Weather.WeatherData> cachedWeatherData = cachedWeather.getWeatherData();
+        Weather.WeatherData weatherData = Weather.WeatherData.builder().build();
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        assertThrows(UnsupportedOperationException.class, () -> cachedWeatherData.put(now, weatherData));
+        List<ZonedDateTime> cachedSunriseList = cachedWeather.getCity().getSunriseList();
+        assertThrows(UnsupportedOperationException.class, cachedSunriseList::clear);
+
+        // Changes to the original weather don't reach the cached weather
+        testWeather.getWeatherData().put(now, weatherData);
+        testWeather.getCity().getSunriseList().clear();
+        assertTrue(cachedWeather.getWeatherData().isEmpty());
+        assertEquals(1, cachedWeather.getCity().getSunriseList().size());
+        memoryCacheUtils.evictCacheIfPresent("testKey", "TestCity");
+    }
+
+    @Test
+    void testCachedWeatherCantBeChanged() {
+        memoryCacheUtils.putWeatherInCache("testKey", testWeather);
+        Weather cachedWeather = memoryCacheUtils.getWeatherFromCache("testKey", "TestCity", Collections.emptyList());
+        City cachedCity = cachedWeather.getCity();
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+
+        assertThrows(UnsupportedOperationException.class, () -> cachedWeather.setMessage("changed"));
+        assertThrows(UnsupportedOperationException.class, () -> cachedWeather.setCity(new City()));
+        assertThrows(UnsupportedOperationException.class, () -> cachedWeather.addWeatherData(now, 1, 1, 1, 1, 1, 1));
+        assertThrows(UnsupportedOperationException.class, () -> cachedCity.setName("changed"));
+        assertThrows(UnsupportedOperationException.class, () -> cachedCity.setSunriseList(List.of(now)));
+
+        // Freezing the cached weather again hands out the same instance
+        assertSame(cachedWeather, cachedWeather.freeze());
+        assertEquals(testWeather.getMessage(), cachedWeather.getMessage());
+        assertEquals("TestCity", cachedCity.getName());
+        memoryCacheUtils.evictCacheIfPresent("testKey", "TestCity");
+    }
+
+    @Test
+    void testMostAccessedKeysAreOrderedAndDecay() {
+        List<String> apis = List.of("FMI", "SMHI", "YR");
+        for (int i = 0; i < 4; i++) {
+            memoryCacheUtils.recordAccess("accesstestamerged", "accesstesta", apis);
+        }
+        memoryCacheUtils.recordAccess("accesstestbmerged", "accesstestb", apis);
+
+        List<MemoryCacheUtils.AccessedKey> mostAccessed = memoryCacheUtils.getMostAccessedKeys(Integer.MAX_VALUE).stream()
+                .filter(key -> key.key().startsWith("accesstest"))
+                .toList();
+        assertEquals(List.of("accesstestamerged", "accesstestbmerged"), mostAccessed.stream().map(MemoryCacheUtils.AccessedKey::key).toList());
+        assertEquals(apis, mostAccessed.get(0).enabledApis());
+
+        // 4 -> 2 and 1 -> 0, the key that reaches zero is no longer tracked
+        memoryCacheUtils.decayAccessCounts();
+        List<String> afterDecay = memoryCacheUtils.getMostAccessedKeys(Integer.MAX_VALUE).stream()
+                .map(MemoryCacheUtils.AccessedKey::key)
+                .filter(key -> key.startsWith("accesstest"))
+                .toList();
+        assertEquals(List.of("accesstestamerged"), afterDecay);
+    }
+
+    @Test
+    void testTimeUntilStale() {
+        assertTrue(memoryCacheUtils.getTimeUntilStale(testKey).isEmpty());
+
+        memoryCacheUtils.putWeatherInCache(testKey, testWeather);
+
+        Duration timeUntilStale = memoryCacheUtils.getTimeUntilStale(testKey).orElseThrow();
+        assertTrue(timeUntilStale.compareTo(Duration.ofMinutes(59)) > 0);
+        assertTrue(timeUntilStale.compareTo(Duration.ofMinutes(60)) <= 0);
+    }
+
+    @Test
+    void testWeatherWrittenEarlierKeepsItsAge() {
+        Instant writtenAt = Instant.now().minus(Duration.ofMinutes(30));
+
+        CachedWeather cachedWeather = memoryCacheUtils.putWeatherInCache(testKey, testWeather, writtenAt);
+
+        assertEquals(writtenAt, cachedWeather.cachedAt());
+        // Stale and expired 30 minutes from now like the original write, not a full cache time from now
+        Duration timeUntilStale = memoryCacheUtils.getTimeUntilStale(testKey).orElseThrow();
+        assertTrue(timeUntilStale.compareTo(Duration.ofMinutes(29)) > 0);
+        assertTrue(timeUntilStale.compareTo(Duration.ofMinutes(30)) <= 0);
+        assertTrue(memoryCacheUtils.getTimeUntilStale(cachedWeather).compareTo(Duration.ofMinutes(30)) <= 0);
+        Duration expiresAfter = memoryCacheUtils.cache.getNativeCache().policy().expireVariably().orElseThrow()
+                .getExpiresAfter(testKey).orElseThrow();
+        assertTrue(expiresAfter.compareTo(Duration.ofMinutes(30)) <= 0);
+    }
+
+    @Test
+    void testPointWeatherIsKeptInThePointCache() {
+        GridCell cell = GridCell.snap(59.3301, 18.0701, 0.025);
+        String pointKey = cell.name() + "SMHI_YR";
+        Weather pointWeather = Weather.builder()
+                .city(cell.toCity())
+                .timestamp(ZonedDateTime.now(ZoneOffset.UTC))
+                .build();
+
+        memoryCacheUtils.putWeatherInCache(pointKey, pointWeather);
+
+        assertTrue(memoryCacheUtils.pointCache.getNativeCache().asMap().containsKey(pointKey));
+        assertFalse(memoryCacheUtils.cache.getNativeCache().asMap().containsKey(pointKey));
+        Weather cachedWeather = memoryCacheUtils.getWeatherFromCache(pointKey, cell.name(), List.of("SMHI", "YR"));
+        assertNotNull(cachedWeather);
+        assertTrue(cachedWeather.getCity().isPoint());
+        assertTrue(memoryCacheUtils.getTimeUntilStale(pointKey).isPresent());
+
+        memoryCacheUtils.evictCacheIfPresent(pointKey, cell.name());
+        assertNull(memoryCacheUtils.getCachedWeather(pointKey));
+    }
+
+    @Test
+    void testWeatherAboutToGoStaleIsNotCached() {
+        Instant writtenAt = Instant.now().minus(Duration.ofMinutes(59).plusSeconds(30));
+
+        assertNull(memoryCacheUtils.putWeatherInCache(testKey, testWeather, writtenAt));
+        assertNull(memoryCacheUtils.getCachedWeather(testKey));
     }
 
-}
\ No newline at end of file
+}
@@ -8,6 +8,7 @@ import com.example.weatherapi.repositories.LatestWeatherApiRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.data.domain.Pageable;
 
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -36,12 +37,11 @@ class WeatherCachePreloadTest {
     @Test
     void testPreloadValidWeatherData_Success() {
         LatestWeatherApiEntity mockEntity = createMockEntity("TestCity", true, false, true);
-        when(latestWeatherApiRepository.findValidWeatherData(any(ZonedDateTime.class)))
-                .thenReturn(Collections.singletonList(mockEntity));
+        stubPages(Collections.singletonList(mockEntity));
 
         weatherCachePreload.preloadValidWeatherData();
 
-        verify(latestWeatherApiRepository, times(1)).findValidWeatherData(any(ZonedDateTime.class));
+        verify(latestWeatherApiRepository, times(1)).findValidWeatherIds(any(ZonedDateTime.class), any(Pageable.class));
         verify(memoryCacheUtils, times(1)).putWeatherInCache(eq("testcityFMI_SMHI"), any(Weather.class));
     }
 
@@ -50,12 +50,11 @@ class WeatherCachePreloadTest {
         LatestWeatherApiEntity mockEntity1 = createMockEntity("TestCity1", true, false, true);
         LatestWeatherApiEntity mockEntity2 = createMockEntity("TestCity2", true, true, false);
         LatestWeatherApiEntity mockEntity3 = createMockEntity("TestCity3", true, true, true);
-        when(latestWeatherApiRepository.findValidWeatherData(any(ZonedDateTime.class)))
-                .thenReturn(List.of(mockEntity1, mockEntity2, mockEntity3));
+        stubPages(List.of(mockEntity1, mockEntity2, mockEntity3));
 
         weatherCachePreload.preloadValidWeatherData();
 
-        verify(latestWeatherApiRepository, times(1)).findValidWeatherData(any(ZonedDateTime.class));
+        verify(latestWeatherApiRepository, times(1)).findValidWeatherIds(any(ZonedDateTime.class), any(Pageable.class));
         verify(memoryCacheUtils, times(3)).putWeatherInCache(anyString(), any(Weather.class));
         verify(memoryCacheUtils, times(1)).putWeatherInCache(eq("testcity1FMI_SMHI"), any(Weather.class));
         verify(memoryCacheUtils, times(1)).putWeatherInCache(eq("testcity2SMHI_YR"), any(Weather.class));
@@ -64,15 +63,43 @@ class WeatherCachePreloadTest {
 
     @Test
     void testPreloadValidWeatherData_Empty() {
-        when(latestWeatherApiRepository.findValidWeatherData(any(ZonedDateTime.class)))
-                .thenReturn(Collections.emptyList());
+        stubPages();
 
         weatherCachePreload.preloadValidWeatherData();
 
-        verify(latestWeatherApiRepository, times(1)).findValidWeatherData(any(ZonedDateTime.class));
+        verify(latestWeatherApiRepository, times(1)).findValidWeatherIds(any(ZonedDateTime.class), any(Pageable.class));
+        verify(latestWeatherApiRepository, never()).findWithWeatherByIdIn(anyList());
         verify(memoryCacheUtils, never()).putWeatherInCache(anyString(), any(Weather.class));
     }
 
+    @Test
+    void testPreloadValidWeatherData_Pages() {
+        weatherCachePreload = new WeatherCachePreload(latestWeatherApiRepository, memoryCacheUtils, 60, 2, 2, false);
+        LatestWeatherApiEntity mockEntity1 = createMockEntity("TestCity1", true, false, true);
+        LatestWeatherApiEntity mockEntity2 = createMockEntity("TestCity2", true, true, false);
+        LatestWeatherApiEntity mockEntity3 = createMockEntity("TestCity3", true, true, true);
+        stubPages(List.of(mockEntity1, mockEntity2), List.of(mockEntity3));
+
+        weatherCachePreload.preloadValidWeatherData();
+
+        verify(latestWeatherApiRepository, times(2)).findValidWeatherIds(any(ZonedDateTime.class), any(Pageable.class));
+        verify(latestWeatherApiRepository, times(2)).findWithWeatherByIdIn(anyList());
+        verify(memoryCacheUtils, times(3)).putWeatherInCache(anyString(), any(Weather.class));
+        verify(memoryCacheUtils, times(1)).putWeatherInCache(eq("testcity3merged"), any(Weather.class));
+    }
+
+    @Test
+    void testPreloadValidWeatherData_InvalidEntryIsSkipped() {
+        LatestWeatherApiEntity invalidEntity = createMockEntity("TestCity1", false, false, false);
+        LatestWeatherApiEntity mockEntity = createMockEntity("TestCity2", true, true, true);
+        stubPages(List.of(invalidEntity, mockEntity));
+
+        weatherCachePreload.preloadValidWeatherData();
+
+        verify(memoryCacheUtils, times(1)).putWeatherInCache(anyString(), any(Weather.class));
+        verify(memoryCacheUtils, times(1)).putWeatherInCache(eq("testcity2merged"), any(Weather.class));
+    }
+
     @Test
     void testDetermineCacheKey_CorrectKey() {
         LatestWeatherApiEntity mockEntity = createMockEntity("TestCity", false, true, true);
@@ -86,6 +113,18 @@ class WeatherCachePreloadTest {
         assertThrows(IllegalArgumentException.class, () -> weatherCachePreload.determineCacheKey(mockEntity));
     }
 
+    // Every page of ids is returned once, then an empty page
+    @SafeVarargs
+    private void stubPages(List<LatestWeatherApiEntity>... pages) {
+        var stubbing = when(latestWeatherApiRepository.findValidWeatherIds(any(ZonedDateTime.class), any(Pageable.class)));
+        for (List<LatestWeatherApiEntity> page : pages) {
+            List<UUID> ids = page.stream().map(LatestWeatherApiEntity::getId).toList();
+            stubbing = stubbing.thenReturn(ids);
+            when(latestWeatherApiRepository.findWithWeatherByIdIn(ids)).thenReturn(page);
+        }
+        stubbing.thenReturn(Collections.emptyList());
+    }
+
     private LatestWeatherApiEntity createMockEntity(String cityName, boolean smhi, boolean yr, boolean fmi) {
         CityEntity mockCity = createMockCity(cityName);
 
@@ -96,6 +135,7 @@ class WeatherCachePreloadTest {
         mockWeather.setId(UUID.randomUUID());
 
         LatestWeatherApiEntity mockEntity = new LatestWeatherApiEntity();
+        mockEntity.setId(UUID.randomUUID());
         mockEntity.setLatestWeather(mockWeather);
         mockEntity.setCity(mockCity);
         mockEntity.setSmhi(smhi);
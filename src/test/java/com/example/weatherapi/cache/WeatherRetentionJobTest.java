@@ -0,0 +1,84 @@
+package com.example.weatherapi.cache;
+
+import com.example.weatherapi.domain.entities.CityEntity;
+import com.example.weatherapi.domain.entities.LatestWeatherApiEntity;
+import com.example.weatherapi.domain.entities.WeatherEntity;
+import com.example.weatherapi.domain.weather.Weather;
+import com.example.weatherapi.repositories.CityRepository;
+import com.example.weatherapi.repositories.LatestWeatherApiRepository;
+import com.example.weatherapi.repositories.WeatherEntityRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static com.example.weatherapi.util.WeatherMapper.convertToWeatherEntity;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class WeatherRetentionJobTest {
+
+    @Autowired
+    private WeatherRetentionJob weatherRetentionJob;
+
+    @Autowired
+    private WeatherEntityRepository weatherEntityRepository;
+
+    @Autowired
+    private LatestWeatherApiRepository latestWeatherApiRepository;
+
+    @Autowired
+    private CityRepository cityRepository;
+
+    private LatestWeatherApiEntity createdLatest;
+
+    @AfterEach
+    void tearDown() {
+        if (createdLatest != null) {
+            latestWeatherApiRepository.delete(createdLatest);
+        }
+        // Only the forecasts nothing points to are purged, the ones other tests cached are still referenced
+        weatherRetentionJob.purge(ZonedDateTime.now(ZoneOffset.UTC).plusDays(1));
+    }
+
+    @Test
+    void testOnlyOldSupersededForecastsArePurged() {
+        CityEntity city = cityRepository.findByNameIgnoreCase("Malmö").orElseThrow();
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+
+        WeatherEntity superseded = saveWeather(city, now.minusDays(3));
+        WeatherEntity latest = saveWeather(city, now.minusDays(3));
+        WeatherEntity recent = saveWeather(city, now.minusHours(1));
+
+        // No apis is a combination the application never uses, so no other test repoints it
+        createdLatest = latestWeatherApiRepository.save(LatestWeatherApiEntity.builder()
+                .city(city)
+                .latestWeather(latest)
+                .build());
+
+        int purged = weatherRetentionJob.purge(now.minusDays(2));
+
+        List<UUID> remaining = weatherEntityRepository.findAll().stream().map(WeatherEntity::getId).toList();
+        assertTrue(purged >= 1);
+        assertFalse(remaining.contains(superseded.getId()));
+        assertTrue(remaining.contains(latest.getId()));
+        assertTrue(remaining.contains(recent.getId()));
+    }
+
+    private WeatherEntity saveWeather(CityEntity city, ZonedDateTime timestamp) {
+        Weather weather = Weather.builder()
+                .message("Retention test")
+                .timestamp(timestamp)
+                .build();
+        weather.addWeatherData(timestamp.plusHours(1), 10.0f, 1, 2.0f, 180.0f, 80.0f, 0.0f);
+        weather.addWeatherData(timestamp.plusHours(2), 11.0f, 1, 2.5f, 190.0f, 75.0f, 0.0f);
+        return weatherEntityRepository.save(convertToWeatherEntity(weather, city));
+    }
+}
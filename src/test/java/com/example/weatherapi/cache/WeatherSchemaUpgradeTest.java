@@ -0,0 +1,40 @@
+package com.example.weatherapi.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class WeatherSchemaUpgradeTest {
+
+    @Autowired
+    private WeatherSchemaUpgrade weatherSchemaUpgrade;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Test Case 1: A database from before data_blob gets the column, running it again leaves it as it is
+    @Test
+    void testMissingDataBlobColumnIsAdded() {
+        jdbcTemplate.execute("ALTER TABLE weather DROP COLUMN data_blob");
+        assertFalse(hasDataBlobColumn());
+
+        weatherSchemaUpgrade.upgrade();
+        assertTrue(hasDataBlobColumn());
+
+        assertDoesNotThrow(weatherSchemaUpgrade::upgrade);
+        assertTrue(hasDataBlobColumn());
+    }
+
+    private boolean hasDataBlobColumn() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'WEATHER' AND COLUMN_NAME = 'DATA_BLOB'",
+                Integer.class);
+        return count != null && count > 0;
+    }
+}
@@ -543,4 +543,77 @@ class CityEntityControllerTests {
         assertThat(result.getName()).isEqualTo(city);
     }
 
+    // Test Case 26: Search City with GET should return the closest City with a Cache-Control header
+    @Test
+    void searchCityGet_ShouldReturnClosestCityAndBeCacheable() {
+        given()
+                .auth().none()
+                .queryParam("lat", 57.707)
+                .queryParam("lon", 11.96)
+                .when()
+                .get(endpoint + "/search")
+                .then()
+                .statusCode(200)
+                .header("Cache-Control", containsString("max-age=3600"))
+                .body("name", equalTo("Göteborg"));
+    }
+
+    // Test Case 27: Search City with GET should validate the latitude and longitude
+    @Test
+    void searchCityGet_ShouldRejectInvalidLatitude() {
+        given()
+                .auth().none()
+                .queryParam("lat", 80)
+                .queryParam("lon", validLon)
+                .when()
+                .get(endpoint + "/search")
+                .then()
+                .statusCode(400)
+                .body("detail", containsString("Latitude must be between 55 and 71"));
+    }
+
+    // Test Case 28: Nearby cities should be sorted by distance and only include the cities within the radius
+    @Test
+    void searchNearbyCities_ShouldReturnClosestCitiesWithinRadius() {
+        given()
+                .auth().none()
+                .queryParam("lat", validLat)
+                .queryParam("lon", validLon)
+                .queryParam("limit", 5)
+                .queryParam("radiusKm", 50)
+                .when()
+                .get(endpoint + "/nearby")
+                .then()
+                .statusCode(200)
+                .body("name", contains("Stockholm", "Rågsved"))
+                .body("[0].distanceKm", equalTo(0.0f))
+                .body("[1].distanceKm", both(greaterThan(8.0f)).and(lessThan(9.0f)));
+    }
+
+    // Test Case 29: Nearby cities should return at most limit cities and validate the limit
+    @Test
+    void searchNearbyCities_ShouldRespectAndValidateLimit() {
+        given()
+                .auth().none()
+                .queryParam("lat", validLat)
+                .queryParam("lon", validLon)
+                .queryParam("limit", 1)
+                .when()
+                .get(endpoint + "/nearby")
+                .then()
+                .statusCode(200)
+                .body("name", contains("Stockholm"));
+
+        given()
+                .auth().none()
+                .queryParam("lat", validLat)
+                .queryParam("lon", validLon)
+                .queryParam("limit", 0)
+                .when()
+                .get(endpoint + "/nearby")
+                .then()
+                .statusCode(400)
+                .body("detail", containsString("Limit must be between 1 and 100"));
+    }
+
 }
@@ -0,0 +1,129 @@
+package com.example.weatherapi.controllers.weathercontroller;
+
+import com.example.weatherapi.api.FmiApi;
+import com.example.weatherapi.api.SmhiApi;
+import com.example.weatherapi.api.YrApi;
+import com.example.weatherapi.domain.weather.Weather;
+import com.example.weatherapi.domain.weather.WeatherBatchRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static com.example.weatherapi.utilitytests.WeatherTestUtils.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class WeatherControllerBatchTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SmhiApi smhiApi;
+
+    @Autowired
+    private YrApi yrApi;
+
+    @Autowired
+    private FmiApi fmiApi;
+
+    @BeforeEach
+    public void setupBeforeEach() {
+        smhiApi.setTestMode(true);
+        yrApi.setTestMode(true);
+        fmiApi.setTestMode(true);
+    }
+
+    // Test Case 1: Every city gets its own result in the order of the request, a missing city doesn't fail the others
+    @Test
+    void getWeatherBatchTest_Valid() throws IOException {
+        WeatherBatchRequest request = new WeatherBatchRequest(List.of(
+                new WeatherBatchRequest.Entry("Stockholm", null),
+                new WeatherBatchRequest.Entry("Stockholm", List.of("smhi", "yr")),
+                new WeatherBatchRequest.Entry("Stockholm123", null)));
+
+        ResponseEntity<JsonNode> response = restTemplate
+                .postForEntity("http://localhost:" + port + "/api/v1/weather/batch", request, JsonNode.class);
+
+        // Assert
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        JsonNode results = Objects.requireNonNull(response.getBody());
+        assertThat(results.size()).isEqualTo(3);
+
+        assertThat(results.get(0).get("index").asInt()).isZero();
+        assertThat(results.get(0).get("status").asInt()).isEqualTo(200);
+        Weather merged = objectMapper.treeToValue(results.get(0).get("weather"), Weather.class);
+        assertThat(merged.getMessage()).isEqualTo("Merged weather for Stockholm from FMI, SMHI and YR");
+        assertWeatherInformation(merged);
+        assertWeatherDataMergedStockholm(merged);
+
+        assertThat(results.get(1).get("status").asInt()).isEqualTo(200);
+        assertThat(results.get(1).get("apis").toString()).isEqualTo("[\"smhi\",\"yr\"]");
+        assertThat(objectMapper.treeToValue(results.get(1).get("weather"), Weather.class).getMessage())
+                .isEqualTo("Merged weather for Stockholm from SMHI and YR");
+
+        assertThat(results.get(2).get("status").asInt()).isEqualTo(404);
+        assertThat(results.get(2).get("error").asText()).isEqualTo("City not found: stockholm123");
+        assertThat(results.get(2).has("weather")).isFalse();
+    }
+
+    // Test Case 2: The streamed results are one json object per line, one line per city
+    @Test
+    void getWeatherBatchTest_Stream() throws IOException {
+        WeatherBatchRequest request = new WeatherBatchRequest(List.of(
+                new WeatherBatchRequest.Entry("Stockholm", null),
+                new WeatherBatchRequest.Entry("Stockholm123", null)));
+
+        ResponseEntity<String> response = restTemplate
+                .postForEntity("http://localhost:" + port + "/api/v1/weather/batch?stream=true", request, String.class);
+
+        // Assert
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType()).isNotNull();
+        assertThat(response.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_NDJSON)).isTrue();
+
+        List<Integer> indexes = new ArrayList<>();
+        for (String line : Objects.requireNonNull(response.getBody()).split("\n")) {
+            JsonNode result = objectMapper.readTree(line);
+            indexes.add(result.get("index").asInt());
+            assertThat(result.get("status").asInt()).isEqualTo(result.get("index").asInt() == 0 ? 200 : 404);
+        }
+        assertThat(indexes).containsExactlyInAnyOrder(0, 1);
+    }
+
+    // Test Case 3: An empty batch or a batch with too many cities is a bad request
+    @Test
+    void getWeatherBatchTest_InvalidSize() {
+        ResponseEntity<ProblemDetail> empty = restTemplate.postForEntity("http://localhost:" + port + "/api/v1/weather/batch",
+                new WeatherBatchRequest(List.of()), ProblemDetail.class);
+        ResponseEntity<ProblemDetail> tooMany = restTemplate.postForEntity("http://localhost:" + port + "/api/v1/weather/batch",
+                new WeatherBatchRequest(Collections.nCopies(51, new WeatherBatchRequest.Entry("Stockholm", null))), ProblemDetail.class);
+
+        // Assert
+        assertThat(empty.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(tooMany.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+}
@@ -4,18 +4,25 @@ import com.example.weatherapi.api.FmiApi;
 import com.example.weatherapi.api.SmhiApi;
 import com.example.weatherapi.api.YrApi;
 import com.example.weatherapi.domain.weather.Weather;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.Objects;
+import java.util.zip.GZIPInputStream;
 
 import static com.example.weatherapi.utilitytests.WeatherTestUtils.*;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -30,6 +37,9 @@ class WeatherControllerMergedTests {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Autowired
     private SmhiApi smhiApi;
 
@@ -119,4 +129,71 @@ class WeatherControllerMergedTests {
         }
     }
 
+    // Test Case 6: The pre-rendered body is sent gzip encoded with its own ETag when the client accepts gzip
+    @Test
+    void getWeatherByCityMergedTest_Gzip() throws IOException {
+        String url = "http://localhost:" + port + "/api/v1/weather/Stockholm";
+        ResponseEntity<byte[]> plainResponse = restTemplate.getForEntity(url, byte[].class);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        ResponseEntity<byte[]> gzipResponse = restTemplate
+                .exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+        // Assert
+        assertThat(plainResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(gzipResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(plainResponse.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(gzipResponse.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(gzipResponse.getHeaders().getVary()).contains(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(plainResponse.getHeaders().getETag()).isNotNull().startsWith("\"");
+        assertThat(gzipResponse.getHeaders().getETag()).isNotNull().isNotEqualTo(plainResponse.getHeaders().getETag());
+
+        byte[] unzipped;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(Objects.requireNonNull(gzipResponse.getBody())))) {
+            unzipped = in.readAllBytes();
+        }
+        assertThat(unzipped).isEqualTo(plainResponse.getBody());
+        Weather weather = objectMapper.readValue(unzipped, Weather.class);
+        assertWeatherInformation(weather);
+        assertWeatherDataMergedStockholm(weather);
+    }
+
+    // Test Case 7: Conditional requests with the ETag or Last-Modified of the last response get 304 without a body
+    @Test
+    void getWeatherByCityMergedTest_NotModified() {
+        String url = "http://localhost:" + port + "/api/v1/weather/Stockholm";
+        ResponseEntity<byte[]> response = restTemplate.getForEntity(url, byte[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getLastModified()).isPositive();
+        assertThat(response.getHeaders().getCacheControl()).matches("max-age=\\d+");
+        long maxAge = Long.parseLong(Objects.requireNonNull(response.getHeaders().getCacheControl()).substring("max-age=".length()));
+        assertThat(maxAge).isBetween(1L, 3600L);
+
+        HttpHeaders ifNoneMatch = new HttpHeaders();
+        ifNoneMatch.setIfNoneMatch(Objects.requireNonNull(response.getHeaders().getETag()));
+        ResponseEntity<byte[]> etagResponse = restTemplate
+                .exchange(url, HttpMethod.GET, new HttpEntity<>(ifNoneMatch), byte[].class);
+
+        HttpHeaders ifModifiedSince = new HttpHeaders();
+        ifModifiedSince.setIfModifiedSince(response.getHeaders().getLastModified());
+        ResponseEntity<byte[]> lastModifiedResponse = restTemplate
+                .exchange(url, HttpMethod.GET, new HttpEntity<>(ifModifiedSince), byte[].class);
+
+        HttpHeaders otherEtag = new HttpHeaders();
+        otherEtag.setIfNoneMatch("\"someotheretag\"");
+        ResponseEntity<byte[]> changedResponse = restTemplate
+                .exchange(url, HttpMethod.GET, new HttpEntity<>(otherEtag), byte[].class);
+
+        // Assert
+        assertThat(etagResponse.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(etagResponse.getBody()).isNull();
+        assertThat(etagResponse.getHeaders().getETag()).isEqualTo(response.getHeaders().getETag());
+        assertThat(lastModifiedResponse.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(lastModifiedResponse.getBody()).isNull();
+        assertThat(changedResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(changedResponse.getBody()).isEqualTo(response.getBody());
+    }
+
 }
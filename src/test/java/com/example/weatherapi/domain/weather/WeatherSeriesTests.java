@@ -0,0 +1,66 @@
+package com.example.weatherapi.domain.weather;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.example.weatherapi.utilitytests.WeatherTestUtils.buildWeatherData;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Tag("unit")
+class WeatherSeriesTests {
+
+    // Test Case 1: The map is rebuilt in time order with UTC timestamps
+    @Test
+    void shouldConvertMapToSeriesAndBack() {
+        Map<ZonedDateTime, Weather.WeatherData> weatherData = new LinkedHashMap<>();
+        weatherData.put(ZonedDateTime.parse("2024-05-15T18:00:00Z"), buildWeatherData(19.0f, 3, 2.1f, 180.0f, 0.4f, 60.0f));
+        weatherData.put(ZonedDateTime.parse("2024-05-15T17:00:00Z"), buildWeatherData(20.9f, 1, 3.8f, 191.5f, 0.0f, 50.0f));
+
+        WeatherSeries series = WeatherSeries.of(weatherData);
+
+        assertThat(series.size()).isEqualTo(2);
+        assertThat(series.temperature(0)).isEqualTo(20.9f);
+        assertThat(series.indexOf(ZonedDateTime.parse("2024-05-15T18:00:00Z").toEpochSecond())).isEqualTo(1);
+        assertThat(series.indexOf(ZonedDateTime.parse("2024-05-15T19:00:00Z").toEpochSecond())).isNegative();
+        assertThat(series.toMap().keySet()).containsExactly(
+                ZonedDateTime.parse("2024-05-15T17:00:00Z"),
+                ZonedDateTime.parse("2024-05-15T18:00:00Z"));
+        assertThat(series.toMap().get(ZonedDateTime.parse("2024-05-15T18:00:00Z")))
+                .isEqualTo(buildWeatherData(19.0f, 3, 2.1f, 180.0f, 0.4f, 60.0f));
+    }
+
+    // Test Case 2: The same instant in another zone is the same point, the first one added is kept
+    @Test
+    void shouldKeepFirstPointOfDuplicateTimestamp() {
+        WeatherSeries series = WeatherSeries.builder(2)
+                .add(ZonedDateTime.parse("2024-05-15T17:00:00Z").toEpochSecond(), buildWeatherData(20.9f, 1, 3.8f, 191.5f, 0.0f, 50.0f))
+                .add(ZonedDateTime.of(2024, 5, 15, 19, 0, 0, 0, ZoneId.of("Europe/Stockholm")).toEpochSecond(),
+                        buildWeatherData(10.0f, 2, 1.0f, 90.0f, 1.0f, 90.0f))
+                .build();
+
+        assertThat(series.size()).isEqualTo(1);
+        assertThat(series.weatherData(0)).isEqualTo(buildWeatherData(20.9f, 1, 3.8f, 191.5f, 0.0f, 50.0f));
+    }
+
+    // Test Case 3: Frozen weather keeps only the series and can't be changed
+    @Test
+    void shouldFreezeWeatherIntoSeries() {
+        Weather weather = Weather.builder().timestamp(ZonedDateTime.parse("2024-05-15T16:00:00Z")).build();
+        weather.addWeatherData(ZonedDateTime.parse("2024-05-15T17:00:00Z"), 20.9f, 1, 3.8f, 191.5f, 50.0f, 0.0f);
+
+        Weather frozen = weather.freeze();
+
+        assertThat(frozen.getSeries()).isEqualTo(weather.getSeries());
+        assertThat(frozen.getWeatherData()).containsExactlyEntriesOf(weather.getWeatherData());
+        assertThat(frozen).isEqualTo(weather);
+        ZonedDateTime validTime = ZonedDateTime.parse("2024-05-15T18:00:00Z");
+        assertThatThrownBy(() -> frozen.addWeatherData(validTime, 1.0f, 1, 1.0f, 1.0f, 1.0f, 1.0f))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.weatherapi.http;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UpstreamHttpClientTest {
+
+    HttpServer server;
+    URI uri;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+        uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    // Test Case 1: Every TLS engine the client creates counts as one opened connection
+    @Test
+    void testConnectionCountingSslContext() throws Exception {
+        LongAdder connections = new LongAdder();
+        SSLContext sslContext = new ConnectionCountingSslContext(SSLContext.getDefault(), connections, nanos -> {});
+
+        SSLEngine engine = sslContext.createSSLEngine("smhi.se", 443);
+        sslContext.createSSLEngine();
+
+        assertEquals(2, connections.sum());
+        assertInstanceOf(HandshakeTimingSslEngine.class, engine);
+        assertEquals("smhi.se", engine.getPeerHost());
+    }
+
+    // Test Case 2: Concurrent requests are all recorded once in the request timer
+    @Test
+    void testConcurrentRequestsAreRecorded() throws Exception {
+        UpstreamHttpClient client = new UpstreamHttpClient("Test", HttpClient.Version.HTTP_1_1, 1000, 5000) {
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        client.bindTo(registry);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Integer>> requests = IntStream.range(0, 40)
+                    .<Callable<Integer>>mapToObj(i -> () -> client.get(uri).statusCode())
+                    .toList();
+            for (Future<Integer> status : executor.invokeAll(requests)) {
+                assertEquals(200, status.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(40, registry.get("upstream.http.requests").tag("api", "TEST").timer().count());
+        assertEquals(0, registry.get("upstream.http.failures").functionCounter().count());
+        // Plain http opens no TLS connections
+        assertEquals(0, registry.get("upstream.http.connections").functionCounter().count());
+        assertEquals(1.0, client.getConnectionReuseRatio());
+        // Plain http has no handshakes either
+        assertEquals(0, registry.get("upstream.http.handshake").tag("api", "TEST").timer().count());
+    }
+
+    // Test Case 3: The handshake is timed from the first wrap until FINISHED, once per engine
+    @Test
+    void testHandshakeIsTimedOnce() throws Exception {
+        SSLEngine delegate = mock(SSLEngine.class);
+        when(delegate.wrap(any(ByteBuffer[].class), anyInt(), anyInt(), any(ByteBuffer.class)))
+                .thenReturn(result(SSLEngineResult.HandshakeStatus.NEED_UNWRAP))
+                .thenReturn(result(SSLEngineResult.HandshakeStatus.FINISHED))
+                .thenReturn(result(SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING));
+        when(delegate.unwrap(any(ByteBuffer.class), any(ByteBuffer[].class), anyInt(), anyInt()))
+                .thenReturn(result(SSLEngineResult.HandshakeStatus.NEED_WRAP))
+                .thenReturn(result(SSLEngineResult.HandshakeStatus.FINISHED));
+        List<Long> handshakes = new ArrayList<>();
+        SSLEngine engine = new HandshakeTimingSslEngine(delegate, handshakes::add);
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+
+        engine.wrap(buffer, buffer);
+        Thread.sleep(5);
+        engine.unwrap(buffer, buffer);
+        assertTrue(handshakes.isEmpty());
+
+        engine.wrap(buffer, buffer);
+        assertEquals(1, handshakes.size());
+        assertTrue(handshakes.get(0) >= TimeUnit.MILLISECONDS.toNanos(5));
+
+        // A later FINISHED, like after a renegotiation, isn't recorded again
+        engine.wrap(buffer, buffer);
+        engine.unwrap(buffer, buffer);
+        assertEquals(1, handshakes.size());
+    }
+
+    private static SSLEngineResult result(SSLEngineResult.HandshakeStatus handshakeStatus) {
+        return new SSLEngineResult(SSLEngineResult.Status.OK, handshakeStatus, 0, 0);
+    }
+}
@@ -1,8 +1,13 @@
 package com.example.weatherapi.queue;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -109,4 +114,100 @@ class WeatherSaveQueueTest {
         Thread.currentThread().interrupt();
         assertTrue(Thread.currentThread().isInterrupted(), "Current thread should be interrupted");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testQueuedTasksAreRunInOneTransaction() {
+        CountingTransactionManager transactionManager = new CountingTransactionManager();
+        WeatherSaveQueue batchQueue = new WeatherSaveQueue(new TransactionTemplate(transactionManager), 10);
+        AtomicInteger runs = new AtomicInteger(0);
+        try {
+            // Queued before the worker starts, so the worker takes all of them at once
+            for (int i = 0; i < 5; i++) {
+                batchQueue.addTask(runs::incrementAndGet);
+            }
+            batchQueue.startWorker();
+
+            await().atMost(2, TimeUnit.SECONDS).until(() -> transactionManager.commits.get() == 1);
+            assertEquals(5, runs.get());
+            assertEquals(1, transactionManager.begins.get());
+        } finally {
+            batchQueue.shutdownWorker();
+        }
+    }
+
+    @Test
+    void testFailedBatchIsRunAgainOneTaskAtATime() {
+        CountingTransactionManager transactionManager = new CountingTransactionManager();
+        WeatherSaveQueue batchQueue = new WeatherSaveQueue(new TransactionTemplate(transactionManager), 10);
+        AtomicInteger firstRuns = new AtomicInteger(0);
+        AtomicInteger failingRuns = new AtomicInteger(0);
+        AtomicInteger lastRuns = new AtomicInteger(0);
+        try {
+            batchQueue.addTask(firstRuns::incrementAndGet);
+            batchQueue.addTask(() -> {
+                failingRuns.incrementAndGet();
+                throw new RuntimeException("Simulated failure");
+            });
+            batchQueue.addTask(lastRuns::incrementAndGet);
+            batchQueue.startWorker();
+
+            // The batch is rolled back, then each task gets its own transaction and the failing one its retries
+            await().atMost(2, TimeUnit.SECONDS).until(() -> transactionManager.commits.get() == 2);
+            assertEquals(2, firstRuns.get());
+            assertEquals(1 + WeatherSaveQueue.MAX_RETRY, failingRuns.get());
+            assertEquals(1, lastRuns.get());
+            assertEquals(1 + WeatherSaveQueue.MAX_RETRY, transactionManager.rollbacks.get());
+        } finally {
+            batchQueue.shutdownWorker();
+        }
+    }
+
+    @Test
+    void testMetricsTrackLatencyAndFailedTasks() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        WeatherSaveQueue meteredQueue = new WeatherSaveQueue();
+        meteredQueue.bindTo(registry);
+        try {
+            meteredQueue.addTask(() -> {});
+            meteredQueue.addTask(() -> {
+                throw new RuntimeException("Simulated failure");
+            });
+            assertEquals(2, registry.get("save.queue.depth").gauge().value());
+            meteredQueue.startWorker();
+
+            await().atMost(2, TimeUnit.SECONDS).until(() -> registry.get("save.queue.task.latency").timer().count() == 2);
+            assertEquals(0, registry.get("save.queue.depth").gauge().value());
+            assertEquals(1, registry.get("save.queue.failed").functionCounter().count());
+            assertEquals(0, registry.get("save.queue.dropped").functionCounter().count());
+        } finally {
+            meteredQueue.shutdownWorker();
+        }
+    }
+
+    private static class CountingTransactionManager extends AbstractPlatformTransactionManager {
+
+        private final AtomicInteger begins = new AtomicInteger(0);
+        private final AtomicInteger commits = new AtomicInteger(0);
+        private final AtomicInteger rollbacks = new AtomicInteger(0);
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            begins.incrementAndGet();
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            commits.incrementAndGet();
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            rollbacks.incrementAndGet();
+        }
+    }
+}
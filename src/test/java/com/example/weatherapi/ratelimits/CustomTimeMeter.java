@@ -26,6 +26,10 @@ public class CustomTimeMeter implements TimeMeter {
         currentTime += millis * 1_000_000;
     }
 
+    public void addNanos(long nanos) {
+        currentTime += nanos;
+    }
+
     public void addSeconds(long seconds) {
         currentTime += seconds * 1_000_000_000;
     }
@@ -0,0 +1,129 @@
+package com.example.weatherapi.ratelimits;
+
+import com.example.weatherapi.exceptions.RateLimitExceededException;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The buckets are tested against H2 in MySQL mode, the test database of the application isn't
+class JdbcBucketStoreTest {
+
+    private static final Bandwidth LIMIT = Bandwidth.builder()
+            .capacity(10).refillIntervally(10, Duration.ofDays(1)).initialTokens(10).build();
+
+    JdbcDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:buckets;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS rate_limit_bucket");
+            statement.execute("CREATE TABLE rate_limit_bucket (id VARCHAR(64) NOT NULL PRIMARY KEY, state BLOB)");
+        }
+    }
+
+    // Test Case 1: Two instances share one budget when every token is synced
+    @Test
+    void testInstancesShareBudget() {
+        Bucket first = new JdbcBucketStore(dataSource, "rate_limit_bucket", 0, 0).getBucket("smhi:daily", LIMIT);
+        Bucket second = new JdbcBucketStore(dataSource, "rate_limit_bucket", 0, 0).getBucket("smhi:daily", LIMIT);
+
+        for (int i = 0; i < 6; i++) {
+            assertTrue(first.tryConsume(1));
+        }
+        assertEquals(4, second.getAvailableTokens());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(second.tryConsume(1));
+        }
+
+        assertFalse(first.tryConsume(1));
+        assertFalse(second.tryConsume(1));
+    }
+
+    // Test Case 2: Tokens taken locally aren't written for every request, other apis and limits, also with another refill, get their own bucket
+    @Test
+    void testLocalTokensAreNotSyncedEveryRequest() {
+        Bucket delayed = new JdbcBucketStore(dataSource, "rate_limit_bucket", 5, 60000).getBucket("yr:burst", LIMIT);
+        JdbcBucketStore synced = new JdbcBucketStore(dataSource, "rate_limit_bucket", 0, 0);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(delayed.tryConsume(1));
+        }
+
+        assertTrue(synced.getBucket("yr:burst", LIMIT).getAvailableTokens() > 7);
+        assertEquals(10, synced.getBucket("fmi:burst", LIMIT).getAvailableTokens());
+        Bandwidth larger = Bandwidth.builder()
+                .capacity(20).refillIntervally(20, Duration.ofDays(1)).initialTokens(20).build();
+        assertEquals(20, synced.getBucket("yr:burst", larger).getAvailableTokens());
+        Bandwidth faster = Bandwidth.builder()
+                .capacity(10).refillIntervally(10, Duration.ofHours(1)).initialTokens(10).build();
+        assertEquals(10, synced.getBucket("yr:burst", faster).getAvailableTokens());
+    }
+
+    // Test Case 3: A rate limiter takes the tokens from the database on the store's threads, the scheduler only hands out intervals
+    @Test
+    void testRateLimiterTakesTokensOnStoreThreads() {
+        CustomTimeMeter timeMeter = new CustomTimeMeter();
+        ManualScheduler scheduler = new ManualScheduler(timeMeter);
+        Bandwidth dailyLimit = Bandwidth.builder()
+                .capacity(2).refillIntervally(2, Duration.ofDays(1)).initialTokens(2).build();
+        RateLimiter rateLimiter = new TestRateLimiter("Test", timeMeter, scheduler,
+                new JdbcBucketStore(dataSource, "rate_limit_bucket", 0, 0),
+                RateLimiter.createRequestBandwidth(100),
+                RateLimiter.createBurstBandwidth(1000),
+                dailyLimit);
+
+        assertDoesNotThrow(rateLimiter.acquireAsync(FetchPriority.INTERACTIVE)::join);
+
+        CompletableFuture<String> secondTakenOn = rateLimiter.acquireAsync(FetchPriority.INTERACTIVE)
+                .thenApply(ignored -> Thread.currentThread().getName());
+        scheduler.advanceMillis(100);
+        assertTrue(secondTakenOn.join().startsWith("RateLimitStore-"));
+
+        CompletableFuture<Void> third = rateLimiter.acquireAsync(FetchPriority.INTERACTIVE);
+        scheduler.advanceMillis(100);
+        CompletionException exception = assertThrows(CompletionException.class, third::join);
+        assertInstanceOf(RateLimitExceededException.class, exception.getCause());
+        assertEquals(0, new JdbcBucketStore(dataSource, "rate_limit_bucket", 0, 0)
+                .getBucket("test:daily", dailyLimit).getAvailableTokens());
+    }
+
+    // Test Case 4: The store's threads are stopped with the application
+    @Test
+    void testShutdownStopsStoreThreads() {
+        JdbcBucketStore store = new JdbcBucketStore(dataSource, "rate_limit_bucket", 0, 0);
+        ExecutorService executor = (ExecutorService) store.executor();
+        CompletableFuture.runAsync(() -> { }, executor).join();
+
+        store.shutdown();
+
+        assertTrue(executor.isTerminated());
+    }
+
+    // Test Case 5: A missing table is created on startup, a store that finds it leaves it as it is
+    @Test
+    void testMissingTableIsCreated() throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE rate_limit_bucket");
+        }
+
+        Bucket first = new JdbcBucketStore(dataSource, "rate_limit_bucket", 0, 0).getBucket("smhi:daily", LIMIT);
+        assertTrue(first.tryConsume(4));
+
+        Bucket second = new JdbcBucketStore(dataSource, "rate_limit_bucket", 0, 0).getBucket("smhi:daily", LIMIT);
+        assertEquals(6, second.getAvailableTokens());
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.weatherapi.ratelimits;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the scheduled tasks on the test thread, only when the clock is moved forward with advanceMillis.
+ * The clock is the time meter of the rate limiter, so the buckets and the scheduled tasks see the same time.
+ */
+public class ManualScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private final CustomTimeMeter timeMeter;
+    private final List<Task> tasks = new ArrayList<>();
+
+    public ManualScheduler(CustomTimeMeter timeMeter) {
+        this.timeMeter = timeMeter;
+    }
+
+    /**
+     * Moves the clock forward, every task that is due runs at the time it was scheduled for, in order.
+     */
+    public void advanceMillis(long millis) {
+        long target = timeMeter.currentTimeNanos() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (true) {
+            Task next = tasks.stream()
+                    .filter(task -> task.runAt <= target)
+                    .min(Comparator.comparingLong(task -> task.runAt))
+                    .orElse(null);
+            if (next == null) {
+                break;
+            }
+            tasks.remove(next);
+            timeMeter.addNanos(Math.max(0, next.runAt - timeMeter.currentTimeNanos()));
+            next.run();
+        }
+        timeMeter.addNanos(target - timeMeter.currentTimeNanos());
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        Task task = new Task(command, timeMeter.currentTimeNanos() + unit.toNanos(delay));
+        tasks.add(task);
+        return task;
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return List.of();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return false;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return true;
+    }
+
+    private final class Task implements ScheduledFuture<Object> {
+        private final Runnable command;
+        private final long runAt;
+        private boolean cancelled;
+        private boolean done;
+
+        private Task(Runnable command, long runAt) {
+            this.command = command;
+            this.runAt = runAt;
+        }
+
+        private void run() {
+            done = true;
+            command.run();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(runAt - timeMeter.currentTimeNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (done) {
+                return false;
+            }
+            cancelled = true;
+            done = true;
+            tasks.remove(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
+
+        @Override
+        public Object get() {
+            return null;
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) {
+            return null;
+        }
+    }
+}
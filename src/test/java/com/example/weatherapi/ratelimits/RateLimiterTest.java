@@ -2,10 +2,15 @@ package com.example.weatherapi.ratelimits;
 
 import com.example.weatherapi.exceptions.RateLimitExceededException;
 import io.github.bucket4j.Bandwidth;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -114,6 +119,125 @@ class RateLimiterTest {
     }
 
 
+    @Test
+    void testHeadroomKeepsReservedShare() throws InterruptedException {
+        RateLimiter rateLimiter = createBurst("Test", 10);
+
+        for (int i = 0; i < 7; i++) {
+            rateLimiter.acquire();
+        }
+        assertTrue(rateLimiter.hasHeadroom(0.2));
+
+        rateLimiter.acquire();
+        assertFalse(rateLimiter.hasHeadroom(0.2));
+
+        customTimeMeter.addMinutes(5);
+        assertTrue(rateLimiter.hasHeadroom(0.2));
+    }
+
+    @Test
+    void testMetricsTrackWaitsRemainingTokensAndRejections() throws InterruptedException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RateLimiter rateLimiter = createBurst("Test", 2);
+        rateLimiter.bindTo(registry);
+
+        rateLimiter.acquire();
+        rateLimiter.acquire();
+        assertThrows(RateLimitExceededException.class, rateLimiter::acquire);
+
+        assertEquals(3, registry.get("ratelimiter.wait").tag("api", "TEST").timer().count());
+        assertEquals(0, registry.get("ratelimiter.tokens.remaining").tag("window", "burst").gauge().value());
+        assertEquals(998, registry.get("ratelimiter.tokens.remaining").tag("window", "daily").gauge().value());
+        assertEquals(1, registry.get("ratelimiter.rejections").tag("window", "burst").functionCounter().count());
+    }
+
+    @Test
+    void testInteractiveWaitersGoBeforeBackgroundWaiters() {
+        ManualScheduler scheduler = new ManualScheduler(customTimeMeter);
+        RateLimiter rateLimiter = createManual(scheduler, 100);
+        rateLimiter.acquireAsync(FetchPriority.INTERACTIVE).join();
+
+        List<FetchPriority> order = new ArrayList<>();
+        CompletableFuture<Void> background = rateLimiter.acquireAsync(FetchPriority.BACKGROUND)
+                .thenRun(() -> order.add(FetchPriority.BACKGROUND));
+        CompletableFuture<Void> interactive = rateLimiter.acquireAsync(FetchPriority.INTERACTIVE)
+                .thenRun(() -> order.add(FetchPriority.INTERACTIVE));
+
+        assertFalse(background.isDone());
+        assertFalse(interactive.isDone());
+
+        // The background waiter was first, the next interval still goes to the interactive one
+        scheduler.advanceMillis(100);
+        assertTrue(interactive.isDone());
+        assertFalse(background.isDone());
+
+        scheduler.advanceMillis(100);
+        assertTrue(background.isDone());
+        assertEquals(List.of(FetchPriority.INTERACTIVE, FetchPriority.BACKGROUND), order);
+    }
+
+    @Test
+    void testWaitLongerThanMaxWaitIsRejectedRightAway() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ManualScheduler scheduler = new ManualScheduler(customTimeMeter);
+        RateLimiter rateLimiter = createManual(scheduler, 1000);
+        rateLimiter.bindTo(registry);
+        rateLimiter.acquireAsync(FetchPriority.INTERACTIVE).join();
+
+        CompletableFuture<Void> rejected = rateLimiter.acquireAsync(FetchPriority.INTERACTIVE, Duration.ofMillis(100));
+        CompletableFuture<Void> waiting = rateLimiter.acquireAsync(FetchPriority.INTERACTIVE, Duration.ofSeconds(5));
+
+        assertTrue(rejected.isCompletedExceptionally());
+        CompletionException exception = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(RateLimitExceededException.class, exception.getCause());
+        assertFalse(waiting.isDone());
+        assertEquals(1, registry.get("ratelimiter.waiting").tag("priority", "interactive").gauge().value());
+        assertEquals(1, registry.get("ratelimiter.rejections").tag("window", "deadline").functionCounter().count());
+
+        scheduler.advanceMillis(999);
+        assertFalse(waiting.isDone());
+        scheduler.advanceMillis(1);
+        assertTrue(waiting.isDone());
+        assertDoesNotThrow(waiting::join);
+        assertEquals(0, registry.get("ratelimiter.waiting").tag("priority", "interactive").gauge().value());
+    }
+
+    @Test
+    void testBackgroundWaiterIsDroppedWhenInteractiveWaitersTakeItsTurn() {
+        ManualScheduler scheduler = new ManualScheduler(customTimeMeter);
+        RateLimiter rateLimiter = createManual(scheduler, 200);
+        rateLimiter.acquireAsync(FetchPriority.INTERACTIVE).join();
+
+        // Its turn would be at 200 ms, the interactive waiters push it to 600 ms, past its max wait of 300 ms
+        CompletableFuture<Void> background = rateLimiter.acquireAsync(FetchPriority.BACKGROUND, Duration.ofMillis(300));
+        CompletableFuture<Void> first = rateLimiter.acquireAsync(FetchPriority.INTERACTIVE);
+        CompletableFuture<Void> second = rateLimiter.acquireAsync(FetchPriority.INTERACTIVE);
+
+        scheduler.advanceMillis(200);
+        assertTrue(first.isDone());
+        assertFalse(background.isDone());
+
+        scheduler.advanceMillis(100);
+        CompletionException exception = assertThrows(CompletionException.class, background::join);
+        assertInstanceOf(RateLimitExceededException.class, exception.getCause());
+        assertFalse(second.isDone());
+
+        scheduler.advanceMillis(100);
+        assertTrue(second.isDone());
+        assertDoesNotThrow(() -> CompletableFuture.allOf(first, second).join());
+    }
+
+    private RateLimiter createManual(ManualScheduler scheduler, long timePerRequestMs) {
+        return new TestRateLimiter(
+                "Test",
+                customTimeMeter,
+                scheduler,
+                RateLimiter.createRequestBandwidth(timePerRequestMs),
+                RateLimiter.createBurstBandwidth(1000),
+                RateLimiter.createDailyBandwidth(1000)
+        );
+    }
+
     private RateLimiter createBurst(String api, long burstLimit) {
         return  new TestRateLimiter(
                 api,
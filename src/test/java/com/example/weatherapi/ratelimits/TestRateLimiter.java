@@ -7,4 +7,12 @@ public class TestRateLimiter extends RateLimiter {
     protected TestRateLimiter(String api, TimeMeter timeMeter, Bandwidth perRequestLimit, Bandwidth shortTermLimit, Bandwidth dailyLimit) {
         super(api, timeMeter, perRequestLimit, shortTermLimit, dailyLimit);
     }
+
+    protected TestRateLimiter(String api, CustomTimeMeter timeMeter, ManualScheduler scheduler, Bandwidth perRequestLimit, Bandwidth shortTermLimit, Bandwidth dailyLimit) {
+        super(api, timeMeter, scheduler, perRequestLimit, shortTermLimit, dailyLimit);
+    }
+
+    protected TestRateLimiter(String api, CustomTimeMeter timeMeter, ManualScheduler scheduler, RateLimitBucketStore bucketStore, Bandwidth perRequestLimit, Bandwidth shortTermLimit, Bandwidth dailyLimit) {
+        super(api, timeMeter, scheduler, bucketStore, perRequestLimit, shortTermLimit, dailyLimit);
+    }
 }
@@ -1,6 +1,7 @@
 package com.example.weatherapi.services;
 
 import com.example.weatherapi.domain.city.City;
+import com.example.weatherapi.domain.dto.CityDto;
 import com.example.weatherapi.domain.entities.CityEntity;
 import com.example.weatherapi.exceptions.CityNotFoundException;
 import com.example.weatherapi.exceptions.InvalidCityException;
@@ -91,4 +92,19 @@ class CityServiceImplTests {
         assertThat(cityService.getAllCities().size()).isGreaterThan(10);
     }
 
+    //Test Case 7: a deleted city is gone from the cached city names once the delete is committed
+    @Test
+    void shouldRemoveDeletedCityFromCachedNames() {
+        cityService.addCity(City.builder()
+                .name("TestCity3")
+                .lon(18.0686)
+                .lat(59.3294)
+                .build());
+        assertThat(cityService.getAllCityNames().stream().map(CityDto::getName).toList().contains("TestCity3")).isTrue();
+
+        cityService.deleteCity("TestCity3");
+
+        assertThat(cityService.getAllCityNames().stream().map(CityDto::getName).toList().contains("TestCity3")).isFalse();
+    }
+
 }
@@ -0,0 +1,174 @@
+package com.example.weatherapi.services;
+
+import com.example.weatherapi.api.FmiApi;
+import com.example.weatherapi.api.SmhiApi;
+import com.example.weatherapi.api.YrApi;
+import com.example.weatherapi.cache.CachedWeather;
+import com.example.weatherapi.cache.MemoryCacheUtils;
+import com.example.weatherapi.domain.entities.CityEntity;
+import com.example.weatherapi.domain.entities.LatestWeatherApiEntity;
+import com.example.weatherapi.domain.entities.WeatherEntity;
+import com.example.weatherapi.domain.weather.Weather;
+import com.example.weatherapi.repositories.CityRepository;
+import com.example.weatherapi.repositories.LatestWeatherApiRepository;
+import com.example.weatherapi.repositories.WeatherEntityRepository;
+import com.example.weatherapi.services.impl.WeatherServiceImpl;
+import com.example.weatherapi.util.GridCell;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static com.example.weatherapi.util.WeatherMapper.convertToWeatherEntity;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class WeatherServiceImplTests {
+
+    private static final String KEY = "malmömerged";
+    private static final String POINT_KEY = GridCell.snap(59.3301, 18.0701, 0.025).name() + "SMHI_YR";
+
+    @Autowired
+    private WeatherServiceImpl weatherService;
+
+    @Autowired
+    private MemoryCacheUtils memoryCacheUtils;
+
+    @MockitoSpyBean
+    private SmhiApi smhiApi;
+
+    @MockitoSpyBean
+    private YrApi yrApi;
+
+    @MockitoSpyBean
+    private FmiApi fmiApi;
+
+    @Autowired
+    private WeatherEntityRepository weatherEntityRepository;
+
+    @Autowired
+    private LatestWeatherApiRepository latestWeatherApiRepository;
+
+    @Autowired
+    private CityRepository cityRepository;
+
+    private LatestWeatherApiEntity createdLatest;
+    private WeatherEntity createdWeather;
+
+    @AfterEach
+    void tearDown() {
+        memoryCacheUtils.evictCacheIfPresent(KEY, "Malmö");
+        memoryCacheUtils.evictCacheIfPresent(POINT_KEY, "Point");
+        if (createdLatest != null) {
+            latestWeatherApiRepository.delete(createdLatest);
+        }
+        if (createdWeather != null) {
+            weatherEntityRepository.delete(createdWeather);
+        }
+    }
+
+    // Test Case 1: A memory cache miss is served from weather another instance saved to the database, without calling the apis
+    @Test
+    void getWeatherMergedFromDatabaseTest() {
+        CityEntity city = cityRepository.findByNameIgnoreCase("Malmö").orElseThrow();
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+
+        Weather weather = Weather.builder()
+                .message("Merged weather for Malmö saved by another instance")
+                .timestamp(now.minusMinutes(5))
+                .build();
+        weather.addWeatherData(now.plusHours(1), 12.0f, 1, 3.0f, 200.0f, 70.0f, 0.0f);
+        createdWeather = weatherEntityRepository.save(convertToWeatherEntity(weather, city));
+        createdLatest = latestWeatherApiRepository.save(LatestWeatherApiEntity.builder()
+                .city(city)
+                .latestWeather(createdWeather)
+                .smhi(true)
+                .yr(true)
+                .fmi(true)
+                .build());
+        memoryCacheUtils.evictCacheIfPresent(KEY, "Malmö");
+
+        CachedWeather cachedWeather = weatherService.getWeatherMerged("Malmö");
+
+        assertEquals("Merged weather for Malmö saved by another instance", cachedWeather.weather().getMessage());
+        assertEquals(1, cachedWeather.weather().getWeatherData().size());
+        assertNotNull(memoryCacheUtils.getCachedWeather(KEY));
+        // Saved 5 minutes ago, so it's fresh for 55 more minutes and not a full cache time
+        assertEquals(weather.getTimestamp().toEpochSecond(), cachedWeather.cachedAt().getEpochSecond());
+        assertTrue(memoryCacheUtils.getTimeUntilStale(cachedWeather).compareTo(Duration.ofMinutes(55)) <= 0);
+        verify(smhiApi, never()).fetchWeatherSmhiAsync(any());
+        verify(yrApi, never()).fetchWeatherYrAsync(any());
+        verify(fmiApi, never()).fetchWeatherFmiAsync(any());
+    }
+
+    // Test Case 2: Weather in the database older than the cache time isn't used
+    @Test
+    void getWeatherMergedSkipsExpiredDatabaseWeatherTest() {
+        CityEntity city = cityRepository.findByNameIgnoreCase("Malmö").orElseThrow();
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+
+        Weather weather = Weather.builder()
+                .message("Expired weather for Malmö")
+                .timestamp(now.minusDays(1))
+                .build();
+        weather.addWeatherData(now.minusHours(23), 12.0f, 1, 3.0f, 200.0f, 70.0f, 0.0f);
+        createdWeather = weatherEntityRepository.save(convertToWeatherEntity(weather, city));
+        createdLatest = latestWeatherApiRepository.save(LatestWeatherApiEntity.builder()
+                .city(city)
+                .latestWeather(createdWeather)
+                .smhi(true)
+                .yr(true)
+                .fmi(true)
+                .build());
+
+        assertTrue(latestWeatherApiRepository.findValidLatestWeather("Malmö", true, true, true,
+                now.minusMinutes(60)).isEmpty());
+    }
+
+    // Test Case 3: Coordinates in the same grid cell share one cache entry
+    @Test
+    void getWeatherPointSharesGridCellTest() {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        GridCell cell = GridCell.snap(59.3301, 18.0701, 0.025);
+        Weather weather = Weather.builder()
+                .message("Merged weather for " + cell.name() + " from SMHI and YR")
+                .timestamp(now)
+                .city(cell.toCity())
+                .build();
+        weather.addWeatherData(now.plusHours(1), 12.0f, 1, 3.0f, 200.0f, 70.0f, 0.0f);
+        CachedWeather cachedWeather = memoryCacheUtils.putWeatherInCache(POINT_KEY, weather);
+
+        assertEquals("59.3375,18.0625", cell.name());
+        assertSame(cachedWeather, weatherService.getWeatherPoint(59.3499, 18.0501, List.of("yr", "smhi")));
+        assertSame(cachedWeather, weatherService.getWeatherPoint(59.3251, 18.0749, List.of("SMHI", "YR")));
+    }
+
+    // Test Case 4: Last-Modified is when the weather was cached, not the oldest api timestamp in it
+    @Test
+    void lastModifiedIsWhenWeatherWasCachedTest() {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        Weather weather = Weather.builder()
+                .message("Merged weather for Malmö from FMI, SMHI and YR")
+                .timestamp(now.minusMinutes(50))
+                .build();
+        weather.addWeatherData(now.plusHours(1), 12.0f, 1, 3.0f, 200.0f, 70.0f, 0.0f);
+        CachedWeather cachedWeather = memoryCacheUtils.putWeatherInCache(KEY, weather);
+
+        ResponseEntity<byte[]> response = weatherService.fetchWeatherMergedResponse("Malmö", false).join();
+
+        assertEquals(cachedWeather.cachedAt().getEpochSecond() * 1000, response.getHeaders().getLastModified());
+        assertTrue(response.getHeaders().getLastModified() > weather.getTimestamp().toInstant().toEpochMilli());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.weatherapi.util;
+
+import com.example.weatherapi.domain.entities.CityEntity;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static com.example.weatherapi.util.GeoUtils.haversine;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CityIndexTests {
+
+    private static final Random RANDOM = new Random(42);
+
+    // Test Case 1: The nearest cities are the same as a linear haversine scan finds
+    @Test
+    void testNearestMatchesLinearScan() {
+        List<CityEntity> cities = randomCities(5000);
+        CityIndex cityIndex = CityIndex.of(cities);
+
+        for (int i = 0; i < 200; i++) {
+            double lat = 55 + RANDOM.nextDouble() * 16;
+            double lon = 4 + RANDOM.nextDouble() * 28;
+
+            List<CityEntity> expected = cities.stream()
+                    .sorted(Comparator.comparingDouble(city -> haversine(lat, lon, city.getLat(), city.getLon())))
+                    .limit(5)
+                    .toList();
+
+            assertEquals(names(expected), names(cityIndex.nearest(lat, lon, 5).stream().map(CityIndex.CityDistance::city).toList()));
+        }
+    }
+
+    // Test Case 2: The radius search finds every city within the radius, closest first
+    @Test
+    void testWithinRadiusMatchesLinearScan() {
+        List<CityEntity> cities = randomCities(5000);
+        CityIndex cityIndex = CityIndex.of(cities);
+
+        for (int i = 0; i < 200; i++) {
+            double lat = 55 + RANDOM.nextDouble() * 16;
+            double lon = 4 + RANDOM.nextDouble() * 28;
+
+            List<CityEntity> expected = cities.stream()
+                    .filter(city -> haversine(lat, lon, city.getLat(), city.getLon()) <= 30)
+                    .sorted(Comparator.comparingDouble(city -> haversine(lat, lon, city.getLat(), city.getLon())))
+                    .toList();
+
+            List<CityIndex.CityDistance> result = cityIndex.withinRadius(lat, lon, 30, Integer.MAX_VALUE);
+            assertEquals(names(expected), names(result.stream().map(CityIndex.CityDistance::city).toList()));
+            assertTrue(result.stream().allMatch(cityDistance -> cityDistance.distanceKm() <= 30));
+        }
+    }
+
+    // Test Case 3: Limits and empty indexes return what's available
+    @Test
+    void testLimitsAndEmptyIndex() {
+        CityIndex cityIndex = CityIndex.of(randomCities(3));
+
+        assertEquals(3, cityIndex.nearest(59.33, 18.07, 10).size());
+        assertEquals(0, cityIndex.nearest(59.33, 18.07, 0).size());
+        assertEquals(2, cityIndex.withinRadius(59.33, 18.07, 20000, 2).size());
+        assertEquals(0, CityIndex.of(List.of()).nearest(59.33, 18.07, 1).size());
+    }
+
+    private List<CityEntity> randomCities(int count) {
+        List<CityEntity> cities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            cities.add(CityEntity.builder()
+                    .name("City" + i)
+                    .lat(55 + RANDOM.nextDouble() * 16)
+                    .lon(4 + RANDOM.nextDouble() * 28)
+                    .build());
+        }
+        return cities;
+    }
+
+    private List<String> names(List<CityEntity> cities) {
+        return cities.stream().map(CityEntity::getName).toList();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.weatherapi.util;
+
+import com.example.weatherapi.domain.city.City;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GridCellTests {
+
+    @Test
+    void testCoordinatesInTheSameCellGetTheSameCenter() {
+        GridCell first = GridCell.snap(59.3301, 18.0701, 0.01);
+        GridCell second = GridCell.snap(59.3399, 18.0799, 0.01);
+
+        assertEquals(first, second);
+        assertEquals("59.335,18.075", first.name());
+        assertEquals(59.335, first.lat());
+        assertEquals(18.075, first.lon());
+        assertNotEquals(first, GridCell.snap(59.3401, 18.0701, 0.01));
+    }
+
+    @Test
+    void testCellIsSnappedToACoarserGrid() {
+        GridCell cell = GridCell.snap(59.3301, 18.0701, 0.01);
+
+        assertEquals("59.35,18.05", cell.snapTo(0.1).name());
+        // 18.075 is on the edge of two cells of the coarser grid
+        assertEquals("59.3375,18.0875", cell.snapTo(0.025).name());
+    }
+
+    @Test
+    void testCellCityIsAPoint() {
+        City city = GridCell.snap(59.3301, 18.0701, 0.01).toCity();
+
+        assertTrue(city.isPoint());
+        assertEquals("59.335,18.075", city.getName());
+        assertThrows(IllegalArgumentException.class, () -> GridCell.snap(59.33, 18.07, 0));
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.weatherapi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTests {
+
+    private final SingleFlight<String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void testConcurrentCallersShareOneLoad() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ConcurrentLinkedQueue<String> results = new ConcurrentLinkedQueue<>();
+
+        List<Thread> callers = startCallers(8, () -> results.add(singleFlight.execute("stockholmmerged", () -> {
+            loads.incrementAndGet();
+            awaitQuietly(release);
+            return "weather";
+        })));
+
+        // The leader waits on the latch and every other caller waits on the shared future
+        awaitAllWaiting(callers);
+        release.countDown();
+        joinAll(callers);
+
+        assertEquals(1, loads.get());
+        assertEquals(8, results.size());
+        assertTrue(results.stream().allMatch("weather"::equals));
+        assertFalse(singleFlight.isInFlight("stockholmmerged"));
+    }
+
+    @Test
+    void testJoinedCallersGetLeaderException() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("upstream failed");
+        ConcurrentLinkedQueue<Throwable> exceptions = new ConcurrentLinkedQueue<>();
+
+        List<Thread> callers = startCallers(4, () -> {
+            try {
+                singleFlight.execute("göteborgmerged", () -> {
+                    awaitQuietly(release);
+                    throw failure;
+                });
+            } catch (IllegalStateException e) {
+                exceptions.add(e);
+            }
+        });
+
+        awaitAllWaiting(callers);
+        release.countDown();
+        joinAll(callers);
+
+        assertEquals(4, exceptions.size());
+        assertTrue(exceptions.stream().allMatch(e -> e == failure));
+    }
+
+    @Test
+    void testEntryIsRemovedAfterFailure() {
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("malmömerged", () -> {
+            throw new IllegalStateException("upstream failed");
+        }));
+
+        assertFalse(singleFlight.isInFlight("malmömerged"));
+        assertEquals("weather", singleFlight.execute("malmömerged", () -> "weather"));
+    }
+
+    @Test
+    void testDifferentKeysLoadIndependently() {
+        assertEquals("stockholm", singleFlight.execute("stockholmmerged", () -> "stockholm"));
+        assertEquals("göteborg", singleFlight.execute("göteborgmerged", () -> "göteborg"));
+    }
+
+    @Test
+    void testSubmittedLoadRunsOnExecutorWithoutBlockingCallers() {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "loader"));
+        try {
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                // Every call returns while the load is still waiting on the latch
+                futures.add(singleFlight.submit("stockholmmerged", () -> {
+                    loads.incrementAndGet();
+                    awaitQuietly(release);
+                    return Thread.currentThread().getName();
+                }, executor));
+            }
+            assertTrue(futures.stream().noneMatch(CompletableFuture::isDone));
+            assertTrue(singleFlight.isInFlight("stockholmmerged"));
+
+            release.countDown();
+
+            assertTrue(futures.stream().allMatch(future -> future == futures.get(0)));
+            assertEquals("loader", SingleFlight.join(futures.get(0)));
+            assertEquals(1, loads.get());
+            await().atMost(2, TimeUnit.SECONDS).until(() -> !singleFlight.isInFlight("stockholmmerged"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testJoinThrowsSubmittedLoaderException() {
+        IllegalStateException failure = new IllegalStateException("upstream failed");
+        CompletableFuture<String> future = singleFlight.submit("göteborgmerged", () -> {
+            throw failure;
+        }, Runnable::run);
+
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> SingleFlight.join(future)));
+        assertSame(failure, assertThrows(IllegalStateException.class,
+                () -> SingleFlight.join(future.thenApply(String::length))));
+        assertFalse(singleFlight.isInFlight("göteborgmerged"));
+    }
+
+    private static List<Thread> startCallers(int count, Runnable caller) {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Thread thread = new Thread(caller, "caller-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        return threads;
+    }
+
+    private static void awaitAllWaiting(List<Thread> threads) {
+        await().atMost(2, TimeUnit.SECONDS).until(() -> threads.stream()
+                .allMatch(t -> t.getState() == Thread.State.WAITING || t.getState() == Thread.State.TIMED_WAITING));
+    }
+
+    private static void joinAll(List<Thread> threads) throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(2));
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.weatherapi.util;
+
+import com.example.weatherapi.domain.city.City;
+import com.example.weatherapi.domain.weather.Weather;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SunriseUtilTests {
+
+    @Test
+    void testSunTimesAreComputedOncePerPositionAndDay() {
+        LocalDate day = LocalDate.of(2024, 5, 15);
+
+        SunriseUtil.SunTimesTable first = SunriseUtil.getSunTimes(59.3294, 18.0686, day);
+        SunriseUtil.SunTimesTable second = SunriseUtil.getSunTimes(59.3294, 18.0686, day);
+        SunriseUtil.SunTimesTable nextDay = SunriseUtil.getSunTimes(59.3294, 18.0686, day.plusDays(1));
+
+        assertSame(first, second);
+        assertNotSame(first, nextDay);
+        assertEquals(10, first.sunrises().size());
+        assertEquals(10, first.sunsets().size());
+        assertEquals(day, first.sunrises().get(0).toLocalDate());
+        assertEquals(first.sunrises().get(1), nextDay.sunrises().get(0));
+    }
+
+    @Test
+    void testGetSunriseSunsetSharesTheTableBetweenWeathers() {
+        Weather smhiWeather = Weather.builder().city(stockholm()).build();
+        Weather mergedWeather = Weather.builder().city(stockholm()).build();
+
+        SunriseUtil.getSunriseSunset(smhiWeather);
+        SunriseUtil.getSunriseSunset(mergedWeather);
+
+        assertSame(smhiWeather.getCity().getSunriseList(), mergedWeather.getCity().getSunriseList());
+        assertThrows(UnsupportedOperationException.class, () -> smhiWeather.getCity().getSunsetList().clear());
+    }
+
+    private City stockholm() {
+        City city = new City();
+        city.setName("Stockholm");
+        city.setLat(59.3294);
+        city.setLon(18.0686);
+        return city;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.weatherapi.util;
+
+import com.example.weatherapi.domain.entities.CityEntity;
+import com.example.weatherapi.domain.entities.WeatherEntity;
+import com.example.weatherapi.domain.weather.Weather;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.weatherapi.utilitytests.WeatherTestUtils.buildWeatherData;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Tag("unit")
+class WeatherBlobCodecTests {
+
+    // Test Case 1: Hourly and 6 hour steps, missing values and unknown weather codes survive the round trip
+    @Test
+    void shouldDecodeWhatWasEncoded() {
+        Map<ZonedDateTime, Weather.WeatherData> weatherData = new LinkedHashMap<>();
+        weatherData.put(ZonedDateTime.parse("2024-05-15T17:00:00Z"), buildWeatherData(20.9f, 1, 3.8f, 191.5f, 0.0f, 50.0f));
+        weatherData.put(ZonedDateTime.parse("2024-05-15T18:00:00Z"), buildWeatherData(-12.3f, -1, -99f, -99f, 1.2f, 91.5f));
+        weatherData.put(ZonedDateTime.parse("2024-05-16T00:00:00Z"), buildWeatherData(9.6f, 19, 2.8f, 195.0f, 1.8f, 90.1f));
+
+        Map<ZonedDateTime, Weather.WeatherData> decoded = WeatherBlobCodec.decode(WeatherBlobCodec.encode(weatherData));
+
+        assertThat(decoded).containsExactlyEntriesOf(weatherData);
+    }
+
+    // Test Case 2: A forecast without data points
+    @Test
+    void shouldDecodeEmptyWeatherData() {
+        assertThat(WeatherBlobCodec.decode(WeatherBlobCodec.encode(Map.of()))).isEmpty();
+    }
+
+    // Test Case 3: A blob that wasn't written by the codec is rejected
+    @Test
+    void shouldRejectInvalidBlob() {
+        byte[] blob = {1, 2, 3};
+        assertThatThrownBy(() -> WeatherBlobCodec.decode(blob)).isInstanceOf(RuntimeException.class);
+    }
+
+    // Test Case 4: The mapper stores the blob instead of rows and reads it back
+    @Test
+    void shouldConvertWeatherWithBlobStorage() {
+        Weather weather = Weather.builder()
+                .message("Merged weather for Stockholm from FMI, SMHI and YR")
+                .timestamp(ZonedDateTime.parse("2024-05-15T16:00:00Z"))
+                .build();
+        weather.addWeatherData(ZonedDateTime.parse("2024-05-15T17:00:00Z"), 20.9f, 1, 3.8f, 191.5f, 50.0f, 0.0f);
+        CityEntity cityEntity = CityEntity.builder().name("Stockholm").lat(59.3294).lon(18.0686).build();
+
+        WeatherEntity weatherEntity = WeatherMapper.convertToWeatherEntity(weather, cityEntity, true);
+        Weather converted = WeatherMapper.convertToWeather(weatherEntity);
+
+        assertThat(weatherEntity.getWeatherDataList()).isEmpty();
+        assertThat(weatherEntity.getDataBlob()).isNotNull();
+        assertThat(converted.getWeatherData()).containsExactlyEntriesOf(weather.getWeatherData());
+        assertThat(converted.getMessage()).isEqualTo(weather.getMessage());
+    }
+
+    // Test Case 5: Forecasts saved as rows before the blob existed are still read
+    @Test
+    void shouldConvertWeatherSavedAsRows() {
+        Weather weather = Weather.builder()
+                .timestamp(ZonedDateTime.parse("2024-05-15T16:00:00Z"))
+                .build();
+        weather.addWeatherData(ZonedDateTime.parse("2024-05-15T17:00:00Z"), 20.9f, 1, 3.8f, 191.5f, 50.0f, 0.0f);
+        CityEntity cityEntity = CityEntity.builder().name("Stockholm").lat(59.3294).lon(18.0686).build();
+
+        WeatherEntity weatherEntity = WeatherMapper.convertToWeatherEntity(weather, cityEntity);
+
+        assertThat(weatherEntity.getDataBlob()).isNull();
+        assertThat(weatherEntity.getWeatherDataList()).hasSize(1);
+        assertThat(WeatherMapper.convertToWeather(weatherEntity).getWeatherData().values())
+                .containsExactlyElementsOf(List.copyOf(weather.getWeatherData().values()));
+    }
+}
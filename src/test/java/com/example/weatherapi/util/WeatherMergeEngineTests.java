@@ -0,0 +1,117 @@
+package com.example.weatherapi.util;
+
+import com.example.weatherapi.domain.weather.Weather;
+import com.example.weatherapi.domain.weather.WeatherSeries;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static com.example.weatherapi.utilitytests.WeatherTestUtils.buildWeatherData;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+@Tag("unit")
+class WeatherMergeEngineTests {
+
+    private static final long FIRST = ZonedDateTime.parse("2024-05-15T17:00:00Z").toEpochSecond();
+    private static final long SECOND = ZonedDateTime.parse("2024-05-15T18:00:00Z").toEpochSecond();
+    private static final long THIRD = ZonedDateTime.parse("2024-05-15T19:00:00Z").toEpochSecond();
+
+    // Test Case 1: The Stockholm data from SMHI and YR gives the same merged values as before
+    @Test
+    void shouldAverageAndRoundValues() {
+        WeatherSeries smhi = series(FIRST, buildWeatherData(20.4f, 1, 3.7f, 196.0f, 0.0f, 52.0f));
+        WeatherSeries yr = series(FIRST, buildWeatherData(21.4f, 1, 3.8f, 187.0f, 0.0f, 48.1f));
+
+        WeatherSeries merged = WeatherMergeEngine.merge(List.of(
+                new WeatherMergeEngine.Source(smhi, true, true),
+                new WeatherMergeEngine.Source(yr, true, false)));
+
+        assertThat(merged.size()).isEqualTo(1);
+        assertThat(merged.weatherData(0)).isEqualTo(buildWeatherData(20.9f, 1, 3.8f, 191.5f, 0.0f, 50.0f));
+    }
+
+    // Test Case 2: Sources that don't create points are only merged into existing ones and -99 values are skipped
+    @Test
+    void shouldOnlyMergeIntoCreatedPoints() {
+        WeatherSeries yr = series(FIRST, buildWeatherData(10.0f, 3, 2.0f, 350.0f, 0.0f, 80.0f));
+        WeatherSeries fmi = WeatherSeries.builder(2)
+                .add(FIRST, buildWeatherData(12.0f, 5, -99f, -99f, 1.0f, 90.0f))
+                .add(SECOND, buildWeatherData(15.0f, 5, 1.0f, 10.0f, 0.0f, 70.0f))
+                .build();
+
+        WeatherSeries merged = WeatherMergeEngine.merge(List.of(
+                new WeatherMergeEngine.Source(yr, true, false),
+                new WeatherMergeEngine.Source(fmi, false, false)));
+
+        assertThat(merged.size()).isEqualTo(1);
+        assertThat(merged.weatherData(0)).isEqualTo(buildWeatherData(11.0f, 3, 2.0f, 350.0f, 0.5f, 85.0f));
+    }
+
+    // Test Case 3: The preferred weather code wins, points without a weather code are dropped
+    @Test
+    void shouldPickWeatherCodeAndDropPointsWithoutOne() {
+        WeatherSeries yr = WeatherSeries.builder(2)
+                .add(FIRST, buildWeatherData(10.0f, 3, 2.0f, 90.0f, 0.0f, 80.0f))
+                .add(THIRD, buildWeatherData(10.0f, -1, 2.0f, 90.0f, 0.0f, 80.0f))
+                .build();
+        WeatherSeries smhi = series(FIRST, buildWeatherData(10.0f, 6, 2.0f, 90.0f, 0.0f, 80.0f));
+
+        WeatherSeries merged = WeatherMergeEngine.merge(List.of(
+                new WeatherMergeEngine.Source(yr, true, false),
+                new WeatherMergeEngine.Source(smhi, true, true)));
+
+        assertThat(merged.size()).isEqualTo(1);
+        assertThat(merged.weatherCode(0)).isEqualTo(6);
+    }
+
+    // Test Case 4: Wind directions are averaged on the circle, every source with the same weight in any order
+    @Test
+    void shouldAverageWindDirectionOnTheCircle() {
+        WeatherSeries smhi = series(FIRST, buildWeatherData(10.0f, 3, 2.0f, 350.0f, 0.0f, 80.0f));
+        WeatherSeries yr = series(FIRST, buildWeatherData(10.0f, 3, 2.0f, 10.0f, 0.0f, 80.0f));
+        WeatherSeries fmi = series(FIRST, buildWeatherData(10.0f, 3, 2.0f, 30.0f, 0.0f, 80.0f));
+
+        WeatherSeries merged = WeatherMergeEngine.merge(List.of(
+                new WeatherMergeEngine.Source(smhi, true, true),
+                new WeatherMergeEngine.Source(yr, true, false),
+                new WeatherMergeEngine.Source(fmi, false, false)));
+        WeatherSeries reversed = WeatherMergeEngine.merge(List.of(
+                new WeatherMergeEngine.Source(fmi, true, false),
+                new WeatherMergeEngine.Source(yr, true, false),
+                new WeatherMergeEngine.Source(smhi, false, true)));
+
+        assertThat(merged.windDirection(0)).isCloseTo(10.0f, offset(0.001f));
+        assertThat(reversed.windDirection(0)).isCloseTo(10.0f, offset(0.001f));
+    }
+
+    // Test Case 5: A -99 wind direction is left out of the mean, also from the source that creates the point
+    @Test
+    void shouldSkipInvalidWindDirection() {
+        WeatherSeries yr = series(FIRST, buildWeatherData(10.0f, 3, 2.0f, -99f, 0.0f, 80.0f));
+        WeatherSeries smhi = series(FIRST, buildWeatherData(10.0f, 3, 2.0f, 350.0f, 0.0f, 80.0f));
+
+        WeatherSeries merged = WeatherMergeEngine.merge(List.of(
+                new WeatherMergeEngine.Source(yr, true, false),
+                new WeatherMergeEngine.Source(smhi, true, true)));
+        WeatherSeries single = WeatherMergeEngine.merge(List.of(new WeatherMergeEngine.Source(yr, true, false)));
+
+        assertThat(merged.windDirection(0)).isEqualTo(350.0f);
+        assertThat(single.windDirection(0)).isEqualTo(-99f);
+    }
+
+    // Test Case 6: Rounding matches BigDecimal HALF_UP, also for negative values
+    @Test
+    void shouldRoundHalfAwayFromZero() {
+        assertThat(WeatherMergeEngine.round(0.25f)).isEqualTo(0.3f);
+        assertThat(WeatherMergeEngine.round(-0.25f)).isEqualTo(-0.3f);
+        assertThat(WeatherMergeEngine.round(50.049999f)).isEqualTo(50.0f);
+        assertThat(WeatherMergeEngine.round(-0.04f)).isEqualTo(0.0f);
+    }
+
+    private WeatherSeries series(long epochSecond, Weather.WeatherData data) {
+        return WeatherSeries.builder(1).add(epochSecond, data).build();
+    }
+}
@@ -23,6 +23,7 @@ CREATE TABLE weather (
     time_stamp timestamp DEFAULT NULL,
     message varchar(255) DEFAULT NULL,
     city_id varchar(36) DEFAULT NULL,
+    data_blob blob DEFAULT NULL,
     PRIMARY KEY (id),
     FOREIGN KEY (city_id) REFERENCES city (id)
 );
@@ -59,4 +60,10 @@ CREATE TABLE api_status (
     api_name VARCHAR(50) NOT NULL,
     is_active BOOLEAN NOT NULL DEFAULT TRUE,
     last_checked TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
-);
\ No newline at end of file
+);
+
+-- Indexes used by the database cache lookup and the retention job
+CREATE INDEX idx_latest_weather_api_lookup ON latest_weather_api (city_id, smhi, yr, fmi);
+CREATE INDEX idx_weather_time_stamp ON weather (time_stamp);
+CREATE INDEX idx_weather_data_weather_id ON weather_data (weather_id);
+CREATE INDEX idx_city_name ON city (name);